@@ -0,0 +1,65 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.SeatPreference;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рассадка группы на салоне A320 в один класс (30 рядов ABC|DEF = 180 мест), занятом наполовину
+ *
+ * allocate занимает места CAS-ами, поэтому после замера места возвращаются - карта не меняется
+ * между итерациями. Цель - меньше микросекунды на группу.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SeatGroupAllocatorBenchmark {
+
+    private static final SeatLayout LAYOUT = SeatLayout.compile("A320-ALL-ECONOMY", "ECONOMY 1-30 ABC|DEF");
+
+    @Param({"2", "3", "5", "8"})
+    private int groupSize;
+
+    @Param({"0.5"})
+    private double occupancy;
+
+    private SeatBitmap bitmap;
+    private SeatPreference[] preferences;
+
+    @Setup
+    public void setUp() {
+        bitmap = new SeatBitmap(LAYOUT);
+        Random random = new Random(42);
+        for (int bit = 0; bit < LAYOUT.seatCount(); bit++) {
+            if (random.nextDouble() < occupancy) {
+                bitmap.tryOccupy(bit);
+            }
+        }
+
+        // Семья: один хочет к окну, один к проходу, остальным всё равно
+        preferences = new SeatPreference[groupSize];
+        preferences[0] = SeatPreference.WINDOW;
+        if (groupSize > 1) {
+            preferences[1] = SeatPreference.AISLE;
+        }
+    }
+
+    @Benchmark
+    public int[] choose() {
+        return SeatGroupAllocator.choose(bitmap, CabinClass.ECONOMY, preferences);
+    }
+
+    @Benchmark
+    public int[] allocateAndRelease() {
+        int[] seats = SeatGroupAllocator.allocate(bitmap, CabinClass.ECONOMY, preferences);
+        if (seats != null) {
+            for (int seat : seats) {
+                bitmap.release(seat);
+            }
+        }
+        return seats;
+    }
+}
@@ -0,0 +1,116 @@
+package com.aviasales.booking.booking.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Чтение с реплик: @Transactional(readOnly = true) уходит на реплики, остальное - на primary
+ *
+ * Включается datasource.replicas.enabled=true; без него используется обычный DataSource Spring Boot.
+ * Реплики - физические standby того же кластера (streaming replication), например второй локальный
+ * Postgres, поднятый через pg_basebackup -R.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    @Value("${spring.datasource.url}")
+    private String primaryUrl;
+
+    @Value("${spring.datasource.username}")
+    private String primaryUsername;
+
+    @Value("${spring.datasource.password}")
+    private String primaryPassword;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int primaryPoolSize;
+
+    @Value("${datasource.replicas.urls}")
+    private List<String> replicaUrls;
+
+    @Value("${datasource.replicas.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${datasource.replicas.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    @Value("${datasource.replicas.pool-size:10}")
+    private int replicaPoolSize;
+
+    @Value("${datasource.replicas.max-lag-ms:2000}")
+    private long maxLagMillis;
+
+    @Value("${datasource.replicas.read-your-writes-ms:5000}")
+    private long readYourWritesMillis;
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource() {
+        DataSource primary = pool("primary", primaryUrl, primaryUsername, primaryPassword, primaryPoolSize, false);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            String name = "replica-" + i;
+            replicas.put(name, pool(name, replicaUrls.get(i).trim(), replicaUsername, replicaPassword, replicaPoolSize, true));
+        }
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, maxLagMillis, readYourWritesMillis);
+        routing.checkReplicas();
+        return routing;
+    }
+
+    /**
+     * DataSource для JPA: физическое соединение берётся при первом запросе, когда readOnly уже известен
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * Spring Boot подключает слушатель к менеджеру транзакций: после коммита пишущей транзакции
+     * пользователь читает с primary, пока реплики не догонят
+     */
+    @Bean
+    public TransactionExecutionListener readYourWritesListener(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new TransactionExecutionListener() {
+            @Override
+            public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+                if (commitFailure == null && transaction.isNewTransaction() && !transaction.isReadOnly()) {
+                    replicaRoutingDataSource.recordWrite();
+                }
+            }
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replicas.check-ms:1000}")
+    public void checkReplicas() {
+        replicaRoutingDataSource().checkReplicas();
+    }
+
+    private static HikariDataSource pool(String name, String url, String username, String password,
+                                         int size, boolean readOnly) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("db-" + name);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(size);
+        dataSource.setReadOnly(readOnly);
+        return dataSource;
+    }
+}
@@ -0,0 +1,171 @@
+package com.aviasales.booking.booking.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Маршрутизация соединений: readOnly-транзакции - на реплики, остальное - на primary
+ *
+ * - реплика участвует, только пока её отставание (проверяется по расписанию) не больше maxLagMillis;
+ * - read-your-writes: после коммита пишущей транзакции пользователь readYourWritesMillis читает с primary,
+ *   поэтому только что созданное бронирование сразу видно в "моих бронированиях";
+ * - нет здоровых реплик - читаем с primary.
+ *
+ * Отметка read-your-writes хранится в памяти этого узла по имени пользователя: при нескольких узлах
+ * балансировщик должен держать запросы пользователя на одном узле (sticky sessions по токену),
+ * иначе чтение на соседнем узле может уйти на реплику, ещё не получившую запись.
+ *
+ * Решение принимается при получении физического соединения, поэтому источник должен быть обёрнут
+ * в LazyConnectionDataSourceProxy: к этому моменту флаг readOnly транзакции уже выставлен.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    /**
+     * Отставание реплики в мс. Если всё полученное WAL уже применено - 0,
+     * иначе время с последней применённой транзакции.
+     *
+     * "Всё полученное применено" ничего не значит, если реплика ничего не получает: при оборванном
+     * WAL receiver receive_lsn = replay_lsn сколь угодно долго. Поэтому без потоковой репликации
+     * (нет строки в pg_stat_wal_receiver или статус не streaming) - -1, реплика выводится из ротации.
+     */
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                WHEN COALESCE((SELECT status FROM pg_stat_wal_receiver), '') <> 'streaming' THEN -1
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+            END
+            """;
+
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final long readYourWritesMillis;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final ConcurrentHashMap<String, Long> pinnedUntil = new ConcurrentHashMap<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    long maxLagMillis, long readYourWritesMillis) {
+        this.replicas = replicas.entrySet().stream()
+                .map(e -> new Replica(e.getKey(), e.getValue()))
+                .toList();
+        // Реплика, отстающая дольше окна read-your-writes, могла бы вернуть пользователю старые данные
+        this.maxLagMillis = Math.min(maxLagMillis, readYourWritesMillis);
+        this.readYourWritesMillis = readYourWritesMillis;
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || isPinnedToPrimary()) {
+            return PRIMARY;
+        }
+
+        // Round-robin по здоровым репликам
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int k = 0; k < size; k++) {
+            Replica replica = replicas.get((start + k) % size);
+            if (replica.healthy) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    // ═══════════════════════════════════════
+    // READ-YOUR-WRITES
+    // ═══════════════════════════════════════
+
+    /**
+     * Пишущая транзакция закоммичена: текущий пользователь какое-то время читает с primary
+     */
+    public void recordWrite() {
+        String user = currentUser();
+        if (user != null) {
+            pinnedUntil.put(user, System.currentTimeMillis() + readYourWritesMillis);
+        }
+    }
+
+    private boolean isPinnedToPrimary() {
+        String user = currentUser();
+        if (user == null) {
+            return false;
+        }
+        Long until = pinnedUntil.get(user);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    // ═══════════════════════════════════════
+    // ПРОВЕРКА РЕПЛИК
+    // ═══════════════════════════════════════
+
+    /**
+     * Замерить отставание каждой реплики и исключить отстающие / недоступные
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            long lag;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                resultSet.next();
+                lag = resultSet.getLong(1);
+            } catch (SQLException e) {
+                lag = -1;
+                log.debug("Replica {} check failed: {}", replica.name, e.getMessage());
+            }
+
+            boolean healthy = lag >= 0 && lag <= maxLagMillis;
+            if (healthy != replica.healthy) {
+                log.warn("Replica {} is now {} (lag: {} ms, max: {} ms)",
+                        replica.name, healthy ? "in rotation" : "out of rotation", lag, maxLagMillis);
+            }
+            replica.healthy = healthy;
+        }
+
+        long now = System.currentTimeMillis();
+        pinnedUntil.values().removeIf(until -> until <= now);
+    }
+
+    private static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile boolean healthy = false;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
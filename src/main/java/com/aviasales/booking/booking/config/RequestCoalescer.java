@@ -0,0 +1,108 @@
+package com.aviasales.booking.booking.config;
+
+import com.aviasales.booking.booking.dto.response.CoalescingStatsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight: одинаковые одновременные запросы выполняются один раз
+ *
+ * Первый запрос с ключом (лидер) считает результат в своём потоке, остальные, пришедшие
+ * пока он работает, ждут тот же CompletableFuture и получают тот же объект (или то же исключение).
+ * Вызывать нужно снаружи @Transactional-методов, чтобы ожидающие не держали соединения с БД.
+ * Результат не кэшируется: после завершения следующий запрос снова идёт в вычисление.
+ */
+@Slf4j
+@Component
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<InFlightKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, GroupStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Выполнить computation или присоединиться к уже идущему вычислению с тем же ключом
+     *
+     * @param group имя группы для метрик ("calendar", "search")
+     * @param key   ключ запроса с корректными equals/hashCode
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String group, Object key, Supplier<T> computation) {
+        GroupStats groupStats = stats.computeIfAbsent(group, g -> new GroupStats());
+        groupStats.requests.increment();
+
+        InFlightKey inFlightKey = new InFlightKey(group, key);
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(inFlightKey, own);
+
+        if (existing != null) {
+            groupStats.coalesced.increment();
+            log.debug("Coalesced {} request into in-flight computation", group);
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        groupStats.executions.increment();
+        try {
+            T result = computation.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(inFlightKey, own);
+        }
+    }
+
+    public CoalescingStatsResponse stats() {
+        return CoalescingStatsResponse.builder()
+                .inFlight(inFlight.size())
+                .groups(stats.entrySet().stream()
+                        .sorted(Map.Entry.comparingByKey())
+                        .map(e -> e.getValue().toResponse(e.getKey()))
+                        .toList())
+                .build();
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return e;
+    }
+
+    private record InFlightKey(String group, Object key) {
+    }
+
+    private static final class GroupStats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder executions = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+
+        CoalescingStatsResponse.Group toResponse(String name) {
+            long total = requests.sum();
+            long shared = coalesced.sum();
+            return CoalescingStatsResponse.Group.builder()
+                    .name(name)
+                    .requests(total)
+                    .executions(executions.sum())
+                    .coalesced(shared)
+                    .coalescedRate(total > 0 ? (double) shared / total : 0.0)
+                    .build();
+        }
+    }
+}
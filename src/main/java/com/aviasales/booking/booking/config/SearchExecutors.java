@@ -0,0 +1,66 @@
+package com.aviasales.booking.booking.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отдельные пулы для поиска, чтобы долгие стримы и пакеты мета-поиска
+ * не занимали общий пул @Async (уведомления)
+ *
+ * Держим их внутри компонента, а не бинами Executor: иначе Spring Boot
+ * не создаст свой applicationTaskExecutor для @Async.
+ */
+@Component
+public class SearchExecutors {
+
+    private final ThreadPoolExecutor stream;
+    private final ThreadPoolExecutor batch;
+
+    public SearchExecutors(
+            @Value("${search.stream.pool.core-size:4}") int streamCoreSize,
+            @Value("${search.stream.pool.max-size:16}") int streamMaxSize,
+            @Value("${search.stream.pool.queue-capacity:100}") int streamQueueCapacity,
+            @Value("${search.batch.pool.core-size:16}") int batchCoreSize,
+            @Value("${search.batch.pool.max-size:64}") int batchMaxSize,
+            @Value("${search.batch.pool.queue-capacity:200}") int batchQueueCapacity
+    ) {
+        this.stream = pool("search-stream-", streamCoreSize, streamMaxSize, streamQueueCapacity);
+        this.batch = pool("search-batch-", batchCoreSize, batchMaxSize, batchQueueCapacity);
+    }
+
+    /**
+     * Потоковая выдача (NDJSON/SSE)
+     */
+    public ExecutorService stream() {
+        return stream;
+    }
+
+    /**
+     * Запросы пакетного поиска. Потоков больше, чем бюджет соединений
+     * (search.batch.max-concurrent-queries), чтобы валидация и ожидание слота не стояли в очереди пула
+     */
+    public ExecutorService batch() {
+        return batch;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stream.shutdown();
+        batch.shutdown();
+    }
+
+    private static ThreadPoolExecutor pool(String prefix, int coreSize, int maxSize, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(coreSize, maxSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -48,11 +48,13 @@ public class SecurityConfig {
                         ).permitAll()
                         .requestMatchers(
                                 "/api/v1/flights/search",
+                                "/api/v1/flights/search/**",
                                 "/api/v1/flights/airports",
                                 "/api/v1/flights/airports/**",
                                 "/api/v1/flights/airlines",
                                 "/api/v1/flights/airlines/**",
-                                "/api/v1/flights/popular-destinations"
+                                "/api/v1/flights/popular-destinations",
+                                "/api/v1/flights/connections"
                         ).permitAll()
                         .requestMatchers("/api/v1/flights/{id}").permitAll()
                         .requestMatchers("/api/v1/flights/number/**").permitAll()
@@ -1,6 +1,11 @@
 package com.aviasales.booking.booking.controller;
 
 
+import com.aviasales.booking.booking.config.RequestCoalescer;
+import com.aviasales.booking.booking.dto.response.CoalescingStatsResponse;
+import com.aviasales.booking.booking.dto.response.SearchCacheStatsResponse;
+import com.aviasales.booking.booking.index.FlightSearchResultCache;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -10,12 +15,34 @@ import org.springframework.web.bind.annotation.RestController;
 
 @RestController
 @RequestMapping("/api/v1/admin")
+@RequiredArgsConstructor
 public class AdminController {
 
+    private final FlightSearchResultCache searchResultCache;
+    private final RequestCoalescer requestCoalescer;
+
     @GetMapping
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public HttpEntity<?> admin() {
         return ResponseEntity.ok("This is admin room, feel free to be here! and spend your time well!");
     }
 
+    /**
+     * Метрики кэша выдачи поиска (hit/miss/eviction)
+     */
+    @GetMapping("/cache/search")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<SearchCacheStatsResponse> searchCacheStats() {
+        return ResponseEntity.ok(searchResultCache.stats());
+    }
+
+    /**
+     * Метрики single-flight: сколько одинаковых запросов получили общий результат
+     */
+    @GetMapping("/coalescing")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<CoalescingStatsResponse> coalescingStats() {
+        return ResponseEntity.ok(requestCoalescer.stats());
+    }
+
 }
@@ -0,0 +1,74 @@
+package com.aviasales.booking.booking.controller;
+
+import com.aviasales.booking.booking.dto.response.ConnectionSearchResponse;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.service.interfaces.ConnectionSearchService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+
+/**
+ * API для поиска маршрутов с пересадками
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/flights")
+@RequiredArgsConstructor
+@Tag(name = "Connections", description = "Multi-leg itinerary search")
+public class ConnectionSearchController {
+
+    private final ConnectionSearchService connectionSearchService;
+
+    /**
+     * Поиск маршрутов с 0-2 пересадками
+     */
+    @GetMapping("/connections")
+    @Operation(
+            summary = "Search itineraries with connections",
+            description = "Builds 1-, 2- and 3-leg itineraries from scheduled flights. " +
+                    "Respects minimum connection time (domestic/international) and maximum layover. " +
+                    "Date is the local date at the origin airport."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Itineraries sorted by total travel time"),
+            @ApiResponse(responseCode = "400", description = "Invalid search parameters")
+    })
+    public ResponseEntity<ConnectionSearchResponse> searchConnections(
+            @Parameter(description = "Origin airport IATA code", example = "TAS")
+            @RequestParam String from,
+
+            @Parameter(description = "Destination airport IATA code", example = "JFK")
+            @RequestParam String to,
+
+            @Parameter(description = "Departure date (origin local time)", example = "2026-03-15")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+
+            @Parameter(description = "Number of passengers", example = "1")
+            @RequestParam(defaultValue = "1") Integer passengers,
+
+            @Parameter(description = "Cabin class", example = "ECONOMY")
+            @RequestParam(defaultValue = "ECONOMY") CabinClass cabinClass,
+
+            @Parameter(description = "Maximum number of stops (0-2)", example = "1")
+            @RequestParam(defaultValue = "2") Integer maxStops
+    ) {
+        log.info("GET /api/v1/flights/connections - {} -> {} on {}, maxStops={}", from, to, date, maxStops);
+
+        ConnectionSearchResponse response = connectionSearchService.searchConnections(
+                from, to, date, passengers, cabinClass, maxStops);
+
+        return ResponseEntity.ok(response);
+    }
+}
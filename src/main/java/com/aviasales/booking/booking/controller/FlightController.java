@@ -1,13 +1,23 @@
 package com.aviasales.booking.booking.controller;
 
+import com.aviasales.booking.booking.config.RequestCoalescer;
+import com.aviasales.booking.booking.dto.request.BatchFlightSearchRequest;
 import com.aviasales.booking.booking.dto.request.CreateFlightRequest;
+import com.aviasales.booking.booking.dto.request.CreateFlightScheduleRequest;
 import com.aviasales.booking.booking.dto.request.FlightSearchRequest;
 import com.aviasales.booking.booking.dto.request.UpdateFlightRequest;
 import com.aviasales.booking.booking.dto.response.*;
 import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.DestinationRanking;
+import com.aviasales.booking.booking.enums.FlightImportFormat;
 import com.aviasales.booking.booking.enums.FlightSortBy;
+import com.aviasales.booking.booking.index.PopularDestinationsAggregate;
 import com.aviasales.booking.booking.service.interfaces.BookingService;
+import com.aviasales.booking.booking.service.interfaces.FlightBatchSearchService;
+import com.aviasales.booking.booking.service.interfaces.FlightImportService;
+import com.aviasales.booking.booking.service.interfaces.FlightScheduleService;
 import com.aviasales.booking.booking.service.interfaces.FlightService;
+import com.aviasales.booking.booking.service.interfaces.SeatMapStreamService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,14 +26,20 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -36,7 +52,16 @@ import java.util.List;
 public class FlightController {
 
     private final FlightService flightService;
+    private final FlightBatchSearchService flightBatchSearchService;
+    private final FlightImportService flightImportService;
+    private final FlightScheduleService flightScheduleService;
     private final BookingService bookingService;
+    private final RequestCoalescer requestCoalescer;
+    private final SeatMapStreamService seatMapStreamService;
+    private final PopularDestinationsAggregate popularDestinations;
+
+    @Value("${seats.stream.timeout-ms:1800000}")
+    private long seatMapStreamTimeoutMs;
 
     // ═══════════════════════════════════════
     // ПОИСК РЕЙСОВ
@@ -74,22 +99,112 @@ public class FlightController {
             @RequestParam(defaultValue = "0") int page,
 
             @Parameter(description = "Page size")
-            @RequestParam(defaultValue = "10") int size
+            @RequestParam(defaultValue = "10") int size,
+
+            @Parameter(description = "Also search origin airports within this radius, km (0-500)")
+            @RequestParam(defaultValue = "0") int fromRadiusKm,
+
+            @Parameter(description = "Also search destination airports within this radius, km (0-500)")
+            @RequestParam(defaultValue = "0") int toRadiusKm,
+
+            @Parameter(description = "Search all airports of the origin and destination cities")
+            @RequestParam(defaultValue = "false") boolean metroArea
     ) {
         log.info("Flight search request: {} -> {}, date: {}, passengers: {}",
                 from, to, date, passengers);
 
         FlightSearchRequest request = FlightSearchRequest.builder()
-                .originCode(from)             // ✅ исправлено
-                .destinationCode(to)          // ✅ исправлено
+                .originCode(from.toUpperCase())         // ✅ исправлено
+                .destinationCode(to.toUpperCase())      // ✅ исправлено
                 .departureDate(date)
                 .passengers(passengers)
                 .cabinClass(cabinClass)       // ✅ исправлено
                 .sortBy(sortBy)
+                .originRadiusKm(fromRadiusKm)
+                .destinationRadiusKm(toRadiusKm)
+                .metroArea(metroArea)
                 .build();
 
+        // Считаем каждый запрос, в том числе склеенный с чужим; следующие страницы того же поиска - нет
+        if (page == 0) {
+            popularDestinations.searched(request.getDestinationCode());
+        }
+
+        // Ключ в верхнем регистре: "mow" и "MOW" - один и тот же поиск
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(flightService.searchFlights(request, pageable));
+        return ResponseEntity.ok(requestCoalescer.execute(
+                "search",
+                List.of(request, pageable),
+                () -> flightService.searchFlights(request, pageable)
+        ));
+    }
+
+    @GetMapping("/search/cursor")
+    @Operation(
+            summary = "Search for flights (cursor pagination)",
+            description = "Same search as /search, but paginated by an opaque cursor instead of page number. " +
+                    "Does not return total count, so deep pages stay fast on busy routes."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Flights found successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid search parameters or cursor")
+    })
+    public ResponseEntity<FlightCursorPageResponse> searchFlightsByCursor(
+            @Parameter(description = "Origin airport IATA code (e.g., DME for Moscow)")
+            @RequestParam String from,
+
+            @Parameter(description = "Destination airport IATA code (e.g., DXB for Dubai)")
+            @RequestParam String to,
+
+            @Parameter(description = "Departure date (YYYY-MM-DD)")
+            @RequestParam LocalDate date,
+
+            @Parameter(description = "Number of passengers (1-9)")
+            @RequestParam(defaultValue = "1") Integer passengers,
+
+            @Parameter(description = "Cabin class preference")
+            @RequestParam(defaultValue = "ECONOMY") CabinClass cabinClass,
+
+            @Parameter(description = "Sort criteria (must match the one the cursor was issued for)")
+            @RequestParam(defaultValue = "PRICE") FlightSortBy sortBy,
+
+            @Parameter(description = "Cursor from the previous page (omit for the first page)")
+            @RequestParam(required = false) String cursor,
+
+            @Parameter(description = "Page size (1-100)")
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        log.info("Flight cursor search request: {} -> {}, date: {}, passengers: {}",
+                from, to, date, passengers);
+
+        FlightSearchRequest request = FlightSearchRequest.builder()
+                .originCode(from)
+                .destinationCode(to)
+                .departureDate(date)
+                .passengers(passengers)
+                .cabinClass(cabinClass)
+                .sortBy(sortBy)
+                .build();
+
+        int safeSize = Math.max(1, Math.min(size, 100));
+        return ResponseEntity.ok(flightService.searchFlightsAfter(request, cursor, safeSize));
+    }
+
+    @PostMapping("/search/batch")
+    @Operation(
+            summary = "Batch flight search",
+            description = "Runs up to 20 searches concurrently and returns the first page of each, " +
+                    "with per-query status and timing. A failing or invalid query does not fail the batch."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch executed (check per-query status)"),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized batch")
+    })
+    public ResponseEntity<BatchFlightSearchResponse> searchFlightsBatch(
+            @Valid @RequestBody BatchFlightSearchRequest request
+    ) {
+        log.info("Batch flight search request: {} queries", request.getQueries().size());
+        return ResponseEntity.ok(flightBatchSearchService.search(request));
     }
 
     // ═══════════════════════════════════════
@@ -153,6 +268,78 @@ public class FlightController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    @Operation(
+            summary = "Bulk import flight schedule",
+            description = "Import flights from a CSV (header = CreateFlightRequest fields) or NDJSON file. "
+                    + "Invalid and duplicate rows are skipped and reported (Admin/Manager only)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished, see per-row errors"),
+            @ApiResponse(responseCode = "400", description = "Unreadable file or unknown format"),
+            @ApiResponse(responseCode = "403", description = "Access denied")
+    })
+    public ResponseEntity<FlightImportResponse> importFlights(
+            @Parameter(description = "Schedule file (.csv, .ndjson, .jsonl)")
+            @RequestParam MultipartFile file,
+
+            @Parameter(description = "File format (detected from the file name if omitted)")
+            @RequestParam(required = false) FlightImportFormat format
+    ) throws IOException {
+        FlightImportFormat resolved = format != null ? format : FlightImportFormat.fromFilename(file.getOriginalFilename());
+        log.info("POST /api/v1/flights/import - {} ({} bytes, {})", file.getOriginalFilename(), file.getSize(), resolved);
+        try (InputStream input = file.getInputStream()) {
+            return ResponseEntity.ok(flightImportService.importFlights(input, resolved));
+        }
+    }
+
+    @PostMapping("/schedules")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    @Operation(
+            summary = "Create a recurring schedule",
+            description = "Create a schedule pattern (days of week, local departure time, validity period). "
+                    + "Flights are created for a rolling horizon, later dates are served from the pattern (Admin/Manager only)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Schedule created"),
+            @ApiResponse(responseCode = "400", description = "Invalid schedule data"),
+            @ApiResponse(responseCode = "403", description = "Access denied")
+    })
+    public ResponseEntity<FlightScheduleResponse> createSchedule(
+            @Valid @RequestBody CreateFlightScheduleRequest request
+    ) {
+        log.info("Create schedule request: {}", request.getFlightNumber());
+        return ResponseEntity.status(HttpStatus.CREATED).body(flightScheduleService.createSchedule(request));
+    }
+
+    @GetMapping("/schedules")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    @Operation(summary = "List recurring schedules", description = "All schedule patterns (Admin/Manager only)")
+    public ResponseEntity<List<FlightScheduleResponse>> getSchedules() {
+        return ResponseEntity.ok(flightScheduleService.getSchedules());
+    }
+
+    @DeleteMapping("/schedules/{id}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+    @Operation(
+            summary = "Deactivate a recurring schedule",
+            description = "Stop creating flights from the schedule. Already created flights are kept (Admin/Manager only)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Schedule deactivated"),
+            @ApiResponse(responseCode = "404", description = "Schedule not found"),
+            @ApiResponse(responseCode = "403", description = "Access denied")
+    })
+    public ResponseEntity<Void> deactivateSchedule(
+            @Parameter(description = "Schedule ID")
+            @PathVariable Long id
+    ) {
+        log.info("Deactivate schedule request: {}", id);
+        flightScheduleService.deactivateSchedule(id);
+        return ResponseEntity.noContent().build();
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
     @Operation(
@@ -306,18 +493,21 @@ public class FlightController {
     @GetMapping("/popular-destinations")
     @Operation(
             summary = "Get popular destinations",
-            description = "Get most popular destination airports based on flight frequency"
+            description = "Get most popular destination airports ranked by scheduled flights, confirmed bookings or searches"
     )
     public ResponseEntity<List<PopularDestinationResponse>> getPopularDestinations(
             @Parameter(description = "Number of destinations to return (1-20)")
-            @RequestParam(defaultValue = "5") int limit
+            @RequestParam(defaultValue = "5") int limit,
+
+            @Parameter(description = "Ranking: FLIGHTS, BOOKINGS or SEARCHES")
+            @RequestParam(defaultValue = "FLIGHTS") DestinationRanking rankBy
     ) {
-        log.info("Get popular destinations, limit: {}", limit);
+        log.info("Get popular destinations, limit: {}, rankBy: {}", limit, rankBy);
 
         // Ограничиваем максимальное значение
         int safeLimit = Math.min(limit, 20);
 
-        return ResponseEntity.ok(flightService.getPopularDestinations(safeLimit));
+        return ResponseEntity.ok(flightService.getPopularDestinations(safeLimit, rankBy));
     }
 
     @GetMapping("/flights/{flightId}/seats")
@@ -343,4 +533,25 @@ public class FlightController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping(value = "/flights/{flightId}/seats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Stream seat map (SSE)",
+            description = "Server-Sent Events: a 'snapshot' event with the whole seat bitmap, then 'delta' events " +
+                    "with seats taken or released by bookings, cancellations and expirations."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Seat map stream opened"),
+            @ApiResponse(responseCode = "404", description = "Flight not found")
+    })
+    public SseEmitter streamSeatMap(
+            @Parameter(description = "Flight ID", example = "36")
+            @PathVariable Long flightId
+    ) {
+        log.info("Seat map stream request for flight: {}", flightId);
+
+        SseEmitter emitter = new SseEmitter(seatMapStreamTimeoutMs);
+        seatMapStreamService.subscribe(flightId, emitter);
+        return emitter;
+    }
+
 }
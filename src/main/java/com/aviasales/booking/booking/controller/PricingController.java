@@ -1,7 +1,9 @@
 package com.aviasales.booking.booking.controller;
 
+import com.aviasales.booking.booking.config.RequestCoalescer;
 import com.aviasales.booking.booking.dto.response.CalendarPriceResponse;
 import com.aviasales.booking.booking.dto.response.DynamicPriceResponse;
+import com.aviasales.booking.booking.dto.response.PriceMatrixResponse;
 import com.aviasales.booking.booking.entity.Flight;
 import com.aviasales.booking.booking.enums.CabinClass;
 import com.aviasales.booking.booking.service.interfaces.CalendarService;
@@ -18,6 +20,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.List;
 
 /**
  * API для работы с динамическими ценами и календарём
@@ -32,6 +35,7 @@ public class PricingController {
     private final PricingService pricingService;
     private final CalendarService calendarService;
     private final FlightService flightService;
+    private final RequestCoalescer requestCoalescer;
 
     /**
      * Получить динамическую цену для конкретного рейса
@@ -86,11 +90,58 @@ public class PricingController {
         log.info("GET /api/pricing/calendar - route={}->{}, month={}, class={}",
                 from, to, month, cabinClass);
 
-        CalendarPriceResponse response = calendarService.getMonthlyPrices(
+        // Одинаковые одновременные запросы (рассылка промо) считаются один раз
+        String origin = from.toUpperCase();
+        String destination = to.toUpperCase();
+        CalendarPriceResponse response = requestCoalescer.execute(
+                "calendar",
+                List.of(origin, destination, month, cabinClass),
+                () -> calendarService.getMonthlyPrices(origin, destination, month, cabinClass)
+        );
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Матрица цен туда-обратно ±N дней
+     */
+    @GetMapping("/round-trip-matrix")
+    @Operation(summary = "Get flexible-date round-trip price matrix",
+            description = "Returns the cheapest round-trip price (5% round-trip discount applied) for every " +
+                    "combination of outbound and return dates within ±flexDays of the selected dates")
+    public ResponseEntity<PriceMatrixResponse> getRoundTripPriceMatrix(
+            @Parameter(description = "Origin airport IATA code", example = "TAS")
+            @RequestParam String from,
+
+            @Parameter(description = "Destination airport IATA code", example = "DME")
+            @RequestParam String to,
+
+            @Parameter(description = "Outbound date", example = "2026-03-15")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate departureDate,
+
+            @Parameter(description = "Return date", example = "2026-03-22")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate returnDate,
+
+            @Parameter(description = "Days around each date (0-7)")
+            @RequestParam(defaultValue = "3") int flexDays,
+
+            @Parameter(description = "Cabin class")
+            @RequestParam(defaultValue = "ECONOMY") CabinClass cabinClass,
+
+            @Parameter(description = "Number of passengers")
+            @RequestParam(defaultValue = "1") int passengers
+    ) {
+        log.info("GET /api/pricing/round-trip-matrix - route={}<->{}, dates={}/{}, flex={}",
+                from, to, departureDate, returnDate, flexDays);
+
+        PriceMatrixResponse response = calendarService.getRoundTripPriceMatrix(
                 from.toUpperCase(),
                 to.toUpperCase(),
-                month,
-                cabinClass
+                departureDate,
+                returnDate,
+                flexDays,
+                cabinClass,
+                passengers
         );
 
         return ResponseEntity.ok(response);
@@ -1,8 +1,10 @@
 package com.aviasales.booking.booking.controller;
 
+import com.aviasales.booking.booking.config.SearchExecutors;
 import com.aviasales.booking.booking.dto.request.RoundTripSearchRequest;
 import com.aviasales.booking.booking.dto.response.RoundTripDiscountResponse;
 import com.aviasales.booking.booking.dto.response.RoundTripSearchResponse;
+import com.aviasales.booking.booking.dto.response.RoundTripStreamEvent;
 import com.aviasales.booking.booking.enums.CabinClass;
 import com.aviasales.booking.booking.service.interfaces.RoundTripService;
 
@@ -15,11 +17,19 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 import java.time.LocalDate;
+import java.util.concurrent.RejectedExecutionException;
 
 
 /**
@@ -34,6 +44,11 @@ public class RoundTripController {
 
     private final RoundTripService roundTripService;
 
+    private final SearchExecutors searchExecutors;
+
+    @Value("${search.stream.timeout-ms:30000}")
+    private long streamTimeoutMs;
+
     /**
      * Поиск рейсов туда-обратно с автоматической скидкой
      */
@@ -61,6 +76,93 @@ public class RoundTripController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Потоковый поиск туда-обратно (NDJSON): по строке JSON на событие
+     */
+    @PostMapping(value = "/round-trip/search/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+            summary = "Stream round-trip search (NDJSON)",
+            description = "Same search as /round-trip/search, but results are written as they are found: " +
+                    "outbound options, return options, ranked recommendations and a final summary. " +
+                    "Each line is {\"type\": ..., \"data\": ...}."
+    )
+    public ResponseBodyEmitter streamRoundTripNdjson(
+            @Parameter(description = "Round-trip search criteria")
+            @Valid @RequestBody RoundTripSearchRequest request
+    ) {
+        log.info("POST /api/flights/round-trip/search/stream (ndjson) - route: {} -> {}",
+                request.getFrom(), request.getTo());
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeoutMs);
+        stream(request, emitter, event -> {
+            emitter.send(event, MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+        });
+        return emitter;
+    }
+
+    /**
+     * Потоковый поиск туда-обратно (Server-Sent Events): имя события = тип
+     */
+    @PostMapping(value = "/round-trip/search/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Stream round-trip search (SSE)",
+            description = "Server-Sent Events variant: events named outbound, return, recommendation, summary."
+    )
+    public SseEmitter streamRoundTripSse(
+            @Parameter(description = "Round-trip search criteria")
+            @Valid @RequestBody RoundTripSearchRequest request
+    ) {
+        log.info("POST /api/flights/round-trip/search/stream (sse) - route: {} -> {}",
+                request.getFrom(), request.getTo());
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        stream(request, emitter, event -> emitter.send(SseEmitter.event()
+                .name(event.getType())
+                .data(event.getData(), MediaType.APPLICATION_JSON)));
+        return emitter;
+    }
+
+    private void stream(RoundTripSearchRequest request, ResponseBodyEmitter emitter, EventWriter writer) {
+        try {
+            searchExecutors.stream().execute(() -> run(request, emitter, writer));
+        } catch (RejectedExecutionException e) {
+            // Пул потоковой выдачи занят - закрываем эмиттер, иначе он висел бы до таймаута
+            log.warn("Round-trip stream rejected: stream pool is full");
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void run(RoundTripSearchRequest request, ResponseBodyEmitter emitter, EventWriter writer) {
+        try {
+            roundTripService.streamRoundTrip(request, event -> {
+                try {
+                    writer.write(event);
+                } catch (IOException e) {
+                    // Клиент отключился - прекращаем запись
+                    throw new UncheckedIOException(e);
+                }
+            });
+            emitter.complete();
+        } catch (UncheckedIOException e) {
+            log.debug("Round-trip stream aborted by client: {}", e.getMessage());
+            emitter.completeWithError(e.getCause());
+        } catch (Exception e) {
+            log.error("Round-trip stream failed", e);
+            try {
+                writer.write(new RoundTripStreamEvent(RoundTripStreamEvent.ERROR, e.getMessage()));
+                emitter.complete();
+            } catch (IOException ignored) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface EventWriter {
+        void write(RoundTripStreamEvent event) throws IOException;
+    }
+
     @GetMapping("/round-trip/discount")
     @Operation(
             summary = "Calculate round-trip discount",
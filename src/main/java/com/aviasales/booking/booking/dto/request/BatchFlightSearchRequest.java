@@ -0,0 +1,26 @@
+package com.aviasales.booking.booking.dto.request;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Пакет поисковых запросов (одна страница мета-поиска)
+ * Каждый запрос валидируется отдельно: ошибка в одном не ломает остальные
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchFlightSearchRequest {
+
+    @NotEmpty(message = "At least one query is required")
+    @Size(max = 20, message = "Maximum 20 queries per batch")
+    private List<FlightSearchRequest> queries;
+
+    @Min(value = 1, message = "Page size must be at least 1")
+    @Max(value = 50, message = "Page size must be at most 50")
+    @Builder.Default
+    private Integer pageSize = 10;
+}
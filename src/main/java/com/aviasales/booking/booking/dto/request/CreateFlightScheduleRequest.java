@@ -0,0 +1,67 @@
+package com.aviasales.booking.booking.dto.request;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateFlightScheduleRequest {
+
+    @NotBlank
+    @Size(max = 10)
+    private String flightNumber;  // HY601
+
+    @NotBlank
+    @Size(min = 2, max = 2)
+    private String airlineCode;  // HY
+
+    @NotBlank
+    @Size(min = 3, max = 3)
+    private String originCode;  // TAS
+
+    @NotBlank
+    @Size(min = 3, max = 3)
+    private String destinationCode;  // IST
+
+    @NotNull
+    private LocalTime departureLocalTime;  // 07:40 по времени аэропорта вылета
+
+    @NotNull
+    @Min(1)
+    @Max(1440)
+    private Integer durationMinutes;
+
+    @NotEmpty
+    private Set<DayOfWeek> daysOfWeek;  // [MONDAY, TUESDAY, THURSDAY, ...]
+
+    @NotNull
+    private LocalDate validFrom;
+
+    @NotNull
+    private LocalDate validTo;
+
+    @NotNull
+    @Min(1)
+    private Integer totalSeats;
+
+    private Integer economySeats;
+    private Integer businessSeats;
+    private Integer firstClassSeats;
+
+    @NotNull
+    @DecimalMin("0.01")
+    private BigDecimal basePrice;
+
+    private BigDecimal businessPrice;
+    private BigDecimal firstClassPrice;
+
+    private String aircraftType;
+}
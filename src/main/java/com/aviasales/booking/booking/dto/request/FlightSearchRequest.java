@@ -33,4 +33,24 @@ public class FlightSearchRequest {
     private CabinClass cabinClass;  // default ECONOMY
 
     private FlightSortBy sortBy;    // default PRICE
+
+    // ═══════════════════════════════════════
+    // БЛИЖАЙШИЕ АЭРОПОРТЫ
+    // ═══════════════════════════════════════
+
+    @Min(value = 0, message = "Radius cannot be negative")
+    @Max(value = 500, message = "Maximum search radius is 500 km")
+    private Integer originRadiusKm;       // 0 / null - только указанный аэропорт
+
+    @Min(value = 0, message = "Radius cannot be negative")
+    @Max(value = 500, message = "Maximum search radius is 500 km")
+    private Integer destinationRadiusKm;
+
+    private Boolean metroArea;            // все аэропорты городов вылета и прилёта (MOW: SVO, DME, VKO)
+
+    public boolean isNearbySearch() {
+        return Boolean.TRUE.equals(metroArea)
+                || (originRadiusKm != null && originRadiusKm > 0)
+                || (destinationRadiusKm != null && destinationRadiusKm > 0);
+    }
 }
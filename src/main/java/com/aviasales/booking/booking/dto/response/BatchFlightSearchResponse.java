@@ -0,0 +1,57 @@
+package com.aviasales.booking.booking.dto.response;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Результаты пакетного поиска: по одному элементу на запрос, в порядке запросов
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchFlightSearchResponse {
+
+    private List<QueryResult> results;
+
+    private Integer succeeded;
+    private Integer failed;
+
+    /**
+     * Общее время пакета (≈ время самого медленного запроса)
+     */
+    private Long totalTimeMs;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QueryResult {
+
+        /**
+         * Номер запроса в пакете
+         */
+        private Integer index;
+
+        /**
+         * OK, INVALID, TIMEOUT, REJECTED, ERROR
+         */
+        private String status;
+
+        private List<FlightResponse> flights;
+        private Long totalElements;
+
+        /**
+         * Ожидание свободного слота (бюджет соединений)
+         */
+        private Long queueTimeMs;
+
+        /**
+         * Время выполнения самого поиска
+         */
+        private Long executionTimeMs;
+
+        private String error;
+    }
+}
@@ -0,0 +1,42 @@
+package com.aviasales.booking.booking.dto.response;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Метрики объединения одинаковых одновременных запросов (single-flight)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoalescingStatsResponse {
+
+    /**
+     * Вычислений, идущих прямо сейчас
+     */
+    private Integer inFlight;
+
+    private List<Group> groups;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Group {
+        private String name;
+        private Long requests;
+
+        /**
+         * Реально выполненных вычислений
+         */
+        private Long executions;
+
+        /**
+         * Запросов, получивших результат чужого вычисления
+         */
+        private Long coalesced;
+        private Double coalescedRate;
+    }
+}
@@ -0,0 +1,107 @@
+package com.aviasales.booking.booking.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Результат поиска маршрутов с пересадками
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConnectionSearchResponse {
+
+    private String origin;
+    private String destination;
+
+    /**
+     * Дата вылета в локальном времени аэропорта вылета
+     */
+    private LocalDate date;
+
+    /**
+     * Маршруты, отсортированные по общему времени в пути
+     */
+    private List<Itinerary> itineraries;
+
+    /**
+     * Сколько рейсов просканировано (для диагностики)
+     */
+    private Integer scannedFlights;
+
+    /**
+     * Время поиска в миллисекундах
+     */
+    private Long searchTimeMs;
+
+    /**
+     * Маршрут: 1-3 перелёта
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Itinerary {
+        private Integer stops;
+        private Integer totalDurationMinutes;
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'", timezone = "UTC")
+        private Instant departureTimeUtc;
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'", timezone = "UTC")
+        private Instant arrivalTimeUtc;
+
+        /**
+         * Сумма базовых тарифов всех перелётов (за одного пассажира)
+         */
+        private BigDecimal totalPrice;
+
+        private List<Leg> legs;
+        private List<Layover> layovers;
+    }
+
+    /**
+     * Один перелёт маршрута
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Leg {
+        private Long flightId;
+        private String flightNumber;
+        private String origin;
+        private String destination;
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING)
+        private ZonedDateTime departureTime;
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING)
+        private ZonedDateTime arrivalTime;
+    }
+
+    /**
+     * Пересадка (время - в часовом поясе аэропорта пересадки)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Layover {
+        private String airport;
+        private Integer minutes;
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING)
+        private ZonedDateTime arrivalTime;
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING)
+        private ZonedDateTime departureTime;
+    }
+}
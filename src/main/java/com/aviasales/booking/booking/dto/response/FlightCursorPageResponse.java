@@ -0,0 +1,27 @@
+package com.aviasales.booking.booking.dto.response;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Страница поиска рейсов с keyset-пагинацией
+ * Без totalElements: следующая страница запрашивается по nextCursor
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlightCursorPageResponse {
+
+    private List<FlightResponse> content;
+
+    /**
+     * Курсор следующей страницы (null, если страниц больше нет)
+     */
+    private String nextCursor;
+
+    private Boolean hasNext;
+
+    private Integer size;
+}
@@ -0,0 +1,43 @@
+package com.aviasales.booking.booking.dto.response;
+
+import com.aviasales.booking.booking.enums.FlightImportFormat;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Результат массового импорта расписания
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlightImportResponse {
+
+    private FlightImportFormat format;
+
+    private Integer totalRows;
+    private Integer imported;
+    private Integer failed;
+
+    private Long durationMs;
+
+    /**
+     * Ошибки по строкам (не больше flights.import.max-reported-errors)
+     */
+    private List<RowError> errors;
+    private Boolean errorsTruncated;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        /**
+         * Номер строки файла (с 1, заголовок CSV тоже считается)
+         */
+        private Integer line;
+        private String flightNumber;
+        private String message;
+    }
+}
@@ -66,6 +66,13 @@ public class FlightResponse {
     private BigDecimal businessPrice;
     private BigDecimal firstClassPrice;
 
+    /**
+     * Действующие цены (с учётом загруженности, дней до вылета и дня недели) - по ним сортирует PRICE
+     */
+    private BigDecimal effectiveEconomyPrice;
+    private BigDecimal effectiveBusinessPrice;
+    private BigDecimal effectiveFirstClassPrice;
+
     // ═══════════════════════════════════════
     // ДОСТУПНОСТЬ
     // ═══════════════════════════════════════
@@ -0,0 +1,45 @@
+package com.aviasales.booking.booking.dto.response;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlightScheduleResponse {
+
+    private Long id;
+    private String flightNumber;
+    private String airlineCode;
+    private String originCode;
+    private String destinationCode;
+
+    private LocalTime departureLocalTime;
+    private Integer durationMinutes;
+    private Set<DayOfWeek> daysOfWeek;
+    private LocalDate validFrom;
+    private LocalDate validTo;
+
+    private Integer totalSeats;
+    private Integer economySeats;
+    private Integer businessSeats;
+    private Integer firstClassSeats;
+
+    private BigDecimal basePrice;
+    private BigDecimal businessPrice;
+    private BigDecimal firstClassPrice;
+
+    private String aircraftType;
+    private Boolean isActive;
+
+    /**
+     * Рейсы (Flight) созданы по эту местную дату, дальше - синтезируются при поиске
+     */
+    private LocalDate materializedThrough;
+}
@@ -12,5 +12,7 @@ public class PopularDestinationResponse {
     private String country;
     private String iataCode;
     private Integer flightCount;
+    private Long bookingCount;
+    private Long searchCount;
 
 }
@@ -0,0 +1,65 @@
+package com.aviasales.booking.booking.dto.response;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Матрица цен туда-обратно: строки - даты вылета, столбцы - даты возврата (±N дней)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PriceMatrixResponse {
+
+    /**
+     * Маршрут
+     */
+    private String route;
+
+    private List<LocalDate> outboundDates;
+    private List<LocalDate> returnDates;
+
+    /**
+     * cells[i][j] - самый дешёвый вариант для outboundDates[i] и returnDates[j]
+     * null, если в один из дней нет рейсов или возврат не позже вылета
+     */
+    private List<List<Cell>> cells;
+
+    /**
+     * Самая дешёвая ячейка матрицы
+     */
+    private Cell cheapest;
+
+    /**
+     * Процент скидки туда-обратно (уже учтён в totalPrice)
+     */
+    private Double discountPercent;
+
+    /**
+     * Сколько рейсов рассчитано (каждый - один раз)
+     */
+    private Integer flightsPriced;
+
+    private Long searchTimeMs;
+
+    /**
+     * Ячейка матрицы (цены за одного пассажира)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Cell {
+        private LocalDate outboundDate;
+        private LocalDate returnDate;
+        private Long outboundFlightId;
+        private Long returnFlightId;
+        private BigDecimal outboundPrice;
+        private BigDecimal returnPrice;
+        private BigDecimal totalPrice;
+    }
+}
@@ -0,0 +1,49 @@
+package com.aviasales.booking.booking.dto.response;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Событие потокового поиска туда-обратно (одна строка NDJSON / одно SSE-событие)
+ *
+ * Порядок: outbound* → return* → recommendation* → summary
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RoundTripStreamEvent {
+
+    public static final String OUTBOUND = "outbound";
+    public static final String RETURN = "return";
+    public static final String RECOMMENDATION = "recommendation";
+    public static final String SUMMARY = "summary";
+    public static final String ERROR = "error";
+
+    /**
+     * Тип события
+     */
+    private String type;
+
+    /**
+     * FlightOption, RecommendedCombination, Summary или сообщение об ошибке
+     */
+    private Object data;
+
+    /**
+     * Итог поиска (последнее событие)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Summary {
+        private Integer outboundCount;
+        private Integer returnCount;
+        private BigDecimal lowestRoundTripPrice;
+        private BigDecimal roundTripDiscount;
+        private Double discountPercent;
+        private Long searchTimeMs;
+    }
+}
@@ -0,0 +1,32 @@
+package com.aviasales.booking.booking.dto.response;
+
+import lombok.*;
+
+/**
+ * Метрики кэша выдачи поиска
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchCacheStatsResponse {
+
+    private Boolean enabled;
+    private Integer size;
+    private Integer maxEntries;
+
+    private Long hits;
+    private Long misses;
+    private Double hitRate;
+
+    private Long puts;
+
+    /**
+     * Страница посчитана параллельно с инвалидацией и не попала в кэш
+     */
+    private Long rejectedPuts;
+
+    private Long invalidations;
+    private Long sizeEvictions;
+    private Long expirations;
+}
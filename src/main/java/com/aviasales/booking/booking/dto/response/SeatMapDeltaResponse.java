@@ -0,0 +1,24 @@
+package com.aviasales.booking.booking.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Seats that changed state since the previous seat map event")
+public class SeatMapDeltaResponse {
+
+    @Schema(description = "Flight ID", example = "36")
+    private Long flightId;
+
+    @Schema(description = "Seats that became occupied", example = "[\"12A\", \"12B\"]")
+    private List<String> taken;
+
+    @Schema(description = "Seats that became free", example = "[\"14C\"]")
+    private List<String> released;
+}
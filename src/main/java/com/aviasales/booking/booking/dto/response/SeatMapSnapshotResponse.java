@@ -0,0 +1,32 @@
+package com.aviasales.booking.booking.dto.response;
+
+import com.aviasales.booking.booking.enums.CabinClass;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Full seat map of a flight, sent first on a seat map stream")
+public class SeatMapSnapshotResponse {
+
+    @Schema(description = "Flight ID", example = "36")
+    private Long flightId;
+
+    @Schema(description = "Aircraft type the cabin layout belongs to", example = "A320")
+    private String aircraftType;
+
+    @Schema(description = "All seats of the cabin; position in the list is the seat index in the bitmap")
+    private List<String> seats;
+
+    @Schema(description = "Seat index range [from, to) of each cabin class", example = "{\"ECONOMY\": [12, 174]}")
+    private Map<CabinClass, List<Integer>> cabins;
+
+    @Schema(description = "Occupied seats bitmap, base64: seat i is bit (i % 8) of byte (i / 8)", example = "AwAAAAAAAAA=")
+    private String occupied;
+}
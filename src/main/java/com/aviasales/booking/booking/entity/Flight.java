@@ -5,6 +5,7 @@ import com.aviasales.booking.booking.enums.FlightStatus;
 import com.aviasales.booking.booking.exception.InsufficientSeatsException;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -25,8 +26,15 @@ import java.time.*;
         @Index(name = "idx_status", columnList = "status")
 })
 @EntityListeners(AuditingEntityListener.class)
+// Только изменённые колонки: запись цен не должна затирать счётчики мест, списанные атомарным UPDATE
+@DynamicUpdate
 public class Flight implements Serializable {
 
+    /**
+     * Максимальная длительность рейса. Ограничивает окно, в котором ищутся пересечения по времени
+     */
+    public static final Duration MAX_DURATION = Duration.ofHours(24);
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -91,6 +99,22 @@ public class Flight implements Serializable {
     @Column(precision = 10, scale = 2)
     private BigDecimal firstClassPrice;
 
+    /**
+     * Действующие цены (динамическая цена на effectivePriceDate), по ним сортирует PRICE-поиск
+     * Пересчитываются при изменении мест и раз в сутки (PricingService.refreshEffectivePrices)
+     * null - класса на рейсе нет
+     */
+    @Column(precision = 10, scale = 2)
+    private BigDecimal effectiveEconomyPrice;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal effectiveBusinessPrice;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal effectiveFirstClassPrice;
+
+    private LocalDate effectivePriceDate;
+
     // ═══════════════════════════════════════
     // ВМЕСТИМОСТЬ
     // ═══════════════════════════════════════
@@ -133,6 +157,13 @@ public class Flight implements Serializable {
     @JoinColumn(name = "connection_via")
     private Airport connectionAirport;
 
+    /**
+     * Регулярное расписание, из которого создан рейс (null - заведён вручную или импортом)
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "schedule_id")
+    private FlightSchedule schedule;
+
     // ═══════════════════════════════════════
     // АУДИТ
     // ═══════════════════════════════════════
@@ -334,6 +365,17 @@ public class Flight implements Serializable {
         return (double) occupiedSeats / totalSeats * 100;
     }
 
+    /**
+     * Действующая цена для класса (PREMIUM_ECONOMY продаётся по эконому)
+     */
+    public BigDecimal getEffectivePrice(CabinClass cabinClass) {
+        return switch (cabinClass) {
+            case ECONOMY, PREMIUM_ECONOMY -> effectiveEconomyPrice;
+            case BUSINESS -> effectiveBusinessPrice;
+            case FIRST_CLASS -> effectiveFirstClassPrice;
+        };
+    }
+
     public boolean isAlmostFull() {
         return getOccupancyRate() > 80.0;
     }
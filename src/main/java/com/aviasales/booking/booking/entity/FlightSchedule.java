@@ -0,0 +1,175 @@
+package com.aviasales.booking.booking.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.*;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Регулярное расписание: "HY601 TAS→IST ежедневно кроме ср, 07:40 местного, март-октябрь"
+ *
+ * Датированные рейсы (Flight) создаются из расписания только на скользящий горизонт
+ * (см. FlightScheduleServiceImpl), дальше - синтезируются на лету при поиске.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+@Entity
+@Table(name = "flight_schedules", indexes = {
+        @Index(name = "idx_schedule_route", columnList = "origin_id, destination_id"),
+        @Index(name = "idx_schedule_flight_number", columnList = "flight_number")
+})
+@EntityListeners(AuditingEntityListener.class)
+public class FlightSchedule implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // ═══════════════════════════════════════
+    // ОСНОВНАЯ ИНФОРМАЦИЯ
+    // ═══════════════════════════════════════
+
+    @Column(nullable = false, length = 10)
+    private String flightNumber;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "airline_id", nullable = false)
+    private Airline airline;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "origin_id", nullable = false)
+    private Airport origin;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "destination_id", nullable = false)
+    private Airport destination;
+
+    // ═══════════════════════════════════════
+    // ПЕРИОДИЧНОСТЬ
+    // ═══════════════════════════════════════
+
+    /**
+     * Время вылета по местному времени аэропорта вылета
+     */
+    @Column(nullable = false)
+    private LocalTime departureLocalTime;
+
+    @Column(nullable = false)
+    private Integer durationMinutes;
+
+    /**
+     * Дни недели выполнения: бит (DayOfWeek.getValue() - 1), пн = 1, вс = 64
+     */
+    @Column(nullable = false)
+    private Integer daysOfWeekMask;
+
+    /**
+     * Период действия по местной дате вылета, включительно
+     */
+    @Column(nullable = false)
+    private LocalDate validFrom;
+
+    @Column(nullable = false)
+    private LocalDate validTo;
+
+    // ═══════════════════════════════════════
+    // МЕСТА И ЦЕНЫ
+    // ═══════════════════════════════════════
+
+    @Column(nullable = false)
+    private Integer totalSeats;
+
+    private Integer economySeats;
+    private Integer businessSeats;
+    private Integer firstClassSeats;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal basePrice;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal businessPrice;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal firstClassPrice;
+
+    private String aircraftType;
+
+    // ═══════════════════════════════════════
+    // МАТЕРИАЛИЗАЦИЯ
+    // ═══════════════════════════════════════
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Boolean isActive = true;
+
+    /**
+     * Последняя местная дата, по которую рейсы уже созданы (null - ещё ни одного)
+     */
+    private LocalDate materializedThrough;
+
+    // ═══════════════════════════════════════
+    // АУДИТ
+    // ═══════════════════════════════════════
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @LastModifiedDate
+    private Instant updatedAt;
+
+    // ═══════════════════════════════════════
+    // БИЗНЕС-ЛОГИКА
+    // ═══════════════════════════════════════
+
+    public static int toMask(Set<DayOfWeek> days) {
+        int mask = 0;
+        for (DayOfWeek day : days) {
+            mask |= 1 << (day.getValue() - 1);
+        }
+        return mask;
+    }
+
+    public Set<DayOfWeek> getDaysOfWeek() {
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (operatesOn(day)) {
+                days.add(day);
+            }
+        }
+        return days;
+    }
+
+    public boolean operatesOn(DayOfWeek day) {
+        return (daysOfWeekMask & (1 << (day.getValue() - 1))) != 0;
+    }
+
+    /**
+     * Выполняется ли рейс в эту местную дату вылета
+     */
+    public boolean operatesOn(LocalDate localDate) {
+        return !localDate.isBefore(validFrom) && !localDate.isAfter(validTo) && operatesOn(localDate.getDayOfWeek());
+    }
+
+    public ZoneId getOriginZone() {
+        String timezone = origin.getTimezone();
+        return timezone != null ? ZoneId.of(timezone) : ZoneOffset.UTC;
+    }
+
+    /**
+     * Момент вылета в местную дату (при переходе на летнее время - сдвиг по правилам ZonedDateTime)
+     */
+    public Instant departureOn(LocalDate localDate) {
+        return ZonedDateTime.of(localDate, departureLocalTime, getOriginZone()).toInstant();
+    }
+}
@@ -12,14 +12,14 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 
 @Entity
 @Table(name = "tickets", indexes = {
         @Index(name = "idx_ticket_number", columnList = "ticketNumber"),
-        @Index(name = "idx_booking_id", columnList = "booking_id")
+        @Index(name = "idx_booking_id", columnList = "booking_id"),
+        @Index(name = "idx_ticket_flight_id", columnList = "flight_id")
 })
 @Getter
 @Setter
@@ -138,20 +138,12 @@ public class Ticket {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
-    private static final AtomicInteger counter = new AtomicInteger(0);
-
     // ═══════════════════════════════════════
     // LIFECYCLE CALLBACKS
     // ═══════════════════════════════════════
 
     @PrePersist
-    public void generateTicketNumbers() {
-        if (ticketNumber == null) {
-            ticketNumber = generateTicketNumber();
-        }
-        if (eTicketNumber == null) {
-            eTicketNumber = generateETicketNumber();
-        }
+    protected void onCreate() {
         if (issuedAt == null) {
             issuedAt = LocalDateTime.now();
         }
@@ -274,36 +266,4 @@ public class Ticket {
                 && Instant.now().isBefore(flight.getDepartureTime())
                 && Instant.now().isAfter(flight.getDepartureTime().minusSeconds(24 * 60 * 60));
     }
-
-    // ═══════════════════════════════════════
-    // HELPER METHODS
-    // ═══════════════════════════════════════
-
-    /**
-     * ✅ НАДЕЖНО: 13 символов с гарантией уникальности
-     * Формат: 555 + 5 цифр timestamp + 5 цифр счетчик
-     */
-    private String generateTicketNumber() {
-        // Последние 5 цифр timestamp (меняется каждую миллисекунду)
-        long timestamp = System.currentTimeMillis() % 100000L;
-
-        // Инкрементируем счетчик и берем последние 5 цифр
-        int count = counter.incrementAndGet() % 100000;
-
-        // 555 (3) + timestamp (5) + counter (5) = 13 символов
-        return String.format("555%05d%05d", timestamp, count);
-    }
-
-    private String generateETicketNumber() {
-        // 6-значный буквенно-цифровой код
-        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-        StringBuilder sb = new StringBuilder(6);
-        java.util.Random random = new java.util.Random();
-
-        for (int i = 0; i < 6; i++) {
-            sb.append(chars.charAt(random.nextInt(chars.length())));
-        }
-
-        return sb.toString();
-    }
 }
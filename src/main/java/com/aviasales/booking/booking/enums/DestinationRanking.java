@@ -0,0 +1,10 @@
+package com.aviasales.booking.booking.enums;
+
+/**
+ * По какому счётчику ранжировать популярные направления
+ */
+public enum DestinationRanking {
+    FLIGHTS,    // число SCHEDULED рейсов в направление
+    BOOKINGS,   // подтверждённые бронирования
+    SEARCHES    // поисковые запросы (с момента старта приложения)
+}
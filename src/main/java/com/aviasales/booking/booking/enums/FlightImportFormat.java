@@ -0,0 +1,30 @@
+package com.aviasales.booking.booking.enums;
+
+/**
+ * Формат файла массового импорта расписания
+ */
+public enum FlightImportFormat {
+    /**
+     * CSV с заголовком: названия колонок = поля CreateFlightRequest
+     */
+    CSV,
+
+    /**
+     * По одному JSON-объекту CreateFlightRequest в строке
+     */
+    NDJSON;
+
+    /**
+     * Определить формат по имени файла (.csv, .ndjson, .jsonl)
+     */
+    public static FlightImportFormat fromFilename(String filename) {
+        String name = filename != null ? filename.toLowerCase() : "";
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        throw new IllegalArgumentException("Cannot detect import format of '" + filename + "', pass format explicitly");
+    }
+}
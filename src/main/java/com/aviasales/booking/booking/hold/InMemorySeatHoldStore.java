@@ -0,0 +1,46 @@
+package com.aviasales.booking.booking.hold;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Удержания в памяти процесса - для одного инстанса и для тестов
+ *
+ * После рестарта удержания теряются; такие бронирования добирает BookingExpirationScheduler
+ */
+@Component
+@ConditionalOnProperty(name = "seats.holds.store", havingValue = "memory", matchIfMissing = true)
+public class InMemorySeatHoldStore implements SeatHoldStore {
+
+    private final Map<String, SeatHold> holds = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(SeatHold hold) {
+        holds.put(hold.reference(), hold);
+    }
+
+    @Override
+    public Optional<SeatHold> take(String reference) {
+        return Optional.ofNullable(holds.remove(reference));
+    }
+
+    @Override
+    public List<String> findExpired(Instant now, int limit) {
+        return holds.values().stream()
+                .filter(hold -> !hold.expiresAt().isAfter(now))
+                .limit(limit)
+                .map(SeatHold::reference)
+                .toList();
+    }
+
+    @Override
+    public int size() {
+        return holds.size();
+    }
+}
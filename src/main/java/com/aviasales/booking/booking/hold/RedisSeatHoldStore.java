@@ -0,0 +1,76 @@
+package com.aviasales.booking.booking.hold;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Удержания в Redis - общие для всех инстансов
+ *
+ * Удержание - строковый ключ seat-hold:{reference}, снимается GETDEL (атомарно, выигрывает один).
+ * Сроки лежат в sorted set seat-holds:expiry со score = epoch millis, по нему любой инстанс
+ * находит истёкшие удержания, даже если создавший их инстанс упал вместе со своими таймерами.
+ *
+ * Ключ живёт дольше удержания на GRACE, чтобы его успели снять и вернуть места;
+ * дальше Redis удалит его сам.
+ */
+@Component
+@ConditionalOnProperty(name = "seats.holds.store", havingValue = "redis")
+public class RedisSeatHoldStore implements SeatHoldStore {
+
+    private static final String KEY_PREFIX = "seat-hold:";
+    private static final String EXPIRY_KEY = "seat-holds:expiry";
+    private static final Duration GRACE = Duration.ofMinutes(10);
+
+    private final StringRedisTemplate redis;
+
+    public RedisSeatHoldStore(StringRedisTemplate redis) {
+        this.redis = redis;
+    }
+
+    @Override
+    public void put(SeatHold hold) {
+        Duration ttl = Duration.between(Instant.now(), hold.expiresAt()).plus(GRACE);
+        redis.opsForValue().set(KEY_PREFIX + hold.reference(), serialize(hold), ttl);
+        redis.opsForZSet().add(EXPIRY_KEY, hold.reference(), hold.expiresAt().toEpochMilli());
+    }
+
+    @Override
+    public Optional<SeatHold> take(String reference) {
+        String value = redis.opsForValue().getAndDelete(KEY_PREFIX + reference);
+        redis.opsForZSet().remove(EXPIRY_KEY, reference);
+        return Optional.ofNullable(value).map(v -> deserialize(reference, v));
+    }
+
+    @Override
+    public List<String> findExpired(Instant now, int limit) {
+        Set<String> references = redis.opsForZSet().rangeByScore(EXPIRY_KEY, 0, now.toEpochMilli(), 0, limit);
+        return references != null ? List.copyOf(references) : List.of();
+    }
+
+    @Override
+    public int size() {
+        Long size = redis.opsForZSet().zCard(EXPIRY_KEY);
+        return size != null ? size.intValue() : 0;
+    }
+
+    /**
+     * flightId|expiresAtMillis|seat,seat,...
+     */
+    private static String serialize(SeatHold hold) {
+        return hold.flightId() + "|" + hold.expiresAt().toEpochMilli() + "|" + String.join(",", hold.seatNumbers());
+    }
+
+    private static SeatHold deserialize(String reference, String value) {
+        String[] parts = value.split("\\|", 3);
+        List<String> seats = parts[2].isEmpty() ? List.of() : Arrays.asList(parts[2].split(","));
+        return new SeatHold(reference, Long.valueOf(parts[0]), seats, Instant.ofEpochMilli(Long.parseLong(parts[1])));
+    }
+}
@@ -0,0 +1,18 @@
+package com.aviasales.booking.booking.hold;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Удержание мест неоплаченного бронирования
+ *
+ * Места уже списаны со счётчиков рейса; удержание живёт до expiresAt. Кто первым снимет его
+ * из хранилища (оплата или таймер истечения), тот и решает судьбу мест: продать или вернуть.
+ *
+ * @param reference   номер бронирования
+ * @param flightId    рейс
+ * @param seatNumbers назначенные места
+ * @param expiresAt   момент истечения
+ */
+public record SeatHold(String reference, Long flightId, List<String> seatNumbers, Instant expiresAt) {
+}
@@ -0,0 +1,7 @@
+package com.aviasales.booking.booking.hold;
+
+/**
+ * Удержание истекло и снято из хранилища - места бронирования нужно вернуть
+ */
+public record SeatHoldExpiredEvent(SeatHold hold) {
+}
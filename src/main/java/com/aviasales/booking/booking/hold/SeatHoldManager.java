@@ -0,0 +1,122 @@
+package com.aviasales.booking.booking.hold;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Удержания мест с точным TTL
+ *
+ * На каждое удержание ставится таймер ровно на expiresAt: места возвращаются в момент истечения,
+ * а не при следующем проходе минутного BookingExpirationScheduler. Оплата снимает удержание
+ * раньше таймера, и места остаются проданными.
+ *
+ * Таймеры живут в памяти инстанса. Удержания других инстансов (общий Redis) и удержания,
+ * чей таймер потерялся, добирает sweepExpired по хранилищу.
+ */
+@Slf4j
+@Component
+public class SeatHoldManager {
+
+    private final SeatHoldStore store;
+    private final TaskScheduler taskScheduler;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int sweepLimit;
+
+    private final Map<String, ScheduledFuture<?>> timers = new ConcurrentHashMap<>();
+
+    public SeatHoldManager(
+            SeatHoldStore store,
+            TaskScheduler taskScheduler,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${seats.holds.sweep-limit:500}") int sweepLimit
+    ) {
+        this.store = store;
+        this.taskScheduler = taskScheduler;
+        this.eventPublisher = eventPublisher;
+        this.sweepLimit = sweepLimit;
+    }
+
+    /**
+     * Поставить удержание (после коммита бронирования, если есть транзакция)
+     */
+    public void hold(SeatHold hold) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    start(hold);
+                }
+            });
+        } else {
+            start(hold);
+        }
+    }
+
+    /**
+     * Оплата: снять удержание, места становятся проданными
+     * @return false - удержания нет (уже истекло или потеряно при рестарте)
+     */
+    public boolean convert(String reference) {
+        cancelTimer(reference);
+        boolean converted = store.take(reference).isPresent();
+        if (converted) {
+            log.debug("Seat hold {} converted to sale", reference);
+        }
+        return converted;
+    }
+
+    /**
+     * Бронирование отменено или истекло другим путём - удержание больше не нужно
+     */
+    public void discard(String reference) {
+        cancelTimer(reference);
+        store.take(reference);
+    }
+
+    /**
+     * Удержания, которые истекли без своего таймера
+     */
+    @Scheduled(fixedDelayString = "${seats.holds.sweep-ms:5000}")
+    public void sweepExpired() {
+        for (String reference : store.findExpired(Instant.now(), sweepLimit)) {
+            expire(reference);
+        }
+    }
+
+    private void start(SeatHold hold) {
+        store.put(hold);
+        timers.put(hold.reference(), taskScheduler.schedule(() -> expire(hold.reference()), hold.expiresAt()));
+    }
+
+    private void expire(String reference) {
+        timers.remove(reference);
+        store.take(reference).ifPresent(hold -> {
+            log.info("Seat hold {} expired on flight {} ({} seats)",
+                    reference, hold.flightId(), hold.seatNumbers().size());
+            try {
+                eventPublisher.publishEvent(new SeatHoldExpiredEvent(hold));
+            } catch (RuntimeException e) {
+                // Бронирование останется PENDING до прохода BookingExpirationScheduler
+                log.error("Failed to release expired seat hold {}: {}", reference, e.getMessage(), e);
+            }
+        });
+    }
+
+    private void cancelTimer(String reference) {
+        ScheduledFuture<?> timer = timers.remove(reference);
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.aviasales.booking.booking.hold;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Хранилище удержаний мест
+ *
+ * Реализации выбираются свойством seats.holds.store: memory (по умолчанию) или redis
+ */
+public interface SeatHoldStore {
+
+    void put(SeatHold hold);
+
+    /**
+     * Атомарно снять удержание: при гонке оплаты и истечения удержание получает только один
+     */
+    Optional<SeatHold> take(String reference);
+
+    /**
+     * Номера бронирований с удержаниями, истёкшими к моменту now (не больше limit)
+     */
+    List<String> findExpired(Instant now, int limit);
+
+    int size();
+}
@@ -0,0 +1,256 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.dto.response.AirportResponse;
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.mapper.FlightMapper;
+import com.aviasales.booking.booking.repo.AirportRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory индекс автодополнения аэропортов
+ *
+ * Вместо LOWER(...) LIKE '%q%' по трём колонкам:
+ * - префиксы: для каждого слова IATA / города / названия / searchTokens (и для строки целиком)
+ *   храним список аэропортов, уже отсортированный по рангу, - ответ одним get из HashMap;
+ * - триграммы: для запросов от 3 символов, которые не совпали по префиксу, ищем подстроку
+ *   пересечением списков триграмм и проверкой contains (семантика старого LIKE).
+ *
+ * Снимок неизменяемый и подменяется целиком при обновлении.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AirportAutocompleteIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Ранг совпадения: чем меньше, тем выше в выдаче
+    private static final int EXACT_IATA = 0;
+    private static final int IATA_PREFIX = 1;
+    private static final int CITY_PREFIX = 2;
+    private static final int NAME_PREFIX = 3;
+    private static final int TOKEN_PREFIX = 4;
+    private static final int SUBSTRING = 5;
+
+    private final AirportRepository airportRepository;
+    private final FlightMapper flightMapper;
+
+    @Value("${search.airports.max-prefix-length:20}")
+    private int maxPrefixLength;
+
+    private volatile Snapshot snapshot;
+
+    // ═══════════════════════════════════════
+    // ЗАГРУЗКА
+    // ═══════════════════════════════════════
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        refresh();
+    }
+
+    /**
+     * Перестроить индекс (аэропорты меняются редко, пересборка - миллисекунды)
+     */
+    @Scheduled(fixedDelayString = "${search.airports.refresh-ms:300000}",
+            initialDelayString = "${search.airports.refresh-ms:300000}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        long start = System.currentTimeMillis();
+        List<Airport> airports = airportRepository.findByIsActiveTrue();
+        snapshot = new Snapshot(airports, flightMapper, maxPrefixLength);
+        log.info("Airport autocomplete index built: {} airports, {} prefixes in {} ms",
+                airports.size(), snapshot.prefixes.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    // ═══════════════════════════════════════
+    // ПОИСК
+    // ═══════════════════════════════════════
+
+    /**
+     * Аэропорты по запросу: точный IATA, затем префиксы (IATA, город, название, токены), затем подстрока
+     */
+    public List<AirportResponse> search(String query, int limit) {
+        Snapshot current = snapshot;
+        String normalized = normalize(query);
+        if (current == null || normalized.isEmpty()) {
+            return List.of();
+        }
+
+        String key = normalized.length() > maxPrefixLength ? normalized.substring(0, maxPrefixLength) : normalized;
+        int[] ranked = current.prefixes.getOrDefault(key, new int[0]);
+
+        LinkedHashSet<Integer> result = new LinkedHashSet<>();
+        for (int posting : ranked) {
+            if (result.size() >= limit) {
+                break;
+            }
+            int airport = airportOf(posting);
+            // Префикс обрезан до maxPrefixLength - длинный запрос проверяем целиком
+            if (key.length() == normalized.length() || current.searchText[airport].contains(normalized)) {
+                result.add(airport);
+            }
+        }
+
+        if (result.size() < limit && normalized.length() >= 3) {
+            for (int airport : current.substringMatches(normalized)) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(airport);
+            }
+        }
+
+        return result.stream()
+                .map(airport -> current.airports[airport])
+                .toList();
+    }
+
+    // ═══════════════════════════════════════
+    // СНИМОК
+    // ═══════════════════════════════════════
+
+    private static final class Snapshot {
+
+        final AirportResponse[] airports;
+
+        /**
+         * Нормализованный текст аэропорта (IATA + город + название + токены) для проверки подстроки
+         */
+        final String[] searchText;
+
+        /**
+         * Префикс → postings (ранг << 24 | аэропорт), отсортированы по рангу, затем по городу
+         */
+        final Map<String, int[]> prefixes;
+
+        /**
+         * Триграмма → отсортированные номера аэропортов
+         */
+        final Map<String, int[]> trigrams;
+
+        Snapshot(List<Airport> source, FlightMapper mapper, int maxPrefixLength) {
+            List<Airport> sorted = source.stream()
+                    .sorted(Comparator.comparing((Airport a) -> normalize(a.getCity()))
+                            .thenComparing(Airport::getIataCode))
+                    .toList();
+
+            airports = new AirportResponse[sorted.size()];
+            searchText = new String[sorted.size()];
+
+            Map<String, Map<Integer, Integer>> bestRank = new HashMap<>();
+            Map<String, Set<Integer>> trigramSets = new HashMap<>();
+
+            for (int i = 0; i < sorted.size(); i++) {
+                Airport airport = sorted.get(i);
+                airports[i] = mapper.toAirportResponse(airport);
+
+                String iata = normalize(airport.getIataCode());
+                String city = normalize(airport.getCity());
+                String name = normalize(airport.getName());
+                String tokens = normalize(airport.getSearchTokens());
+
+                addPrefixes(bestRank, iata, i, IATA_PREFIX, maxPrefixLength);
+                bestRank.computeIfAbsent(iata, k -> new HashMap<>()).put(i, EXACT_IATA);
+                addFieldPrefixes(bestRank, city, i, CITY_PREFIX, maxPrefixLength);
+                addFieldPrefixes(bestRank, name, i, NAME_PREFIX, maxPrefixLength);
+                addFieldPrefixes(bestRank, tokens, i, TOKEN_PREFIX, maxPrefixLength);
+
+                searchText[i] = String.join(" ", iata, city, name, tokens);
+                for (int t = 0; t + 3 <= searchText[i].length(); t++) {
+                    trigramSets.computeIfAbsent(searchText[i].substring(t, t + 3), k -> new HashSet<>()).add(i);
+                }
+            }
+
+            prefixes = new HashMap<>(bestRank.size() * 2);
+            bestRank.forEach((prefix, ranks) -> prefixes.put(prefix, ranks.entrySet().stream()
+                    .mapToInt(e -> (e.getValue() << 24) | e.getKey())
+                    .sorted()
+                    .toArray()));
+
+            trigrams = new HashMap<>(trigramSets.size() * 2);
+            trigramSets.forEach((trigram, ids) -> trigrams.put(trigram,
+                    ids.stream().mapToInt(Integer::intValue).sorted().toArray()));
+        }
+
+        /**
+         * Подстрока: пересекаем списки триграмм запроса, начиная с самого короткого
+         */
+        List<Integer> substringMatches(String query) {
+            List<int[]> lists = new ArrayList<>();
+            for (int t = 0; t + 3 <= query.length(); t++) {
+                int[] ids = trigrams.get(query.substring(t, t + 3));
+                if (ids == null) {
+                    return List.of();
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(ids -> ids.length));
+
+            List<Integer> matches = new ArrayList<>();
+            for (int candidate : lists.get(0)) {
+                boolean inAll = true;
+                for (int l = 1; l < lists.size() && inAll; l++) {
+                    inAll = Arrays.binarySearch(lists.get(l), candidate) >= 0;
+                }
+                if (inAll && searchText[candidate].contains(query)) {
+                    matches.add(candidate);
+                }
+            }
+            return matches;
+        }
+
+        private static void addFieldPrefixes(Map<String, Map<Integer, Integer>> bestRank,
+                                             String field, int airport, int rank, int maxPrefixLength) {
+            if (field.isEmpty()) {
+                return;
+            }
+            // Строка целиком ("new york") и каждое слово отдельно ("york")
+            addPrefixes(bestRank, field, airport, rank, maxPrefixLength);
+            for (String word : field.split(" ")) {
+                addPrefixes(bestRank, word, airport, rank, maxPrefixLength);
+            }
+        }
+
+        private static void addPrefixes(Map<String, Map<Integer, Integer>> bestRank,
+                                        String word, int airport, int rank, int maxPrefixLength) {
+            int length = Math.min(word.length(), maxPrefixLength);
+            for (int end = 1; end <= length; end++) {
+                bestRank.computeIfAbsent(word.substring(0, end), k -> new HashMap<>())
+                        .merge(airport, rank, Math::min);
+            }
+        }
+    }
+
+    private static int airportOf(int posting) {
+        return posting & 0xFFFFFF;
+    }
+
+    /**
+     * Нижний регистр, без диакритики, ё → е, разделители → один пробел
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value.toLowerCase(Locale.ROOT).replace('ё', 'е'), Normalizer.Form.NFD);
+        return SEPARATORS.matcher(DIACRITICS.matcher(decomposed).replaceAll("")).replaceAll(" ").trim();
+    }
+}
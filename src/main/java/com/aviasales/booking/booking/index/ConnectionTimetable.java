@@ -0,0 +1,233 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.enums.CabinClass;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Неизменяемое расписание для Connection Scan: все SCHEDULED рейсы одним массивом,
+ * отсортированным по времени вылета (UTC).
+ *
+ * Аэропорты пронумерованы, рейсы хранятся параллельными массивами, поэтому скан
+ * месяца расписания - это линейный проход по примитивам без обращений к БД.
+ */
+public final class ConnectionTimetable {
+
+    public static final ConnectionTimetable EMPTY = new ConnectionTimetable(List.of(), List.of());
+
+    // Аэропорты
+    private final Map<String, Integer> airportIndex = new HashMap<>();
+    private final String[] airportCodes;
+    private final ZoneId[] airportZones;
+    private final String[] airportCountries;
+
+    // Рейсы (отсортированы по вылету)
+    private final long[] flightIds;
+    private final String[] flightNumbers;
+    private final int[] origins;
+    private final int[] destinations;
+    private final long[] departureMillis;
+    private final long[] arrivalMillis;
+    private final long[] economyPriceCents;
+    private final long[] businessPriceCents;
+    private final long[] firstClassPriceCents;
+    private final int[] availableEconomy;
+    private final int[] availableBusiness;
+    private final int[] availableFirstClass;
+
+    /**
+     * Откуда можно долететь в аэропорт прямым рейсом: inbound[destination] = {origins}
+     */
+    private final int[][] inbound;
+
+    public ConnectionTimetable(List<IndexedFlight> flights, List<Airport> airports) {
+        List<String> codes = new ArrayList<>();
+        List<ZoneId> zones = new ArrayList<>();
+        List<String> countries = new ArrayList<>();
+        for (Airport airport : airports) {
+            airportIndex.put(airport.getIataCode(), codes.size());
+            codes.add(airport.getIataCode());
+            zones.add(toZone(airport.getTimezone()));
+            countries.add(airport.getCountry());
+        }
+
+        List<IndexedFlight> sorted = flights.stream()
+                .filter(f -> airportIndex.containsKey(f.originCode()) && airportIndex.containsKey(f.destinationCode()))
+                .sorted(Comparator.comparing(IndexedFlight::departureTime).thenComparing(IndexedFlight::id))
+                .toList();
+
+        int n = sorted.size();
+        flightIds = new long[n];
+        flightNumbers = new String[n];
+        origins = new int[n];
+        destinations = new int[n];
+        departureMillis = new long[n];
+        arrivalMillis = new long[n];
+        economyPriceCents = new long[n];
+        businessPriceCents = new long[n];
+        firstClassPriceCents = new long[n];
+        availableEconomy = new int[n];
+        availableBusiness = new int[n];
+        availableFirstClass = new int[n];
+
+        List<Set<Integer>> inboundSets = new ArrayList<>();
+        for (int a = 0; a < codes.size(); a++) {
+            inboundSets.add(new HashSet<>());
+        }
+
+        for (int i = 0; i < n; i++) {
+            IndexedFlight f = sorted.get(i);
+            flightIds[i] = f.id();
+            flightNumbers[i] = f.flightNumber();
+            origins[i] = airportIndex.get(f.originCode());
+            destinations[i] = airportIndex.get(f.destinationCode());
+            departureMillis[i] = f.departureTime().toEpochMilli();
+            arrivalMillis[i] = f.arrivalTime().toEpochMilli();
+            economyPriceCents[i] = FlightSearchCursor.toCents(f.effectiveEconomyPrice());
+            businessPriceCents[i] = FlightSearchCursor.toCents(f.effectiveBusinessPrice());
+            firstClassPriceCents[i] = FlightSearchCursor.toCents(f.effectiveFirstClassPrice());
+            availableEconomy[i] = valueOf(f.availableEconomy());
+            availableBusiness[i] = valueOf(f.availableBusiness());
+            availableFirstClass[i] = valueOf(f.availableFirstClass());
+            inboundSets.get(destinations[i]).add(origins[i]);
+        }
+
+        airportCodes = codes.toArray(String[]::new);
+        airportZones = zones.toArray(ZoneId[]::new);
+        airportCountries = countries.toArray(String[]::new);
+        inbound = inboundSets.stream()
+                .map(set -> set.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+    }
+
+    public int size() {
+        return flightIds.length;
+    }
+
+    public int airportCount() {
+        return airportCodes.length;
+    }
+
+    public long flightId(int connection) {
+        return flightIds[connection];
+    }
+
+    public String flightNumber(int connection) {
+        return flightNumbers[connection];
+    }
+
+    public int origin(int connection) {
+        return origins[connection];
+    }
+
+    public int destination(int connection) {
+        return destinations[connection];
+    }
+
+    public long departureMillis(int connection) {
+        return departureMillis[connection];
+    }
+
+    public long arrivalMillis(int connection) {
+        return arrivalMillis[connection];
+    }
+
+    /**
+     * Свободные места в классе (PREMIUM_ECONOMY продаётся из эконома)
+     */
+    public int availableSeats(int connection, CabinClass cabinClass) {
+        return switch (cabinClass != null ? cabinClass : CabinClass.ECONOMY) {
+            case ECONOMY, PREMIUM_ECONOMY -> availableEconomy[connection];
+            case BUSINESS -> availableBusiness[connection];
+            case FIRST_CLASS -> availableFirstClass[connection];
+        };
+    }
+
+    /**
+     * Действующая цена класса в центах (та же, что в прямом поиске); NULL_PRICE_CENTS - класса нет
+     */
+    public long priceCents(int connection, CabinClass cabinClass) {
+        return switch (cabinClass != null ? cabinClass : CabinClass.ECONOMY) {
+            case ECONOMY, PREMIUM_ECONOMY -> economyPriceCents[connection];
+            case BUSINESS -> businessPriceCents[connection];
+            case FIRST_CLASS -> firstClassPriceCents[connection];
+        };
+    }
+
+    /**
+     * Номер аэропорта или -1
+     */
+    public int airport(String iataCode) {
+        return airportIndex.getOrDefault(iataCode, -1);
+    }
+
+    public String airportCode(int airport) {
+        return airportCodes[airport];
+    }
+
+    public ZoneId airportZone(int airport) {
+        return airportZones[airport];
+    }
+
+    public boolean isDomestic(int from, int to) {
+        return Objects.equals(airportCountries[from], airportCountries[to]);
+    }
+
+    /**
+     * Первый рейс с вылетом не раньше epochMillis (бинарный поиск)
+     */
+    public int firstDepartingAtOrAfter(long epochMillis) {
+        int low = 0;
+        int high = flightIds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departureMillis[mid] < epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Минимальное число перелётов до destination для каждого аэропорта (не больше maxLegs)
+     * Обратный BFS по графу маршрутов; Integer.MAX_VALUE - недостижим
+     */
+    public int[] legsToDestination(int destination, int maxLegs) {
+        int[] legs = new int[airportCodes.length];
+        Arrays.fill(legs, Integer.MAX_VALUE);
+        legs[destination] = 0;
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(destination);
+        while (!queue.isEmpty()) {
+            int airport = queue.poll();
+            if (legs[airport] >= maxLegs) {
+                continue;
+            }
+            for (int from : inbound[airport]) {
+                if (legs[from] == Integer.MAX_VALUE) {
+                    legs[from] = legs[airport] + 1;
+                    queue.add(from);
+                }
+            }
+        }
+        return legs;
+    }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static ZoneId toZone(String timezone) {
+        try {
+            return timezone != null ? ZoneId.of(timezone) : ZoneOffset.UTC;
+        } catch (Exception e) {
+            return ZoneOffset.UTC;
+        }
+    }
+}
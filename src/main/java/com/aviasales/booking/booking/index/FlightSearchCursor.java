@@ -0,0 +1,86 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.FlightSortBy;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор keyset-пагинации поиска рейсов
+ * Кодирует (сортировка, ключ сортировки, id последнего рейса) в base64url
+ *
+ * Ключ сортировки - long: действующая цена класса в центах (PRICE), epoch millis вылета (TIME),
+ * длительность в минутах (DURATION). Порядок всегда (ключ, id), поэтому стабилен.
+ */
+public record FlightSearchCursor(FlightSortBy sortBy, long sortKey, long flightId) {
+
+    /**
+     * Цена для рейсов без тарифа - максимум колонки NUMERIC(10, 2), такие рейсы идут в конец
+     */
+    public static final long NULL_PRICE_CENTS = 9_999_999_999L;
+
+    private static final String VERSION = "v1";
+
+    /**
+     * Начальная позиция - перед первым рейсом
+     */
+    public static FlightSearchCursor first(FlightSortBy sortBy) {
+        return new FlightSearchCursor(sortBy, Long.MIN_VALUE, Long.MIN_VALUE);
+    }
+
+    public static FlightSearchCursor after(Flight flight, FlightSortBy sortBy, CabinClass cabinClass) {
+        return new FlightSearchCursor(sortBy, sortKeyOf(flight, sortBy, cabinClass), flight.getId());
+    }
+
+    public String encode() {
+        String raw = VERSION + ":" + sortBy + ":" + sortKey + ":" + flightId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static FlightSearchCursor decode(String token, FlightSortBy expectedSortBy) {
+        FlightSearchCursor cursor;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 4 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException();
+            }
+            cursor = new FlightSearchCursor(
+                    FlightSortBy.valueOf(parts[1]),
+                    Long.parseLong(parts[2]),
+                    Long.parseLong(parts[3])
+            );
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid search cursor");
+        }
+
+        if (cursor.sortBy() != expectedSortBy) {
+            throw new IllegalArgumentException(
+                    "Search cursor was issued for sort " + cursor.sortBy() + ", not " + expectedSortBy
+            );
+        }
+        return cursor;
+    }
+
+    /**
+     * Ключ сортировки рейса (должен совпадать с ключом в FlightSearchIndex)
+     */
+    public static long sortKeyOf(Flight flight, FlightSortBy sortBy, CabinClass cabinClass) {
+        return switch (sortBy) {
+            case TIME -> flight.getDepartureTime().toEpochMilli();
+            case DURATION -> flight.getDurationMinutes() != null ? flight.getDurationMinutes() : 0;
+            case PRICE -> toCents(flight.getEffectivePrice(cabinClass));
+        };
+    }
+
+    public static long toCents(BigDecimal price) {
+        return price != null ? price.movePointRight(2).longValue() : NULL_PRICE_CENTS;
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,554 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.FlightSortBy;
+import com.aviasales.booking.booking.enums.FlightStatus;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory индекс SCHEDULED рейсов по ключу (origin, destination, UTC-день вылета)
+ *
+ * Каждый бакет - неизменяемый набор параллельных массивов, отсортированных по времени вылета:
+ * id рейсов, время вылета, длительность, действующие цены по классам и счётчики мест.
+ * Изменения применяются copy-on-write после коммита транзакции, чтение идёт без блокировок.
+ * Полная перезагрузка строит новый снапшот в стороне и публикует его одной записью.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FlightSearchIndex {
+
+    private final FlightRepository flightRepository;
+    private final FlightSearchResultCache resultCache;
+
+    @Value("${search.index.enabled:true}")
+    private boolean enabled;
+
+    private volatile Snapshot snapshot = Snapshot.empty();
+
+    private volatile boolean ready = false;
+
+    // Изменения, закоммиченные во время загрузки снапшота: накатываются на него перед публикацией
+    private boolean loading = false;
+    private final List<Consumer<Snapshot>> pendingDuringLoad = new ArrayList<>();
+
+    // ═══════════════════════════════════════
+    // ЗАГРУЗКА
+    // ═══════════════════════════════════════
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            log.info("Flight search index is disabled, search will use the database");
+            return;
+        }
+
+        int flights = reload();
+        ready = true;
+        log.info("Flight search index loaded: {} flights in {} route-days", flights, snapshot.buckets().size());
+    }
+
+    /**
+     * Периодически перечитываем индекс из БД: коммиты других инстансов сюда не доходят
+     */
+    @Scheduled(fixedDelayString = "${search.index.resync-ms:300000}",
+            initialDelayString = "${search.index.resync-ms:300000}")
+    public void resync() {
+        if (!enabled || !ready) {
+            return;
+        }
+        int flights = reload();
+        log.debug("Flight search index resynced: {} flights in {} route-days", flights, snapshot.buckets().size());
+    }
+
+    /**
+     * Загрузить снапшот и атомарно подменить им индекс
+     * Новые карты собираются в стороне, поиск до публикации читает старый снапшот.
+     * Обновления, закоммиченные во время чтения, буферизуются и накатываются на новый снапшот до публикации,
+     * иначе их затёр бы снапшот, прочитанный до этих коммитов
+     */
+    private int reload() {
+        synchronized (this) {
+            loading = true;
+            pendingDuringLoad.clear();
+        }
+
+        List<IndexedFlight> flights;
+        try {
+            Instant from = LocalDate.now(ZoneOffset.UTC).atStartOfDay(ZoneOffset.UTC).toInstant();
+            flights = flightRepository.findIndexedFlights(FlightStatus.SCHEDULED, from);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                Snapshot current = snapshot;
+                pendingDuringLoad.forEach(action -> action.accept(current));
+                pendingDuringLoad.clear();
+                loading = false;
+            }
+            throw e;
+        }
+
+        Snapshot fresh = Snapshot.empty();
+        flights.forEach(flight -> put(fresh, flight));
+
+        synchronized (this) {
+            pendingDuringLoad.forEach(action -> action.accept(fresh));
+            pendingDuringLoad.clear();
+            loading = false;
+            snapshot = fresh;
+            resultCache.clear();
+        }
+        return flights.size();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ═══════════════════════════════════════
+    // ПОИСК
+    // ═══════════════════════════════════════
+
+    /**
+     * Найти id рейсов для страницы выдачи
+     * Возвращает id в порядке сортировки и общее количество подходящих рейсов
+     */
+    public SearchSlice search(String originCode, String destinationCode, LocalDate date,
+                              int passengers, FlightSortBy sortBy, CabinClass cabinClass,
+                              long offset, int limit) {
+        RouteDayBucket bucket = snapshot.buckets().get(new RouteDayKey(originCode, destinationCode, date.toEpochDay()));
+        if (bucket == null) {
+            return new SearchSlice(List.of(), 0);
+        }
+
+        List<Integer> matches = IntStream.range(0, bucket.size())
+                .filter(i -> bucket.availableSeats[i] >= passengers)
+                .boxed()
+                .sorted(comparator(bucket, sortBy, cabinClass))
+                .toList();
+
+        List<Long> ids = matches.stream()
+                .skip(offset)
+                .limit(limit)
+                .map(i -> bucket.ids[i])
+                .toList();
+
+        return new SearchSlice(ids, matches.size());
+    }
+
+    /**
+     * Поиск сразу по нескольким аэропортам вылета и прилёта (ближайшие аэропорты, метрополия)
+     * Бакеты всех пар origin × destination сливаются в одну выдачу с тем же порядком (ключ, id)
+     */
+    public SearchSlice searchRoutes(Collection<String> originCodes, Collection<String> destinationCodes,
+                                    LocalDate date, int passengers, FlightSortBy sortBy, CabinClass cabinClass,
+                                    long offset, int limit) {
+        long epochDay = date.toEpochDay();
+        Map<RouteDayKey, RouteDayBucket> buckets = snapshot.buckets();
+        List<long[]> matches = new ArrayList<>();
+
+        for (String originCode : originCodes) {
+            for (String destinationCode : destinationCodes) {
+                RouteDayBucket bucket = buckets.get(new RouteDayKey(originCode, destinationCode, epochDay));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size(); i++) {
+                    if (bucket.availableSeats[i] >= passengers) {
+                        matches.add(new long[]{bucket.sortKey(i, sortBy, cabinClass), bucket.ids[i]});
+                    }
+                }
+            }
+        }
+
+        matches.sort(Comparator.<long[]>comparingLong(match -> match[0]).thenComparingLong(match -> match[1]));
+
+        List<Long> ids = matches.stream()
+                .skip(offset)
+                .limit(limit)
+                .map(match -> match[1])
+                .toList();
+
+        return new SearchSlice(ids, matches.size());
+    }
+
+    /**
+     * Keyset-поиск: рейсы строго после курсора в порядке (ключ сортировки, id), без подсчёта total
+     * Возвращает до limit + 1 id, чтобы вызывающий понял, есть ли следующая страница
+     */
+    public List<Long> searchAfter(String originCode, String destinationCode, LocalDate date,
+                                  int passengers, CabinClass cabinClass,
+                                  FlightSearchCursor cursor, int limit) {
+        RouteDayBucket bucket = snapshot.buckets().get(new RouteDayKey(originCode, destinationCode, date.toEpochDay()));
+        if (bucket == null) {
+            return List.of();
+        }
+
+        FlightSortBy sortBy = cursor.sortBy();
+        return IntStream.range(0, bucket.size())
+                .filter(i -> bucket.availableSeats[i] >= passengers)
+                .filter(i -> {
+                    long key = bucket.sortKey(i, sortBy, cabinClass);
+                    return key > cursor.sortKey() || (key == cursor.sortKey() && bucket.ids[i] > cursor.flightId());
+                })
+                .boxed()
+                .sorted(comparator(bucket, sortBy, cabinClass))
+                .limit(limit + 1L)
+                .map(i -> bucket.ids[i])
+                .toList();
+    }
+
+    private Comparator<Integer> comparator(RouteDayBucket bucket, FlightSortBy sortBy, CabinClass cabinClass) {
+        return Comparator.<Integer>comparingLong(i -> bucket.sortKey(i, sortBy, cabinClass))
+                .thenComparingLong(i -> bucket.ids[i]);
+    }
+
+    // ═══════════════════════════════════════
+    // ОБНОВЛЕНИЕ
+    // ═══════════════════════════════════════
+
+    /**
+     * Добавить или переиндексировать рейс (после коммита текущей транзакции)
+     */
+    public void upsert(Flight flight) {
+        if (flight.getStatus() != FlightStatus.SCHEDULED) {
+            remove(flight.getId());
+            return;
+        }
+        IndexedFlight indexed = IndexedFlight.from(flight);
+        afterCommit(target -> apply(target, indexed));
+    }
+
+    /**
+     * Обновить счётчики мест и действующие цены (бронирование, отмена, истечение)
+     */
+    public void updateSeats(Flight flight) {
+        Long id = flight.getId();
+        int seats = valueOf(flight.getAvailableSeats());
+        int economy = valueOf(flight.getAvailableEconomy());
+        int business = valueOf(flight.getAvailableBusiness());
+        int firstClass = valueOf(flight.getAvailableFirstClass());
+        long[] prices = {
+                FlightSearchCursor.toCents(flight.getEffectiveEconomyPrice()),
+                FlightSearchCursor.toCents(flight.getEffectiveBusinessPrice()),
+                FlightSearchCursor.toCents(flight.getEffectiveFirstClassPrice())
+        };
+
+        afterCommit(target -> applySeats(target, id, seats, economy, business, firstClass, prices));
+    }
+
+    /**
+     * Убрать рейс из индекса (отмена или удаление)
+     */
+    public void remove(Long flightId) {
+        afterCommit(target -> applyRemove(target, flightId));
+    }
+
+    /**
+     * Раз в сутки выбрасываем прошедшие дни
+     */
+    @Scheduled(cron = "0 5 0 * * *", zone = "UTC")
+    public synchronized void evictPastDays() {
+        long today = LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        Snapshot current = snapshot;
+        current.buckets().keySet().removeIf(key -> key.epochDay() < today);
+        current.locations().values().removeIf(key -> key.epochDay() < today);
+        resultCache.evictBefore(today);
+        log.debug("Flight search index: evicted past days, {} route-days left", current.buckets().size());
+    }
+
+    private synchronized void apply(Snapshot target, IndexedFlight flight) {
+        RouteDayKey previous = put(target, flight);
+        RouteDayKey key = target.locations().get(flight.id());
+        if (previous != null && !previous.equals(key)) {
+            resultCache.onRouteDayChanged(previous);
+        }
+        resultCache.onRouteDayChanged(key);
+    }
+
+    /**
+     * Положить рейс в снапшот, вернуть его прежний route-day (или null)
+     */
+    private static RouteDayKey put(Snapshot target, IndexedFlight flight) {
+        RouteDayKey key = new RouteDayKey(
+                flight.originCode(),
+                flight.destinationCode(),
+                LocalDate.ofInstant(flight.departureTime(), ZoneOffset.UTC).toEpochDay()
+        );
+
+        RouteDayKey previous = target.locations().put(flight.id(), key);
+        if (previous != null && !previous.equals(key)) {
+            target.buckets().computeIfPresent(previous, (k, bucket) -> bucket.without(flight.id()));
+        }
+        target.buckets().compute(key, (k, bucket) -> (bucket == null ? RouteDayBucket.EMPTY : bucket).with(flight));
+        return previous;
+    }
+
+    private synchronized void applySeats(Snapshot target, Long flightId, int seats, int economy, int business,
+                                         int firstClass, long[] prices) {
+        Map<RouteDayKey, RouteDayBucket> buckets = target.buckets();
+        RouteDayKey key = target.locations().get(flightId);
+        if (key == null) {
+            return;
+        }
+
+        int previousSeats = seatsOf(buckets, key, flightId);
+        boolean pricesChanged = !samePrices(buckets, key, flightId, prices);
+        buckets.computeIfPresent(key, (k, bucket) -> bucket.withSeats(flightId, seats, economy, business, firstClass, prices));
+
+        // Новая цена меняет порядок PRICE-выдачи и сами ответы - сбрасываем весь route-day
+        if (pricesChanged) {
+            resultCache.onRouteDayChanged(key);
+        } else if (previousSeats != seats) {
+            resultCache.onSeatsChanged(key, flightId, previousSeats, seats);
+        }
+    }
+
+    private synchronized void applyRemove(Snapshot target, Long flightId) {
+        RouteDayKey key = target.locations().remove(flightId);
+        if (key != null) {
+            int seats = seatsOf(target.buckets(), key, flightId);
+            target.buckets().computeIfPresent(key, (k, bucket) -> bucket.without(flightId));
+            resultCache.onFlightRemoved(key, flightId, seats);
+        }
+    }
+
+    private static int seatsOf(Map<RouteDayKey, RouteDayBucket> buckets, RouteDayKey key, long flightId) {
+        RouteDayBucket bucket = buckets.get(key);
+        int i = bucket != null ? bucket.indexOf(flightId) : -1;
+        return i >= 0 ? bucket.availableSeats[i] : 0;
+    }
+
+    /**
+     * Совпадают ли цены рейса в индексе с переданными
+     */
+    private static boolean samePrices(Map<RouteDayKey, RouteDayBucket> buckets, RouteDayKey key, long flightId,
+                                      long[] prices) {
+        RouteDayBucket bucket = buckets.get(key);
+        int i = bucket != null ? bucket.indexOf(flightId) : -1;
+        return i >= 0
+                && bucket.economyPriceCents[i] == prices[0]
+                && bucket.businessPriceCents[i] == prices[1]
+                && bucket.firstClassPriceCents[i] == prices[2];
+    }
+
+    private void afterCommit(Consumer<Snapshot> action) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(action);
+                }
+            });
+        } else {
+            dispatch(action);
+        }
+    }
+
+    private synchronized void dispatch(Consumer<Snapshot> action) {
+        if (loading) {
+            pendingDuringLoad.add(action);
+        } else {
+            action.accept(snapshot);
+        }
+    }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    // ═══════════════════════════════════════
+    // СТРУКТУРЫ
+    // ═══════════════════════════════════════
+
+    public record RouteDayKey(String originCode, String destinationCode, long epochDay) {
+    }
+
+    public record SearchSlice(List<Long> flightIds, long total) {
+    }
+
+    /**
+     * Опубликованное состояние индекса: route-day -> бакет и рейс -> его route-day
+     */
+    private record Snapshot(ConcurrentHashMap<RouteDayKey, RouteDayBucket> buckets,
+                            ConcurrentHashMap<Long, RouteDayKey> locations) {
+
+        static Snapshot empty() {
+            return new Snapshot(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Рейсы одного маршрута за один день, отсортированные по (вылет, id)
+     */
+    static final class RouteDayBucket {
+
+        static final RouteDayBucket EMPTY = new RouteDayBucket(0);
+
+        final long[] ids;
+        final long[] departureEpochMillis;
+        final int[] durationMinutes;
+        final long[] economyPriceCents;
+        final long[] businessPriceCents;
+        final long[] firstClassPriceCents;
+        final int[] availableSeats;
+        final int[] availableEconomy;
+        final int[] availableBusiness;
+        final int[] availableFirstClass;
+
+        private RouteDayBucket(int size) {
+            ids = new long[size];
+            departureEpochMillis = new long[size];
+            durationMinutes = new int[size];
+            economyPriceCents = new long[size];
+            businessPriceCents = new long[size];
+            firstClassPriceCents = new long[size];
+            availableSeats = new int[size];
+            availableEconomy = new int[size];
+            availableBusiness = new int[size];
+            availableFirstClass = new int[size];
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        long sortKey(int i, FlightSortBy sortBy, CabinClass cabinClass) {
+            if (sortBy == null) {
+                sortBy = FlightSortBy.PRICE;
+            }
+            return switch (sortBy) {
+                case TIME -> departureEpochMillis[i];
+                case DURATION -> durationMinutes[i];
+                case PRICE -> switch (cabinClass != null ? cabinClass : CabinClass.ECONOMY) {
+                    case ECONOMY, PREMIUM_ECONOMY -> economyPriceCents[i];
+                    case BUSINESS -> businessPriceCents[i];
+                    case FIRST_CLASS -> firstClassPriceCents[i];
+                };
+            };
+        }
+
+        int indexOf(long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        RouteDayBucket with(IndexedFlight flight) {
+            int skip = indexOf(flight.id());
+            long departure = flight.departureTime().toEpochMilli();
+
+            int insertAt = 0;
+            while (insertAt < ids.length
+                    && (departureEpochMillis[insertAt] < departure
+                    || (departureEpochMillis[insertAt] == departure && ids[insertAt] < flight.id()))) {
+                insertAt++;
+            }
+
+            RouteDayBucket result = new RouteDayBucket(skip >= 0 ? ids.length : ids.length + 1);
+            int target = 0;
+            for (int i = 0; i <= ids.length; i++) {
+                if (i == insertAt) {
+                    result.set(target++, flight);
+                }
+                if (i < ids.length && i != skip) {
+                    result.copy(target++, this, i);
+                }
+            }
+            return result;
+        }
+
+        RouteDayBucket without(long id) {
+            int skip = indexOf(id);
+            if (skip < 0) {
+                return this;
+            }
+            if (ids.length == 1) {
+                return null;
+            }
+
+            RouteDayBucket result = new RouteDayBucket(ids.length - 1);
+            int target = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (i != skip) {
+                    result.copy(target++, this, i);
+                }
+            }
+            return result;
+        }
+
+        RouteDayBucket withSeats(long id, int seats, int economy, int business, int firstClass, long[] prices) {
+            int i = indexOf(id);
+            if (i < 0) {
+                return this;
+            }
+
+            RouteDayBucket result = new RouteDayBucket(ids.length);
+            for (int j = 0; j < ids.length; j++) {
+                result.copy(j, this, j);
+            }
+            result.availableSeats[i] = seats;
+            result.availableEconomy[i] = economy;
+            result.availableBusiness[i] = business;
+            result.availableFirstClass[i] = firstClass;
+            result.economyPriceCents[i] = prices[0];
+            result.businessPriceCents[i] = prices[1];
+            result.firstClassPriceCents[i] = prices[2];
+            return result;
+        }
+
+        private void set(int i, IndexedFlight flight) {
+            ids[i] = flight.id();
+            departureEpochMillis[i] = flight.departureTime().toEpochMilli();
+            durationMinutes[i] = (int) Duration.between(flight.departureTime(), flight.arrivalTime()).toMinutes();
+            economyPriceCents[i] = FlightSearchCursor.toCents(flight.effectiveEconomyPrice());
+            businessPriceCents[i] = FlightSearchCursor.toCents(flight.effectiveBusinessPrice());
+            firstClassPriceCents[i] = FlightSearchCursor.toCents(flight.effectiveFirstClassPrice());
+            availableSeats[i] = valueOf(flight.availableSeats());
+            availableEconomy[i] = valueOf(flight.availableEconomy());
+            availableBusiness[i] = valueOf(flight.availableBusiness());
+            availableFirstClass[i] = valueOf(flight.availableFirstClass());
+        }
+
+        private void copy(int i, RouteDayBucket source, int j) {
+            ids[i] = source.ids[j];
+            departureEpochMillis[i] = source.departureEpochMillis[j];
+            durationMinutes[i] = source.durationMinutes[j];
+            economyPriceCents[i] = source.economyPriceCents[j];
+            businessPriceCents[i] = source.businessPriceCents[j];
+            firstClassPriceCents[i] = source.firstClassPriceCents[j];
+            availableSeats[i] = source.availableSeats[j];
+            availableEconomy[i] = source.availableEconomy[j];
+            availableBusiness[i] = source.availableBusiness[j];
+            availableFirstClass[i] = source.availableFirstClass[j];
+        }
+    }
+}
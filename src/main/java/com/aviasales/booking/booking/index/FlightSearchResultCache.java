@@ -0,0 +1,266 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.dto.request.FlightSearchRequest;
+import com.aviasales.booking.booking.dto.response.FlightResponse;
+import com.aviasales.booking.booking.dto.response.SearchCacheStatsResponse;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.FlightSortBy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш страниц выдачи поиска рейсов
+ *
+ * Ключ - нормализованный запрос (маршрут, дата, пассажиры, класс, сортировка, страница).
+ * Инвалидация точечная и идёт из FlightSearchIndex после коммита:
+ * - изменение мест рейса сбрасывает только страницы, где этот рейс есть, и запросы,
+ *   для которых рейс перешёл порог по числу пассажиров (появился или пропал из выдачи);
+ * - изменение/отмена рейса сбрасывает страницы его маршрута и дня.
+ *
+ * Чтобы не положить в кэш устаревшую страницу, посчитанную параллельно с инвалидацией,
+ * у каждого маршрута-дня есть версия: put проходит, только если версия не изменилась.
+ */
+@Slf4j
+@Component
+public class FlightSearchResultCache {
+
+    @Value("${search.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${search.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final LinkedHashMap<SearchKey, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<FlightSearchIndex.RouteDayKey, Set<SearchKey>> keysByRouteDay = new HashMap<>();
+    private final ConcurrentHashMap<FlightSearchIndex.RouteDayKey, Long> versions = new ConcurrentHashMap<>();
+
+    // Метрики
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder rejectedPuts = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    // ═══════════════════════════════════════
+    // ЧТЕНИЕ / ЗАПИСЬ
+    // ═══════════════════════════════════════
+
+    /**
+     * Страница из кэша или null
+     */
+    public Page<FlightResponse> get(SearchKey key) {
+        if (!enabled) {
+            return null;
+        }
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (entry.expiresAtMillis() < System.currentTimeMillis()) {
+                removeEntry(key);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.page();
+        }
+    }
+
+    /**
+     * Версия маршрута-дня: берётся до расчёта страницы и передаётся в put
+     */
+    public long version(SearchKey key) {
+        return versions.getOrDefault(key.routeDay(), 0L);
+    }
+
+    public void put(SearchKey key, long version, Page<FlightResponse> page) {
+        if (!enabled) {
+            return;
+        }
+
+        Set<Long> flightIds = new HashSet<>();
+        page.getContent().forEach(f -> flightIds.add(f.getId()));
+        Entry entry = new Entry(page, flightIds, System.currentTimeMillis() + ttlSeconds * 1000);
+
+        synchronized (this) {
+            if (version(key) != version) {
+                rejectedPuts.increment();
+                return;
+            }
+
+            entries.put(key, entry);
+            keysByRouteDay.computeIfAbsent(key.routeDay(), k -> new HashSet<>()).add(key);
+            puts.increment();
+
+            while (entries.size() > maxEntries) {
+                SearchKey eldest = entries.keySet().iterator().next();
+                removeEntry(eldest);
+                sizeEvictions.increment();
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════
+    // ИНВАЛИДАЦИЯ
+    // ═══════════════════════════════════════
+
+    /**
+     * У рейса изменилось число свободных мест
+     */
+    public void onSeatsChanged(FlightSearchIndex.RouteDayKey routeDay, long flightId, int previousSeats, int seats) {
+        int low = Math.min(previousSeats, seats);
+        int high = Math.max(previousSeats, seats);
+        invalidate(routeDay, (key, entry) -> entry.flightIds().contains(flightId)
+                || (key.passengers() > low && key.passengers() <= high));
+    }
+
+    /**
+     * Рейс убран из выдачи (отмена, удаление, смена статуса)
+     */
+    public void onFlightRemoved(FlightSearchIndex.RouteDayKey routeDay, long flightId, int seats) {
+        invalidate(routeDay, (key, entry) -> entry.flightIds().contains(flightId) || key.passengers() <= seats);
+    }
+
+    /**
+     * Рейс добавлен или изменён: цена/время могли поменять порядок, сбрасываем весь маршрут-день
+     */
+    public void onRouteDayChanged(FlightSearchIndex.RouteDayKey routeDay) {
+        invalidate(routeDay, (key, entry) -> true);
+    }
+
+    /**
+     * Выбросить прошедшие дни
+     */
+    public synchronized void evictBefore(long epochDay) {
+        List<FlightSearchIndex.RouteDayKey> past = keysByRouteDay.keySet().stream()
+                .filter(routeDay -> routeDay.epochDay() < epochDay)
+                .toList();
+        past.forEach(routeDay -> new ArrayList<>(keysByRouteDay.get(routeDay)).forEach(this::removeEntry));
+        versions.keySet().removeIf(routeDay -> routeDay.epochDay() < epochDay);
+    }
+
+    public synchronized void clear() {
+        versions.replaceAll((routeDay, version) -> version + 1);
+        entries.clear();
+        keysByRouteDay.clear();
+    }
+
+    private void invalidate(FlightSearchIndex.RouteDayKey routeDay, EntryPredicate predicate) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (this) {
+            versions.merge(routeDay, 1L, Long::sum);
+
+            Set<SearchKey> keys = keysByRouteDay.get(routeDay);
+            if (keys == null) {
+                return;
+            }
+
+            List<SearchKey> affected = keys.stream()
+                    .filter(key -> predicate.test(key, entries.get(key)))
+                    .toList();
+            affected.forEach(this::removeEntry);
+            invalidations.add(affected.size());
+
+            if (!affected.isEmpty()) {
+                log.debug("Search cache: invalidated {} pages for {}", affected.size(), routeDay);
+            }
+        }
+    }
+
+    private void removeEntry(SearchKey key) {
+        entries.remove(key);
+        Set<SearchKey> keys = keysByRouteDay.get(key.routeDay());
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByRouteDay.remove(key.routeDay());
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════
+    // МЕТРИКИ
+    // ═══════════════════════════════════════
+
+    public SearchCacheStatsResponse stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+
+        return SearchCacheStatsResponse.builder()
+                .enabled(enabled)
+                .size(size)
+                .maxEntries(maxEntries)
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRate(requests > 0 ? (double) hitCount / requests : 0.0)
+                .puts(puts.sum())
+                .rejectedPuts(rejectedPuts.sum())
+                .invalidations(invalidations.sum())
+                .sizeEvictions(sizeEvictions.sum())
+                .expirations(expirations.sum())
+                .build();
+    }
+
+    // ═══════════════════════════════════════
+    // СТРУКТУРЫ
+    // ═══════════════════════════════════════
+
+    /**
+     * Нормализованный ключ поиска
+     */
+    public record SearchKey(String originCode, String destinationCode, LocalDate departureDate,
+                            int passengers, CabinClass cabinClass, FlightSortBy sortBy,
+                            int page, int size) {
+
+        public static SearchKey of(FlightSearchRequest request, Pageable pageable) {
+            return new SearchKey(
+                    request.getOriginCode().toUpperCase(),
+                    request.getDestinationCode().toUpperCase(),
+                    request.getDepartureDate(),
+                    request.getPassengers(),
+                    request.getCabinClass() != null ? request.getCabinClass() : CabinClass.ECONOMY,
+                    request.getSortBy() != null ? request.getSortBy() : FlightSortBy.PRICE,
+                    pageable.getPageNumber(),
+                    pageable.getPageSize()
+            );
+        }
+
+        FlightSearchIndex.RouteDayKey routeDay() {
+            return new FlightSearchIndex.RouteDayKey(originCode, destinationCode, departureDate.toEpochDay());
+        }
+    }
+
+    private record Entry(Page<FlightResponse> page, Set<Long> flightIds, long expiresAtMillis) {
+    }
+
+    @FunctionalInterface
+    private interface EntryPredicate {
+        boolean test(SearchKey key, Entry entry);
+    }
+}
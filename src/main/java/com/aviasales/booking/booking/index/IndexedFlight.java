@@ -0,0 +1,49 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.entity.Flight;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Снимок полей рейса, которые нужны поисковому индексу
+ * Загружается одним JPQL-запросом без гидрации сущностей
+ */
+public record IndexedFlight(
+        Long id,
+        String flightNumber,
+        String originCode,
+        String destinationCode,
+        Instant departureTime,
+        Instant arrivalTime,
+        BigDecimal basePrice,
+        BigDecimal businessPrice,
+        BigDecimal effectiveEconomyPrice,
+        BigDecimal effectiveBusinessPrice,
+        BigDecimal effectiveFirstClassPrice,
+        Integer availableSeats,
+        Integer availableEconomy,
+        Integer availableBusiness,
+        Integer availableFirstClass
+) {
+
+    public static IndexedFlight from(Flight flight) {
+        return new IndexedFlight(
+                flight.getId(),
+                flight.getFlightNumber(),
+                flight.getOrigin().getIataCode(),
+                flight.getDestination().getIataCode(),
+                flight.getDepartureTime(),
+                flight.getArrivalTime(),
+                flight.getBasePrice(),
+                flight.getBusinessPrice(),
+                flight.getEffectiveEconomyPrice(),
+                flight.getEffectiveBusinessPrice(),
+                flight.getEffectiveFirstClassPrice(),
+                flight.getAvailableSeats(),
+                flight.getAvailableEconomy(),
+                flight.getAvailableBusiness(),
+                flight.getAvailableFirstClass()
+        );
+    }
+}
@@ -0,0 +1,208 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.repo.AirportRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Пространственный индекс аэропортов: "в радиусе R км" и "все аэропорты города" (метрополия)
+ *
+ * Аэропорты разложены по сетке 1° × 1° (около 111 км по широте). Запрос радиуса перебирает
+ * только клетки, пересекающие ограничивающий прямоугольник, и отсеивает лишнее по haversine -
+ * это десятки сравнений вместо прохода по всем аэропортам и без обращения к БД.
+ *
+ * Снимок неизменяемый и подменяется целиком при обновлении.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NearbyAirportIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    private final AirportRepository airportRepository;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    // ═══════════════════════════════════════
+    // ЗАГРУЗКА
+    // ═══════════════════════════════════════
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${search.airports.refresh-ms:300000}",
+            initialDelayString = "${search.airports.refresh-ms:300000}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        long start = System.currentTimeMillis();
+        List<Airport> airports = airportRepository.findByIsActiveTrue();
+        snapshot = new Snapshot(airports);
+        log.info("Nearby airport index built: {} airports, {} grid cells in {} ms",
+                airports.size(), snapshot.cells.size(), System.currentTimeMillis() - start);
+    }
+
+    // ═══════════════════════════════════════
+    // ПОИСК
+    // ═══════════════════════════════════════
+
+    /**
+     * Набор IATA-кодов для поиска: сам аэропорт, аэропорты того же города (metroArea)
+     * и аэропорты в радиусе radiusKm от него. Неизвестный код возвращается как есть.
+     */
+    public Set<String> expand(String iataCode, int radiusKm, boolean metroArea) {
+        Snapshot current = snapshot;
+        Set<String> codes = new LinkedHashSet<>();
+        codes.add(iataCode);
+
+        Integer airport = current.byCode.get(iataCode);
+        if (airport == null) {
+            return codes;
+        }
+
+        if (metroArea) {
+            for (int other : current.byCity.getOrDefault(current.cityKeys[airport], new int[0])) {
+                codes.add(current.codes[other]);
+            }
+        }
+        if (radiusKm > 0 && current.hasLocation[airport]) {
+            for (int other : current.within(current.latitudes[airport], current.longitudes[airport], radiusKm)) {
+                codes.add(current.codes[other]);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Расстояние по большому кругу (haversine), км
+     */
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // ═══════════════════════════════════════
+    // СНИМОК
+    // ═══════════════════════════════════════
+
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(List.of());
+
+        final String[] codes;
+        final double[] latitudes;
+        final double[] longitudes;
+        final boolean[] hasLocation;
+        final String[] cityKeys;
+
+        final Map<String, Integer> byCode = new HashMap<>();
+
+        /**
+         * Город|страна → аэропорты города
+         */
+        final Map<String, int[]> byCity;
+
+        /**
+         * Клетка сетки (широта + 90) * 360 + (долгота + 180) → аэропорты клетки
+         */
+        final Map<Integer, int[]> cells;
+
+        Snapshot(List<Airport> airports) {
+            int n = airports.size();
+            codes = new String[n];
+            latitudes = new double[n];
+            longitudes = new double[n];
+            hasLocation = new boolean[n];
+            cityKeys = new String[n];
+
+            Map<String, List<Integer>> cities = new HashMap<>();
+            Map<Integer, List<Integer>> grid = new HashMap<>();
+
+            for (int i = 0; i < n; i++) {
+                Airport airport = airports.get(i);
+                codes[i] = airport.getIataCode();
+                byCode.put(codes[i], i);
+
+                cityKeys[i] = AirportAutocompleteIndex.normalize(airport.getCity())
+                        + "|" + AirportAutocompleteIndex.normalize(airport.getCountry());
+                cities.computeIfAbsent(cityKeys[i], k -> new ArrayList<>()).add(i);
+
+                if (airport.getLatitude() != null && airport.getLongitude() != null) {
+                    hasLocation[i] = true;
+                    latitudes[i] = airport.getLatitude().doubleValue();
+                    longitudes[i] = airport.getLongitude().doubleValue();
+                    grid.computeIfAbsent(cell(latCell(latitudes[i]), lonCell(longitudes[i])), k -> new ArrayList<>()).add(i);
+                }
+            }
+
+            byCity = toArrays(cities);
+            cells = toArrays(grid);
+        }
+
+        /**
+         * Аэропорты в радиусе: клетки ограничивающего прямоугольника + точная проверка расстояния
+         */
+        List<Integer> within(double latitude, double longitude, double radiusKm) {
+            double dLat = radiusKm / KM_PER_DEGREE;
+            double cosLat = Math.cos(Math.toRadians(latitude));
+            // У полюса прямоугольник охватывает все долготы
+            double dLon = cosLat > 1e-6 ? dLat / cosLat : 360;
+
+            int latFrom = latCell(latitude - dLat);
+            int latTo = latCell(latitude + dLat);
+            int lonSpan = dLon >= 180 ? 360 : (int) Math.floor(longitude + dLon) - (int) Math.floor(longitude - dLon) + 1;
+            int lonFrom = dLon >= 180 ? 0 : lonCell(longitude - dLon);
+
+            List<Integer> result = new ArrayList<>();
+            for (int lat = latFrom; lat <= latTo; lat++) {
+                for (int step = 0; step < Math.min(lonSpan, 360); step++) {
+                    // Через антимеридиан: клетки долготы идут по кругу
+                    int[] airports = cells.get(cell(lat, (lonFrom + step) % 360));
+                    if (airports == null) {
+                        continue;
+                    }
+                    for (int a : airports) {
+                        if (distanceKm(latitude, longitude, latitudes[a], longitudes[a]) <= radiusKm) {
+                            result.add(a);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static int latCell(double latitude) {
+            return Math.max(0, Math.min(179, (int) Math.floor(latitude) + 90));
+        }
+
+        private static int lonCell(double longitude) {
+            return Math.floorMod((int) Math.floor(longitude) + 180, 360);
+        }
+
+        private static int cell(int latCell, int lonCell) {
+            return latCell * 360 + lonCell;
+        }
+
+        private static <K> Map<K, int[]> toArrays(Map<K, List<Integer>> source) {
+            Map<K, int[]> result = new HashMap<>(source.size() * 2);
+            source.forEach((key, ids) -> result.put(key, ids.stream().mapToInt(Integer::intValue).toArray()));
+            return result;
+        }
+    }
+}
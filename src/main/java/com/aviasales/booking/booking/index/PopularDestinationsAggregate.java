@@ -0,0 +1,251 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.dto.response.PopularDestinationResponse;
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.entity.Booking;
+import com.aviasales.booking.booking.entity.Ticket;
+import com.aviasales.booking.booking.enums.BookingStatus;
+import com.aviasales.booking.booking.enums.DestinationRanking;
+import com.aviasales.booking.booking.repo.AirportRepository;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.repo.TicketRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики популярности направлений, которые обновляются на событиях, а не GROUP BY на каждый запрос
+ *
+ * - рейсы: +1 при создании / возврате в SCHEDULED, -1 при отмене / удалении / смене статуса
+ * - бронирования: +1 при подтверждении оплаты, -1 при отмене подтверждённого бронирования
+ * - поиски: +1 на каждый поиск в направление (только в памяти)
+ *
+ * Для каждого вида ранжирования держим отсортированный снимок, эндпоинт берёт первые K.
+ * Снимки пересобираются в фоне, если счётчики менялись; раз в час счётчики рейсов и
+ * бронирований сверяются с БД, чтобы убрать возможный дрейф.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularDestinationsAggregate {
+
+    private static final List<BookingStatus> BOOKED_STATUSES = List.of(BookingStatus.CONFIRMED, BookingStatus.COMPLETED);
+
+    private final AirportRepository airportRepository;
+    private final FlightRepository flightRepository;
+    private final TicketRepository ticketRepository;
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    private volatile Map<DestinationRanking, List<PopularDestinationResponse>> snapshots = Map.of();
+    private volatile boolean ready = false;
+
+    // ═══════════════════════════════════════
+    // ЗАГРУЗКА
+    // ═══════════════════════════════════════
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        resync();
+        ready = true;
+    }
+
+    /**
+     * Пересчитать рейсы и бронирования из БД (поиски сохраняются)
+     */
+    @Scheduled(fixedDelayString = "${search.popular.resync-ms:3600000}",
+            initialDelayString = "${search.popular.resync-ms:3600000}")
+    @Transactional(readOnly = true)
+    public synchronized void resync() {
+        for (Airport airport : airportRepository.findAll()) {
+            counters.computeIfAbsent(airport.getIataCode(), code -> new Counter(airport.getCity(), airport.getCountry()));
+        }
+
+        Map<String, Long> flights = toMap(flightRepository.countScheduledFlightsByDestination());
+        Map<String, Long> bookings = toMap(ticketRepository.countBookingsByDestination(BOOKED_STATUSES));
+
+        counters.forEach((code, counter) -> {
+            counter.flights.set(flights.getOrDefault(code, 0L));
+            counter.bookings.set(bookings.getOrDefault(code, 0L));
+        });
+
+        rebuildSnapshots();
+        log.info("Popular destinations resynced: {} airports", counters.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ═══════════════════════════════════════
+    // ЧТЕНИЕ
+    // ═══════════════════════════════════════
+
+    /**
+     * Top-K из готового снимка
+     */
+    public List<PopularDestinationResponse> top(DestinationRanking ranking, int limit) {
+        List<PopularDestinationResponse> sorted = snapshots.getOrDefault(ranking, List.of());
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    // ═══════════════════════════════════════
+    // СОБЫТИЯ
+    // ═══════════════════════════════════════
+
+    /**
+     * Рейс стал SCHEDULED (создан или восстановлен)
+     */
+    public void flightScheduled(Airport destination) {
+        String code = destination.getIataCode();
+        afterCommit(() -> counter(code).flights.incrementAndGet());
+    }
+
+    /**
+     * Рейс перестал быть SCHEDULED (отменён, удалён, статус изменён)
+     */
+    public void flightUnscheduled(Airport destination) {
+        String code = destination.getIataCode();
+        afterCommit(() -> counter(code).flights.updateAndGet(v -> Math.max(0, v - 1)));
+    }
+
+    /**
+     * Бронирование подтверждено (оплачено)
+     */
+    public void bookingConfirmed(Booking booking) {
+        Set<String> destinations = destinationsOf(booking);
+        afterCommit(() -> destinations.forEach(code -> counter(code).bookings.incrementAndGet()));
+    }
+
+    /**
+     * Подтверждённое бронирование отменено или возвращено
+     */
+    public void bookingCancelled(Booking booking) {
+        Set<String> destinations = destinationsOf(booking);
+        afterCommit(() -> destinations.forEach(code ->
+                counter(code).bookings.updateAndGet(v -> Math.max(0, v - 1))));
+    }
+
+    /**
+     * Поиск в направление (неизвестные коды не учитываем)
+     */
+    public void searched(String destinationCode) {
+        Counter counter = counters.get(destinationCode.toUpperCase());
+        if (counter != null) {
+            counter.searches.incrementAndGet();
+            dirty.set(true);
+        }
+    }
+
+    // ═══════════════════════════════════════
+    // СНИМКИ
+    // ═══════════════════════════════════════
+
+    @Scheduled(fixedDelayString = "${search.popular.snapshot-ms:1000}")
+    public void rebuildIfDirty() {
+        if (dirty.compareAndSet(true, false)) {
+            rebuildSnapshots();
+        }
+    }
+
+    private void rebuildSnapshots() {
+        List<Map.Entry<String, Counter>> entries = new ArrayList<>(counters.entrySet());
+        Map<DestinationRanking, List<PopularDestinationResponse>> rebuilt = new EnumMap<>(DestinationRanking.class);
+
+        for (DestinationRanking ranking : DestinationRanking.values()) {
+            rebuilt.put(ranking, entries.stream()
+                    .map(e -> toResponse(e.getKey(), e.getValue()))
+                    .filter(r -> metric(r, ranking) > 0)
+                    .sorted(Comparator.comparingLong((PopularDestinationResponse r) -> metric(r, ranking)).reversed()
+                            .thenComparing(PopularDestinationResponse::getIataCode))
+                    .toList());
+        }
+
+        snapshots = rebuilt;
+    }
+
+    private static long metric(PopularDestinationResponse response, DestinationRanking ranking) {
+        return switch (ranking) {
+            case FLIGHTS -> response.getFlightCount();
+            case BOOKINGS -> response.getBookingCount();
+            case SEARCHES -> response.getSearchCount();
+        };
+    }
+
+    private static PopularDestinationResponse toResponse(String code, Counter counter) {
+        return PopularDestinationResponse.builder()
+                .city(counter.city)
+                .country(counter.country)
+                .iataCode(code)
+                .flightCount((int) counter.flights.get())
+                .bookingCount(counter.bookings.get())
+                .searchCount(counter.searches.get())
+                .build();
+    }
+
+    // ═══════════════════════════════════════
+    // ВСПОМОГАТЕЛЬНОЕ
+    // ═══════════════════════════════════════
+
+    private Counter counter(String code) {
+        dirty.set(true);
+        return counters.computeIfAbsent(code, c -> new Counter(null, null));
+    }
+
+    private static Set<String> destinationsOf(Booking booking) {
+        Set<String> destinations = new HashSet<>();
+        for (Ticket ticket : booking.getTickets()) {
+            if (ticket.getFlight() != null) {
+                destinations.add(ticket.getFlight().getDestination().getIataCode());
+            }
+        }
+        return destinations;
+    }
+
+    private static Map<String, Long> toMap(List<Object[]> rows) {
+        Map<String, Long> result = new HashMap<>();
+        for (Object[] row : rows) {
+            result.put((String) row[0], (Long) row[1]);
+        }
+        return result;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Counter {
+        final String city;
+        final String country;
+        final AtomicLong flights = new AtomicLong();
+        final AtomicLong bookings = new AtomicLong();
+        final AtomicLong searches = new AtomicLong();
+
+        Counter(String city, String country) {
+            this.city = city;
+            this.country = country;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.aviasales.booking.booking.index;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Интервалы [вылет, прилёт) рейсов по номеру - проверка пересечений без запроса на каждый рейс
+ *
+ * Интервалы одного номера не пересекаются между собой, поэтому новый [departure, arrival) пересекается
+ * с каким-то из них тогда и только тогда, когда пересекается с последним начавшимся раньше arrival -
+ * это один lowerEntry в TreeMap, O(log n).
+ */
+public final class ScheduleIntervals {
+
+    private final Map<String, TreeMap<Instant, Instant>> byNumber = new HashMap<>();
+
+    public void add(String flightNumber, Instant departure, Instant arrival) {
+        byNumber.computeIfAbsent(flightNumber, k -> new TreeMap<>()).put(departure, arrival);
+    }
+
+    /**
+     * Добавить строки (номер рейса, вылет, прилёт) из FlightRepository.findScheduleIntervals
+     */
+    public void addAll(Iterable<Object[]> rows) {
+        for (Object[] row : rows) {
+            add((String) row[0], (Instant) row[1], (Instant) row[2]);
+        }
+    }
+
+    public boolean overlaps(String flightNumber, Instant departure, Instant arrival) {
+        TreeMap<Instant, Instant> intervals = byNumber.get(flightNumber);
+        if (intervals == null) {
+            return false;
+        }
+        Map.Entry<Instant, Instant> previous = intervals.lowerEntry(arrival);
+        return previous != null && previous.getValue().isAfter(departure);
+    }
+}
@@ -0,0 +1,165 @@
+package com.aviasales.booking.booking.index;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Занятость мест рейса: один бит на место салона (см. SeatLayout)
+ *
+ * Все изменения - CAS по 64-битному слову, без блокировок: два бронирования не могут
+ * занять один бит, а поиск свободного места - проход по словам диапазона класса (seats / 64).
+ *
+ * Пока на карту подписан слушатель (SeatMapFeed), о каждом изменённом бите сообщается после CAS.
+ */
+public final class SeatBitmap {
+
+    private final SeatLayout layout;
+    private final AtomicLongArray words;
+    private volatile IntConsumer listener;
+
+    public SeatBitmap(SeatLayout layout) {
+        this.layout = layout;
+        this.words = new AtomicLongArray((layout.seatCount() + 63) >>> 6);
+    }
+
+    /**
+     * Раскладка салона, по которой пронумерованы биты
+     */
+    public SeatLayout layout() {
+        return layout;
+    }
+
+    /**
+     * Слушатель изменений (null - снять); карта со слушателем не вытесняется из SeatMapCache
+     */
+    public void listen(IntConsumer listener) {
+        this.listener = listener;
+    }
+
+    public boolean isWatched() {
+        return listener != null;
+    }
+
+    public boolean isOccupied(int bit) {
+        return (words.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Занятость width (до 64) мест подряд начиная с from: бит c результата - место from + c
+     */
+    public long bits(int from, int width) {
+        int w = from >>> 6;
+        int offset = from & 63;
+        long value = words.get(w) >>> offset;
+        if (offset != 0 && offset + width > 64) {
+            value |= words.get(w + 1) << (64 - offset);
+        }
+        return width == 64 ? value : value & ((1L << width) - 1);
+    }
+
+    /**
+     * Занять место, если оно свободно
+     */
+    public boolean tryOccupy(int bit) {
+        int w = bit >>> 6;
+        long mask = 1L << bit;
+        while (true) {
+            long current = words.get(w);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(w, current, current | mask)) {
+                changed(bit);
+                return true;
+            }
+        }
+    }
+
+    public void release(int bit) {
+        int w = bit >>> 6;
+        long mask = 1L << bit;
+        while (true) {
+            long current = words.get(w);
+            if ((current & mask) == 0) {
+                return;
+            }
+            if (words.compareAndSet(w, current, current & ~mask)) {
+                changed(bit);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Занять первое свободное место в [from, to), входящее в filter (null - любое)
+     * @return номер бита или -1, если свободных нет
+     */
+    public int occupyFirstFree(int from, int to, long[] filter) {
+        if (from >= to) {
+            return -1;
+        }
+        for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) {
+            long allowed = rangeMask(w, from, to) & (filter != null ? filter[w] : -1L);
+            while (true) {
+                long current = words.get(w);
+                long candidates = ~current & allowed;
+                if (candidates == 0) {
+                    break;
+                }
+                long lowest = Long.lowestOneBit(candidates);
+                if (words.compareAndSet(w, current, current | lowest)) {
+                    int bit = (w << 6) + Long.numberOfTrailingZeros(lowest);
+                    changed(bit);
+                    return bit;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public int countOccupied(int from, int to) {
+        int count = 0;
+        for (int w = from >>> 6; from < to && w <= (to - 1) >>> 6; w++) {
+            count += Long.bitCount(words.get(w) & rangeMask(w, from, to));
+        }
+        return count;
+    }
+
+    public void forEachOccupied(int from, int to, IntConsumer action) {
+        for (int w = from >>> 6; from < to && w <= (to - 1) >>> 6; w++) {
+            long bits = words.get(w) & rangeMask(w, from, to);
+            while (bits != 0) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Копия слов карты (бит i - место layout.seatAt(i))
+     */
+    public long[] snapshot() {
+        long[] copy = new long[words.length()];
+        for (int w = 0; w < copy.length; w++) {
+            copy[w] = words.get(w);
+        }
+        return copy;
+    }
+
+    private void changed(int bit) {
+        IntConsumer current = listener;
+        if (current != null) {
+            current.accept(bit);
+        }
+    }
+
+    /**
+     * Биты слова w, попадающие в [from, to)
+     */
+    private static long rangeMask(int w, int from, int to) {
+        int lo = Math.max(from - (w << 6), 0);
+        int hi = Math.min(to - (w << 6), 64);
+        long upper = hi == 64 ? -1L : (1L << hi) - 1;
+        return upper & (-1L << lo);
+    }
+}
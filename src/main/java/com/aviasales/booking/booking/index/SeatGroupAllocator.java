@@ -0,0 +1,253 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.SeatPreference;
+
+import java.util.Arrays;
+
+/**
+ * Рассадка группы рядом: один проход по рядам класса в SeatBitmap вместо поиска места на каждого
+ *
+ * Сначала - непрерывный блок в одном ряду, затем - колонки одной ширины в 2..MAX_ROWS соседних рядах.
+ * Кандидаты сравниваются по очкам: плюс за совпавшие предпочтения (окно/проход/середина),
+ * минус за проход внутри блока и за каждый ряд. При равенстве - ближе к носу.
+ * Свободные места ряда, блок и положения мест - 64-битные маски, без аллокаций в цикле.
+ */
+public final class SeatGroupAllocator {
+
+    private static final int MAX_ROWS = 4;
+    private static final int PREFERENCE_WEIGHT = 2;
+    private static final int AISLE_PENALTY = 3;
+    private static final int ROW_PENALTY = 4;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final SeatPreference[] POSITIONS = SeatPreference.values();
+
+    private SeatGroupAllocator() {
+    }
+
+    /**
+     * Подобрать и занять места группы
+     * @param preferences предпочтение каждого пассажира (null - без предпочтения)
+     * @return биты мест по порядку пассажиров или null - рядом не помещаются (или места разбирают быстрее)
+     */
+    public static int[] allocate(SeatBitmap bitmap, CabinClass cabinClass, SeatPreference[] preferences) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int[] seats = choose(bitmap, cabinClass, preferences);
+            if (seats == null) {
+                return null;
+            }
+            if (occupyAll(bitmap, seats)) {
+                return seats;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Подобрать места по текущей карте, не занимая их
+     */
+    public static int[] choose(SeatBitmap bitmap, CabinClass cabinClass, SeatPreference[] preferences) {
+        SeatLayout layout = bitmap.layout();
+        int n = preferences.length;
+        int firstRow = layout.firstRow(cabinClass);
+        int endRow = layout.endRow(cabinClass);
+        if (n == 0 || firstRow >= endRow) {
+            return null;
+        }
+
+        int[] wanted = new int[POSITIONS.length];
+        for (SeatPreference preference : preferences) {
+            if (preference != null) {
+                wanted[preference.ordinal()]++;
+            }
+        }
+
+        // Один ряд: все окна ширины n по свободным местам ряда
+        int bestScore = Integer.MIN_VALUE;
+        int bestRow = -1;
+        long bestBlock = 0;
+        for (int row = firstRow; row < endRow; row++) {
+            int width = layout.rowWidth(row);
+            if (n > width) {
+                continue;
+            }
+            long free = free(bitmap, layout, row);
+            if (Long.bitCount(free) < n) {
+                continue;
+            }
+            long block = lowBits(n);
+            for (int start = 0; start + n <= width; start++, block <<= 1) {
+                if ((free & block) != block) {
+                    continue;
+                }
+                int score = PREFERENCE_WEIGHT * matches(layout, row, block, wanted)
+                        - AISLE_PENALTY * aisleCrossings(layout, row, block);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestRow = row;
+                    bestBlock = block;
+                }
+            }
+        }
+        if (bestRow >= 0) {
+            return assign(layout, bestRow, new long[]{bestBlock}, preferences);
+        }
+
+        // Соседние ряды: одинаковые колонки [start, start + columns) в rows рядах подряд
+        long[] taken = new long[MAX_ROWS];
+        long[] bestTaken = new long[MAX_ROWS];
+        for (int rows = 2; rows <= MAX_ROWS && bestRow < 0; rows++) {
+            int columns = (n + rows - 1) / rows;
+            for (int row = firstRow; row + rows <= endRow; row++) {
+                int width = layout.rowWidth(row);
+                if (columns > width || !sameWidth(layout, row, rows)) {
+                    continue;
+                }
+                long window = lowBits(columns);
+                for (int start = 0; start + columns <= width; start++, window <<= 1) {
+                    if (!take(bitmap, layout, row, rows, window, n, taken)) {
+                        continue;
+                    }
+                    int score = PREFERENCE_WEIGHT * matches(layout, row, rows, taken, wanted)
+                            - ROW_PENALTY * rows;
+                    for (int i = 0; i < rows; i++) {
+                        score -= AISLE_PENALTY * aisleCrossings(layout, row + i, taken[i]);
+                    }
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestRow = row;
+                        System.arraycopy(taken, 0, bestTaken, 0, rows);
+                    }
+                }
+            }
+            if (bestRow >= 0) {
+                return assign(layout, bestRow, Arrays.copyOf(bestTaken, rows), preferences);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Первые n свободных мест окна по рядам; false - в окне меньше n свободных
+     */
+    private static boolean take(SeatBitmap bitmap, SeatLayout layout, int row, int rows, long window, int n, long[] taken) {
+        int remaining = n;
+        for (int i = 0; i < rows; i++) {
+            long seats = free(bitmap, layout, row + i) & window;
+            while (Long.bitCount(seats) > remaining) {
+                seats &= ~Long.highestOneBit(seats);
+            }
+            taken[i] = seats;
+            remaining -= Long.bitCount(seats);
+        }
+        return remaining == 0;
+    }
+
+    /**
+     * Сколько предпочтений можно удовлетворить местами блока в одном ряду
+     */
+    private static int matches(SeatLayout layout, int row, long block, int[] wanted) {
+        int matches = 0;
+        for (SeatPreference position : POSITIONS) {
+            int want = wanted[position.ordinal()];
+            if (want != 0) {
+                matches += Math.min(want, Long.bitCount(block & layout.rowPositions(row, position)));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * То же для мест в rows рядах подряд
+     */
+    private static int matches(SeatLayout layout, int row, int rows, long[] blocks, int[] wanted) {
+        int matches = 0;
+        for (SeatPreference position : POSITIONS) {
+            int want = wanted[position.ordinal()];
+            if (want == 0) {
+                continue;
+            }
+            int have = 0;
+            for (int i = 0; i < rows; i++) {
+                have += Long.bitCount(blocks[i] & layout.rowPositions(row + i, position));
+            }
+            matches += Math.min(want, have);
+        }
+        return matches;
+    }
+
+    /**
+     * Проходы между соседними местами блока
+     */
+    private static int aisleCrossings(SeatLayout layout, int row, long block) {
+        return Long.bitCount(layout.rowAisles(row) & block & (block >>> 1));
+    }
+
+    /**
+     * Пассажиры с предпочтением - на места своего положения, остальные - на оставшиеся по порядку
+     */
+    private static int[] assign(SeatLayout layout, int row, long[] blocks, SeatPreference[] preferences) {
+        int[] seats = new int[preferences.length];
+        long[] free = blocks.clone();
+
+        for (int p = 0; p < preferences.length; p++) {
+            seats[p] = -1;
+            if (preferences[p] == null) {
+                continue;
+            }
+            for (int i = 0; i < free.length && seats[p] < 0; i++) {
+                long match = free[i] & layout.rowPositions(row + i, preferences[p]);
+                if (match != 0) {
+                    long seat = Long.lowestOneBit(match);
+                    free[i] &= ~seat;
+                    seats[p] = layout.rowStart(row + i) + Long.numberOfTrailingZeros(seat);
+                }
+            }
+        }
+        int i = 0;
+        for (int p = 0; p < preferences.length; p++) {
+            if (seats[p] >= 0) {
+                continue;
+            }
+            while (free[i] == 0) {
+                i++;
+            }
+            long seat = Long.lowestOneBit(free[i]);
+            free[i] &= ~seat;
+            seats[p] = layout.rowStart(row + i) + Long.numberOfTrailingZeros(seat);
+        }
+        return seats;
+    }
+
+    private static boolean occupyAll(SeatBitmap bitmap, int[] seats) {
+        for (int i = 0; i < seats.length; i++) {
+            if (!bitmap.tryOccupy(seats[i])) {
+                // Место увели между выбором и CAS - возвращаем занятые и выбираем заново
+                for (int j = 0; j < i; j++) {
+                    bitmap.release(seats[j]);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameWidth(SeatLayout layout, int row, int rows) {
+        for (int i = 1; i < rows; i++) {
+            if (layout.rowWidth(row + i) != layout.rowWidth(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long free(SeatBitmap bitmap, SeatLayout layout, int row) {
+        int width = layout.rowWidth(row);
+        return ~bitmap.bits(layout.rowStart(row), width) & lowBits(width);
+    }
+
+    private static long lowBits(int count) {
+        return count == 64 ? -1L : (1L << count) - 1;
+    }
+}
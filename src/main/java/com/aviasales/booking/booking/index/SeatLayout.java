@@ -0,0 +1,377 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.SeatPreference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Раскладка салона типа ВС, скомпилированная в таблицы: место ("12A") ↔ номер бита в SeatBitmap
+ *
+ * Описание - секции "КЛАСС РЯДЫ БУКВЫ" через запятую, '|' в буквах - проход:
+ * "BUSINESS 1-3 AC|DF, ECONOMY 4-30 ABC|DEF". Ряды могут идти с пропусками, буквы - любые A-Z.
+ *
+ * Биты идут по рядам сверху вниз, внутри ряда - по буквам, поэтому места одного класса
+ * занимают непрерывный диапазон [firstBit(cabin), endBit(cabin)). Все проверки после компиляции -
+ * обращения к массивам без разбора строк и без аллокаций.
+ */
+public final class SeatLayout {
+
+    private static final int MAX_ROW = 999;
+    private static final CabinClass[] CABINS = CabinClass.values();
+
+    public static final String STANDARD_TYPE = "STANDARD";
+
+    /**
+     * Раскладка по умолчанию (тип ВС не указан или не описан): первый 1-2, бизнес 3-8, эконом 9-35
+     */
+    public static final SeatLayout STANDARD = compile(STANDARD_TYPE,
+            "FIRST_CLASS 1-2 AB|CD, BUSINESS 3-8 AB|CD|EF, ECONOMY 9-35 ABC|DEF");
+
+    private final String aircraftType;
+    private final int seatCount;
+
+    /**
+     * Ряд → первый бит ряда (-1 - ряда нет) и секция ряда
+     */
+    private final int[] rowFirstBit;
+    private final byte[] rowSection;
+
+    /**
+     * Секция × буква (0..25) → колонка в ряду (-1 - буквы нет)
+     */
+    private final byte[][] columnOfLetter;
+
+    /**
+     * Бит → название места, класс, положение (SeatPreference.ordinal)
+     */
+    private final String[] seatNames;
+    private final CabinClass[] seatCabin;
+    private final byte[] seatPosition;
+
+    /**
+     * Класс (ordinal) → диапазон битов; премиум-эконом без своей секции продаётся из эконома
+     */
+    private final int[] cabinFirstBit;
+    private final int[] cabinEndBit;
+    private final List<List<String>> cabinSeats;
+
+    /**
+     * SeatPreference (ordinal) → маска битов по словам SeatBitmap
+     */
+    private final long[][] preferenceMasks;
+
+    /**
+     * Ряды подряд (без пропущенных номеров): первый бит, число мест, маски внутри ряда
+     * (бит = колонка): проход после колонки, положение места по SeatPreference
+     */
+    private final int[] rowStart;
+    private final int[] rowWidth;
+    private final long[] rowAisles;
+    private final long[][] rowPositions;
+    private final int[] cabinFirstRow;
+    private final int[] cabinEndRow;
+
+    private SeatLayout(String aircraftType, List<Section> sections) {
+        this.aircraftType = aircraftType;
+
+        int lastRow = sections.get(sections.size() - 1).lastRow;
+        this.rowFirstBit = new int[lastRow + 1];
+        this.rowSection = new byte[lastRow + 1];
+        Arrays.fill(rowFirstBit, -1);
+        Arrays.fill(rowSection, (byte) -1);
+        this.columnOfLetter = new byte[sections.size()][26];
+
+        int bit = 0;
+        for (int s = 0; s < sections.size(); s++) {
+            Section section = sections.get(s);
+            Arrays.fill(columnOfLetter[s], (byte) -1);
+            for (int column = 0; column < section.letters.length; column++) {
+                columnOfLetter[s][section.letters[column] - 'A'] = (byte) column;
+            }
+            for (int row = section.firstRow; row <= section.lastRow; row++) {
+                rowFirstBit[row] = bit;
+                rowSection[row] = (byte) s;
+                bit += section.letters.length;
+            }
+        }
+        this.seatCount = bit;
+
+        this.seatNames = new String[seatCount];
+        this.seatCabin = new CabinClass[seatCount];
+        this.seatPosition = new byte[seatCount];
+        this.preferenceMasks = new long[SeatPreference.values().length][(seatCount + 63) >>> 6];
+        this.cabinFirstBit = new int[CABINS.length];
+        this.cabinEndBit = new int[CABINS.length];
+
+        for (Section section : sections) {
+            int first = rowFirstBit[section.firstRow];
+            for (int row = section.firstRow; row <= section.lastRow; row++) {
+                for (int column = 0; column < section.letters.length; column++) {
+                    int b = rowFirstBit[row] + column;
+                    seatNames[b] = row + String.valueOf(section.letters[column]);
+                    seatCabin[b] = section.cabin;
+                    seatPosition[b] = (byte) section.positions[column].ordinal();
+                    preferenceMasks[section.positions[column].ordinal()][b >>> 6] |= 1L << b;
+                }
+            }
+            int end = rowFirstBit[section.lastRow] + section.letters.length;
+            int c = section.cabin.ordinal();
+            if (cabinEndBit[c] == 0) {
+                cabinFirstBit[c] = first;
+            }
+            cabinEndBit[c] = end;
+        }
+
+        int rowCount = 0;
+        for (Section section : sections) {
+            rowCount += section.lastRow - section.firstRow + 1;
+        }
+        this.rowStart = new int[rowCount];
+        this.rowWidth = new int[rowCount];
+        this.rowAisles = new long[rowCount];
+        this.rowPositions = new long[SeatPreference.values().length][rowCount];
+        this.cabinFirstRow = new int[CABINS.length];
+        this.cabinEndRow = new int[CABINS.length];
+
+        int r = 0;
+        for (Section section : sections) {
+            int c = section.cabin.ordinal();
+            if (cabinEndRow[c] == 0) {
+                cabinFirstRow[c] = r;
+            }
+            for (int row = section.firstRow; row <= section.lastRow; row++, r++) {
+                rowStart[r] = rowFirstBit[row];
+                rowWidth[r] = section.letters.length;
+                rowAisles[r] = section.aisles;
+                for (int column = 0; column < section.letters.length; column++) {
+                    rowPositions[section.positions[column].ordinal()][r] |= 1L << column;
+                }
+            }
+            cabinEndRow[c] = r;
+        }
+
+        int economy = CabinClass.ECONOMY.ordinal();
+        int premium = CabinClass.PREMIUM_ECONOMY.ordinal();
+        if (cabinEndBit[premium] == 0) {
+            cabinFirstBit[premium] = cabinFirstBit[economy];
+            cabinEndBit[premium] = cabinEndBit[economy];
+            cabinFirstRow[premium] = cabinFirstRow[economy];
+            cabinEndRow[premium] = cabinEndRow[economy];
+        }
+
+        List<List<String>> seats = new ArrayList<>(CABINS.length);
+        for (CabinClass cabin : CABINS) {
+            seats.add(List.of(Arrays.copyOfRange(seatNames, cabinFirstBit[cabin.ordinal()], cabinEndBit[cabin.ordinal()])));
+        }
+        this.cabinSeats = List.copyOf(seats);
+    }
+
+    // ═══════════════════════════════════════
+    // КОМПИЛЯЦИЯ
+    // ═══════════════════════════════════════
+
+    /**
+     * Разобрать описание раскладки и построить таблицы
+     * @throws IllegalArgumentException описание некорректно
+     */
+    public static SeatLayout compile(String aircraftType, String definition) {
+        List<Section> sections = new ArrayList<>();
+        for (String part : definition.split(",")) {
+            String[] tokens = part.trim().split("\\s+");
+            if (tokens.length != 3) {
+                throw new IllegalArgumentException(
+                        aircraftType + ": cabin section must be 'CLASS FROM-TO LETTERS', got '" + part.trim() + "'");
+            }
+            sections.add(Section.parse(aircraftType, tokens));
+        }
+        if (sections.isEmpty()) {
+            throw new IllegalArgumentException(aircraftType + ": layout has no cabins");
+        }
+
+        for (int s = 1; s < sections.size(); s++) {
+            Section previous = sections.get(s - 1);
+            Section current = sections.get(s);
+            if (current.firstRow <= previous.lastRow) {
+                throw new IllegalArgumentException(aircraftType + ": rows must ascend without overlaps");
+            }
+            if (current.cabin != previous.cabin
+                    && sections.subList(0, s - 1).stream().anyMatch(section -> section.cabin == current.cabin)) {
+                throw new IllegalArgumentException(aircraftType + ": sections of " + current.cabin + " must be adjacent");
+            }
+        }
+        return new SeatLayout(aircraftType, sections);
+    }
+
+    private record Section(CabinClass cabin, int firstRow, int lastRow, char[] letters, SeatPreference[] positions,
+                           long aisles) {
+
+        static Section parse(String aircraftType, String[] tokens) {
+            CabinClass cabin;
+            try {
+                cabin = CabinClass.valueOf(tokens[0].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(aircraftType + ": unknown cabin class " + tokens[0]);
+            }
+
+            String[] rows = tokens[1].split("-");
+            int firstRow;
+            int lastRow;
+            try {
+                firstRow = Integer.parseInt(rows[0]);
+                lastRow = Integer.parseInt(rows[rows.length - 1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(aircraftType + ": bad row range " + tokens[1]);
+            }
+            if (rows.length > 2 || firstRow < 1 || lastRow < firstRow || lastRow > MAX_ROW) {
+                throw new IllegalArgumentException(aircraftType + ": bad row range " + tokens[1]);
+            }
+
+            // Окно - крайние места ряда, проход - края групп между '|', остальное - середина
+            String[] groups = tokens[2].toUpperCase().split("\\|");
+            String letters = String.join("", groups);
+            SeatPreference[] positions = new SeatPreference[letters.length()];
+            long aisles = 0;
+            int column = 0;
+            for (int g = 0; g < groups.length; g++) {
+                if (groups[g].isEmpty()) {
+                    throw new IllegalArgumentException(aircraftType + ": empty seat group in " + tokens[2]);
+                }
+                for (int i = 0; i < groups[g].length(); i++, column++) {
+                    boolean window = (g == 0 && i == 0) || (g == groups.length - 1 && i == groups[g].length() - 1);
+                    boolean aisle = i == 0 || i == groups[g].length() - 1;
+                    positions[column] = window ? SeatPreference.WINDOW : aisle ? SeatPreference.AISLE : SeatPreference.MIDDLE;
+                }
+                if (g < groups.length - 1) {
+                    aisles |= 1L << (column - 1);
+                }
+            }
+            if (!letters.chars().allMatch(c -> c >= 'A' && c <= 'Z') || letters.chars().distinct().count() != letters.length()) {
+                throw new IllegalArgumentException(aircraftType + ": seat letters must be distinct A-Z, got " + tokens[2]);
+            }
+            return new Section(cabin, firstRow, lastRow, letters.toCharArray(), positions, aisles);
+        }
+    }
+
+    // ═══════════════════════════════════════
+    // ПОИСК
+    // ═══════════════════════════════════════
+
+    public String aircraftType() {
+        return aircraftType;
+    }
+
+    public int seatCount() {
+        return seatCount;
+    }
+
+    public int firstBit(CabinClass cabinClass) {
+        return cabinFirstBit[cabinClass.ordinal()];
+    }
+
+    public int endBit(CabinClass cabinClass) {
+        return cabinEndBit[cabinClass.ordinal()];
+    }
+
+    /**
+     * Номер бита места или -1, если такого места в салоне нет
+     */
+    public int indexOf(String seat) {
+        if (seat == null || seat.length() < 2) {
+            return -1;
+        }
+        char letter = Character.toUpperCase(seat.charAt(seat.length() - 1));
+        if (letter < 'A' || letter > 'Z') {
+            return -1;
+        }
+        int row = 0;
+        for (int i = 0; i < seat.length() - 1; i++) {
+            char c = seat.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            row = row * 10 + (c - '0');
+            if (row >= rowFirstBit.length) {
+                return -1;
+            }
+        }
+        int section = rowSection[row];
+        if (section < 0) {
+            return -1;
+        }
+        int column = columnOfLetter[section][letter - 'A'];
+        return column < 0 ? -1 : rowFirstBit[row] + column;
+    }
+
+    public String seatAt(int bit) {
+        return seatNames[bit];
+    }
+
+    public CabinClass cabinOf(int bit) {
+        return seatCabin[bit];
+    }
+
+    /**
+     * Продаётся ли место в этом классе (премиум-эконом без своей секции - из эконома)
+     */
+    public boolean isInCabin(int bit, CabinClass cabinClass) {
+        return bit >= cabinFirstBit[cabinClass.ordinal()] && bit < cabinEndBit[cabinClass.ordinal()];
+    }
+
+    public boolean matches(int bit, SeatPreference preference) {
+        return seatPosition[bit] == preference.ordinal();
+    }
+
+    /**
+     * Маска мест с этим положением - фильтр для SeatBitmap.occupyFirstFree (не изменять)
+     */
+    public long[] preferenceMask(SeatPreference preference) {
+        return preferenceMasks[preference.ordinal()];
+    }
+
+    /**
+     * Все места класса по порядку (неизменяемый список)
+     */
+    public List<String> seats(CabinClass cabinClass) {
+        return cabinSeats.get(cabinClass.ordinal());
+    }
+
+    // ═══════════════════════════════════════
+    // РЯДЫ (для рассадки группы рядом)
+    // ═══════════════════════════════════════
+
+    /**
+     * Ряды класса - индексы [firstRow, endRow) в порядке салона; соседние индексы - соседние ряды
+     */
+    public int firstRow(CabinClass cabinClass) {
+        return cabinFirstRow[cabinClass.ordinal()];
+    }
+
+    public int endRow(CabinClass cabinClass) {
+        return cabinEndRow[cabinClass.ordinal()];
+    }
+
+    public int rowStart(int row) {
+        return rowStart[row];
+    }
+
+    public int rowWidth(int row) {
+        return rowWidth[row];
+    }
+
+    /**
+     * Бит c выставлен, если между колонками c и c + 1 проход
+     */
+    public long rowAisles(int row) {
+        return rowAisles[row];
+    }
+
+    /**
+     * Колонки ряда с этим положением места
+     */
+    public long rowPositions(int row, SeatPreference preference) {
+        return rowPositions[preference.ordinal()][row];
+    }
+}
@@ -0,0 +1,50 @@
+package com.aviasales.booking.booking.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Раскладки салонов по типу ВС (Flight.aircraftType)
+ *
+ * Задаются свойством seats.layouts: "ТИП: описание; ТИП: описание" (формат описания - в SeatLayout).
+ * Компилируются один раз при старте; ошибка в описании не даёт приложению подняться.
+ * Тип без раскладки получает SeatLayout.STANDARD.
+ */
+@Slf4j
+@Component
+public class SeatLayouts {
+
+    private final Map<String, SeatLayout> byAircraftType = new HashMap<>();
+
+    public SeatLayouts(@Value("${seats.layouts:}") String definitions) {
+        for (String entry : definitions.split(";")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int colon = entry.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Seat layout must be 'TYPE: sections', got '" + entry.trim() + "'");
+            }
+            String aircraftType = entry.substring(0, colon).trim();
+            SeatLayout layout = SeatLayout.compile(aircraftType, entry.substring(colon + 1).trim());
+            byAircraftType.put(key(aircraftType), layout);
+            log.info("Seat layout {}: {} seats", aircraftType, layout.seatCount());
+        }
+    }
+
+    public SeatLayout forAircraft(String aircraftType) {
+        if (aircraftType == null) {
+            return SeatLayout.STANDARD;
+        }
+        return byAircraftType.getOrDefault(key(aircraftType), SeatLayout.STANDARD);
+    }
+
+    private static String key(String aircraftType) {
+        return aircraftType.trim().toUpperCase(Locale.ROOT);
+    }
+}
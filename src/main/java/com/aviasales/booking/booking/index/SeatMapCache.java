@@ -0,0 +1,264 @@
+package com.aviasales.booking.booking.index;
+
+import com.aviasales.booking.booking.enums.BookingStatus;
+import com.aviasales.booking.booking.enums.TicketStatus;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.repo.TicketRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Карты мест рейсов (SeatBitmap) в памяти
+ *
+ * Карта строится при первом обращении одним запросом номеров мест и дальше меняется только CAS-ами
+ * при назначении и освобождении - без чтения билетов. Хранится не больше maxFlights карт (LRU),
+ * вытесненная карта при следующем обращении строится заново из БД.
+ *
+ * Раскладка салона берётся по типу ВС рейса при построении карты и живёт вместе с ней.
+ *
+ * Карта узла не видит бронирований других узлов, поэтому не реже раза в seats.map.resync-ms
+ * при обращении она дозанимает места, занятые в БД (только занимает: освободить место, которое
+ * этот узел сейчас назначает, нельзя). Окончательно место охраняет уникальный индекс
+ * tickets(flight_id, seat_number) по действующим билетам (TicketSeatIndex): при его нарушении
+ * карта сбрасывается и строится заново (invalidate).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeatMapCache {
+
+    /**
+     * Билеты и бронирования в этих статусах место не занимают
+     */
+    private static final List<TicketStatus> RELEASED_TICKETS = List.of(TicketStatus.CANCELLED, TicketStatus.VOIDED);
+    private static final List<BookingStatus> RELEASED_BOOKINGS = List.of(BookingStatus.CANCELLED, BookingStatus.EXPIRED);
+
+    private final TicketRepository ticketRepository;
+    private final FlightRepository flightRepository;
+    private final SeatLayouts seatLayouts;
+
+    @Value("${seats.map.max-flights:10000}")
+    private int maxFlights;
+
+    @Value("${seats.map.resync-ms:30000}")
+    private long resyncMs;
+
+    /**
+     * Когда (nanoTime) карту рейса пора сверить с БД; под блокировкой maps
+     */
+    private final Map<Long, Long> resyncAt = new HashMap<>();
+
+    /**
+     * Рейсы, карта которых сейчас строится: освобождения за время запроса применяются к ней перед кэшированием
+     */
+    private final Map<Long, Loading> loading = new HashMap<>();
+
+    private final LinkedHashMap<Long, SeatBitmap> maps = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, SeatBitmap> eldest) {
+            // LinkedHashMap предлагает только самую старую запись: подписанные пропускаем сами,
+            // иначе одна подписанная карта в голове списка остановила бы вытеснение
+            if (size() <= maxFlights) {
+                return false;
+            }
+            Iterator<Map.Entry<Long, SeatBitmap>> it = entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, SeatBitmap> entry = it.next();
+                if (!entry.getValue().isWatched()) {
+                    resyncAt.remove(entry.getKey());
+                    it.remove();
+                    break;
+                }
+            }
+            return false;
+        }
+    };
+
+    public SeatLayout layout(Long flightId) {
+        return get(flightId).layout();
+    }
+
+    /**
+     * Карта мест рейса (из памяти или построенная по билетам)
+     */
+    public SeatBitmap get(Long flightId) {
+        SeatBitmap cached;
+        boolean resync = false;
+        Loading pending = null;
+        synchronized (maps) {
+            cached = maps.get(flightId);
+            if (cached != null) {
+                resync = resyncDue(flightId);
+            } else {
+                pending = loading.computeIfAbsent(flightId, k -> new Loading());
+                pending.loaders++;
+            }
+        }
+        if (cached != null) {
+            if (resync) {
+                occupyFromDatabase(flightId, cached);
+            }
+            return cached;
+        }
+
+        // Запрос - вне блокировки; при гонке остаётся карта, положенная первой
+        SeatBitmap loaded = null;
+        try {
+            loaded = load(flightId);
+        } finally {
+            synchronized (maps) {
+                if (--pending.loaders == 0) {
+                    loading.remove(flightId, pending);
+                }
+                if (loaded != null) {
+                    SeatBitmap existing = maps.get(flightId);
+                    if (existing != null) {
+                        loaded = existing;
+                    } else {
+                        // Отмена закоммитилась, пока шёл запрос, - он мог успеть увидеть место занятым
+                        for (String seat : pending.released) {
+                            int bit = loaded.layout().indexOf(seat);
+                            if (bit >= 0) {
+                                loaded.release(bit);
+                            }
+                        }
+                        maps.put(flightId, loaded);
+                        resyncAt.put(flightId, System.nanoTime() + resyncMs * 1_000_000);
+                    }
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Освободить место в карте, если она сейчас в памяти (иначе она построится уже без него)
+     */
+    public void release(Long flightId, String seatNumber) {
+        SeatBitmap bitmap;
+        synchronized (maps) {
+            bitmap = maps.get(flightId);
+            if (bitmap == null) {
+                Loading pending = loading.get(flightId);
+                if (pending != null) {
+                    pending.released.add(seatNumber);
+                }
+                return;
+            }
+        }
+        int bit = bitmap.layout().indexOf(seatNumber);
+        if (bit >= 0) {
+            bitmap.release(bit);
+        }
+    }
+
+    /**
+     * Подписать слушателя на карту рейса; пока он подписан, карта не вытесняется
+     * (под той же блокировкой, что и вытеснение - слушатель не окажется на выброшенной карте)
+     * @param bitmap карта, полученная через get (без запросов к БД здесь); если её уже вытеснили - вернётся в кэш
+     */
+    public SeatBitmap watch(Long flightId, SeatBitmap bitmap, IntConsumer listener) {
+        synchronized (maps) {
+            SeatBitmap current = maps.get(flightId);
+            if (current == null) {
+                maps.put(flightId, bitmap);
+                current = bitmap;
+            }
+            current.listen(listener);
+            return current;
+        }
+    }
+
+    public void unwatch(SeatBitmap bitmap) {
+        synchronized (maps) {
+            bitmap.listen(null);
+        }
+    }
+
+    public void evict(Long flightId) {
+        synchronized (maps) {
+            maps.remove(flightId);
+            resyncAt.remove(flightId);
+        }
+    }
+
+    /**
+     * Карта разошлась с БД (место продано другим узлом): построить заново при следующем обращении.
+     * Подписанная карта остаётся у слушателя - она только дозанимает места из БД
+     */
+    public void invalidate(Long flightId) {
+        SeatBitmap bitmap;
+        synchronized (maps) {
+            bitmap = maps.get(flightId);
+            if (bitmap == null) {
+                return;
+            }
+            if (!bitmap.isWatched()) {
+                maps.remove(flightId);
+                resyncAt.remove(flightId);
+                return;
+            }
+        }
+        occupyFromDatabase(flightId, bitmap);
+    }
+
+    /**
+     * Пора ли сверить карту с БД (под блокировкой maps)
+     */
+    private boolean resyncDue(Long flightId) {
+        long now = System.nanoTime();
+        Long due = resyncAt.get(flightId);
+        if (due != null && now - due < 0) {
+            return false;
+        }
+        resyncAt.put(flightId, now + resyncMs * 1_000_000);
+        return true;
+    }
+
+    /**
+     * Дозанять места, занятые в БД (в том числе другими узлами)
+     */
+    private void occupyFromDatabase(Long flightId, SeatBitmap bitmap) {
+        SeatLayout layout = bitmap.layout();
+        int occupied = 0;
+        for (String seat : ticketRepository.findOccupiedSeatNumbers(flightId, RELEASED_TICKETS, RELEASED_BOOKINGS)) {
+            int bit = layout.indexOf(seat);
+            if (bit >= 0 && bitmap.tryOccupy(bit)) {
+                occupied++;
+            }
+        }
+        if (occupied > 0) {
+            log.info("Flight {}: {} seats sold elsewhere marked occupied", flightId, occupied);
+        }
+    }
+
+    private SeatBitmap load(Long flightId) {
+        SeatLayout layout = seatLayouts.forAircraft(flightRepository.findAircraftTypeById(flightId).orElse(null));
+        SeatBitmap bitmap = new SeatBitmap(layout);
+        for (String seat : ticketRepository.findOccupiedSeatNumbers(flightId, RELEASED_TICKETS, RELEASED_BOOKINGS)) {
+            int bit = layout.indexOf(seat);
+            if (bit >= 0) {
+                bitmap.tryOccupy(bit);
+            } else {
+                log.warn("Flight {}: ticket seat {} is outside the cabin layout", flightId, seat);
+            }
+        }
+        return bitmap;
+    }
+
+    private static final class Loading {
+
+        private int loaders;
+        private final List<String> released = new ArrayList<>();
+    }
+}
@@ -0,0 +1,52 @@
+package com.aviasales.booking.booking.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Одно место рейса - один действующий билет, на уровне БД
+ *
+ * Карты мест (SeatMapCache) живут в памяти каждого узла и не видят продаж других узлов;
+ * частичный уникальный индекс по билетам, не отменённым и не аннулированным, не даст
+ * закоммитить второе бронирование на то же место. JPA частичные индексы не описывает -
+ * индекс создаётся при старте (ddl-auto к этому моменту создал таблицу).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TicketSeatIndex {
+
+    static final String NAME = "uk_tickets_flight_seat_active";
+
+    private static final String CREATE_INDEX = """
+            CREATE UNIQUE INDEX IF NOT EXISTS %s ON tickets (flight_id, seat_number)
+            WHERE seat_number IS NOT NULL AND status NOT IN ('CANCELLED', 'VOIDED')
+            """.formatted(NAME);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void create() {
+        try {
+            jdbcTemplate.execute(CREATE_INDEX);
+        } catch (DataAccessException e) {
+            // Уже есть двойные продажи - индекс не построится, пока их не разберут
+            log.error("Failed to create {}: {}", NAME, e.getMessage());
+        }
+    }
+
+    /**
+     * Нарушение именно этого индекса (а не, например, номера билета)
+     */
+    public static boolean isViolatedBy(DataIntegrityViolationException e) {
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        return message != null && message.contains(NAME);
+    }
+}
@@ -4,6 +4,7 @@ import com.aviasales.booking.booking.dto.response.*;
 import com.aviasales.booking.booking.entity.Airline;
 import com.aviasales.booking.booking.entity.Airport;
 import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.entity.FlightSchedule;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
@@ -26,6 +27,13 @@ public interface FlightMapper {
     @Mapping(target = "connectionAirport", source = "connectionAirport")
     FlightDetailResponse toFlightDetailResponse(Flight flight);
 
+    @Mapping(target = "airlineCode", source = "airline.iataCode")
+    @Mapping(target = "originCode", source = "origin.iataCode")
+    @Mapping(target = "destinationCode", source = "destination.iataCode")
+    FlightScheduleResponse toFlightScheduleResponse(FlightSchedule schedule);
+
+    List<FlightScheduleResponse> toFlightScheduleResponseList(List<FlightSchedule> schedules);
+
     AirportResponse toAirportResponse(Airport airport);
 
     List<AirportResponse> toAirportResponseList(List<Airport> airports);
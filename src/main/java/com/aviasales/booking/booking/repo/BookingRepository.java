@@ -6,11 +6,13 @@ import com.aviasales.booking.booking.enums.BookingStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +26,12 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
 
     boolean existsByBookingReference(String bookingReference);
 
+    /**
+     * Какие из номеров уже заняты (проверка пачки новых номеров одним запросом)
+     */
+    @Query("SELECT b.bookingReference FROM Booking b WHERE b.bookingReference IN :references")
+    List<String> findExistingReferences(@Param("references") Collection<String> references);
+
     // ═══════════════════════════════════════
     // ПОИСК ПО ПОЛЬЗОВАТЕЛЮ
     // ═══════════════════════════════════════
@@ -72,6 +80,43 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     """)
     List<Booking> findExpiredBookings(@Param("now") LocalDateTime now);
 
+    /**
+     * Перевести PENDING-бронирование в EXPIRED одним UPDATE
+     * @return 1 - истекло здесь, 0 - его уже истекли, оплатили или отменили (места не трогать)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        UPDATE Booking b SET b.status = :expired, b.updatedAt = :now
+        WHERE b.id = :id
+        AND b.status = :pending
+    """)
+    int markExpiredIfPending(
+            @Param("id") Long id,
+            @Param("pending") BookingStatus pending,
+            @Param("expired") BookingStatus expired,
+            @Param("now") LocalDateTime now
+    );
+
+    /**
+     * Сменить статус одним UPDATE, если бронирование ещё в одном из from
+     *
+     * UPDATE держит блокировку строки до коммита: параллельные оплата, отмена и истечение
+     * проходят по одному, и только у прошедшего (1) есть право трогать места.
+     * @return 1 - статус сменён здесь, 0 - бронирование уже в другом статусе
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        UPDATE Booking b SET b.status = :to, b.updatedAt = :now
+        WHERE b.id = :id
+        AND b.status IN :from
+    """)
+    int transitionStatus(
+            @Param("id") Long id,
+            @Param("from") Collection<BookingStatus> from,
+            @Param("to") BookingStatus to,
+            @Param("now") LocalDateTime now
+    );
+
     /**
      * Найти бронирования, которые скоро истекут (для напоминаний)
      */
@@ -2,19 +2,26 @@ package com.aviasales.booking.booking.repo;
 
 import com.aviasales.booking.booking.entity.Flight;
 import com.aviasales.booking.booking.enums.FlightStatus;
+import com.aviasales.booking.booking.index.IndexedFlight;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface FlightRepository extends JpaRepository<Flight, Long> {
@@ -23,9 +30,40 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
     // ПОИСК ПО НОМЕРУ РЕЙСА
     // ═══════════════════════════════════════
 
-    Optional<Flight> findByFlightNumber(String flightNumber);
+    /**
+     * Номер рейса повторяется по датам: ближайший предстоящий вылет...
+     */
+    Optional<Flight> findFirstByFlightNumberAndDepartureTimeAfterOrderByDepartureTimeAsc(String flightNumber, Instant after);
 
-    boolean existsByFlightNumber(String flightNumber);
+    /**
+     * ...или, если предстоящих нет, последний состоявшийся
+     */
+    Optional<Flight> findFirstByFlightNumberOrderByDepartureTimeDesc(String flightNumber);
+
+    /**
+     * Пересекается ли [departureTime, arrivalTime) с другим неотменённым рейсом того же номера.
+     *
+     * Рейс не длиннее Flight.MAX_DURATION, поэтому пересечься могут только вылеты позже
+     * departureTime - MAX_DURATION: нижняя граница earliestDeparture превращает проверку
+     * в короткий range scan по idx_flight_number (flight_number, departure_time)
+     */
+    @Query("""
+        SELECT COUNT(f) > 0 FROM Flight f
+        WHERE f.flightNumber = :flightNumber
+        AND f.departureTime > :earliestDeparture
+        AND f.departureTime < :arrivalTime
+        AND f.arrivalTime > :departureTime
+        AND f.status <> :cancelled
+        AND f.id <> :excludeId
+    """)
+    boolean existsOverlappingFlight(
+            @Param("flightNumber") String flightNumber,
+            @Param("departureTime") Instant departureTime,
+            @Param("arrivalTime") Instant arrivalTime,
+            @Param("earliestDeparture") Instant earliestDeparture,
+            @Param("cancelled") FlightStatus cancelled,
+            @Param("excludeId") Long excludeId
+    );
 
     // ═══════════════════════════════════════
     // ПОИСК РЕЙСОВ (ОСНОВНОЙ)
@@ -34,9 +72,21 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
     /**
      * Поиск рейсов по маршруту и дате
      * ✅ Исправлено: origin/destination вместо departureAirport/arrivalAirport
+     * Аэропорты и авиакомпания подгружаются тем же запросом (FlightMapper читает их для каждой строки)
      */
-    @Query("""
+    @Query(value = """
         SELECT f FROM Flight f
+        JOIN FETCH f.origin o
+        JOIN FETCH f.destination d
+        JOIN FETCH f.airline
+        WHERE o.iataCode = :originCode
+        AND d.iataCode = :destinationCode
+        AND f.departureTime >= :startDate
+        AND f.departureTime < :endDate
+        AND f.availableSeats >= :passengers
+        AND f.status = :status
+    """, countQuery = """
+        SELECT COUNT(f) FROM Flight f
         WHERE f.origin.iataCode = :originCode
         AND f.destination.iataCode = :destinationCode
         AND f.departureTime >= :startDate
@@ -54,6 +104,39 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
             Pageable pageable
     );
 
+    /**
+     * Поиск по нескольким аэропортам вылета и прилёта одним запросом (ближайшие аэропорты, метрополия)
+     */
+    @Query(value = """
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin o
+        JOIN FETCH f.destination d
+        JOIN FETCH f.airline
+        WHERE o.iataCode IN :originCodes
+        AND d.iataCode IN :destinationCodes
+        AND f.departureTime >= :startDate
+        AND f.departureTime < :endDate
+        AND f.availableSeats >= :passengers
+        AND f.status = :status
+    """, countQuery = """
+        SELECT COUNT(f) FROM Flight f
+        WHERE f.origin.iataCode IN :originCodes
+        AND f.destination.iataCode IN :destinationCodes
+        AND f.departureTime >= :startDate
+        AND f.departureTime < :endDate
+        AND f.availableSeats >= :passengers
+        AND f.status = :status
+    """)
+    Page<Flight> searchFlightsBetweenAirports(
+            @Param("originCodes") Collection<String> originCodes,
+            @Param("destinationCodes") Collection<String> destinationCodes,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("passengers") Integer passengers,
+            @Param("status") FlightStatus status,
+            Pageable pageable
+    );
+
     /**
      * Поиск рейсов без фильтра по статусу
      */
@@ -74,6 +157,228 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
             Pageable pageable
     );
 
+    /**
+     * Снимки рейсов для in-memory поискового индекса (без гидрации сущностей)
+     */
+    @Query("""
+        SELECT new com.aviasales.booking.booking.index.IndexedFlight(
+            f.id, f.flightNumber, o.iataCode, d.iataCode, f.departureTime, f.arrivalTime,
+            f.basePrice, f.businessPrice,
+            f.effectiveEconomyPrice, f.effectiveBusinessPrice, f.effectiveFirstClassPrice,
+            f.availableSeats, f.availableEconomy, f.availableBusiness, f.availableFirstClass
+        )
+        FROM Flight f
+        JOIN f.origin o
+        JOIN f.destination d
+        WHERE f.status = :status
+        AND f.departureTime >= :from
+    """)
+    List<IndexedFlight> findIndexedFlights(
+            @Param("status") FlightStatus status,
+            @Param("from") Instant from
+    );
+
+    /**
+     * То же в окне вылета [from, to)
+     */
+    @Query("""
+        SELECT new com.aviasales.booking.booking.index.IndexedFlight(
+            f.id, f.flightNumber, o.iataCode, d.iataCode, f.departureTime, f.arrivalTime,
+            f.basePrice, f.businessPrice,
+            f.effectiveEconomyPrice, f.effectiveBusinessPrice, f.effectiveFirstClassPrice,
+            f.availableSeats, f.availableEconomy, f.availableBusiness, f.availableFirstClass
+        )
+        FROM Flight f
+        JOIN f.origin o
+        JOIN f.destination d
+        WHERE f.status = :status
+        AND f.departureTime >= :from
+        AND f.departureTime < :to
+    """)
+    List<IndexedFlight> findIndexedFlightsBetween(
+            @Param("status") FlightStatus status,
+            @Param("from") Instant from,
+            @Param("to") Instant to
+    );
+
+    /**
+     * Страница выдачи по id из индекса: рейсы вместе с аэропортами и авиакомпанией одним запросом
+     */
+    @Query("""
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin
+        JOIN FETCH f.destination
+        JOIN FETCH f.airline
+        WHERE f.id IN :ids
+    """)
+    List<Flight> findAllForSearchByIdIn(@Param("ids") Collection<Long> ids);
+
+    // ═══════════════════════════════════════
+    // KEYSET-ПАГИНАЦИЯ (БЕЗ COUNT И OFFSET)
+    // ═══════════════════════════════════════
+
+    /**
+     * Keyset: сортировка по времени вылета
+     */
+    @Query("""
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin o
+        JOIN FETCH f.destination d
+        JOIN FETCH f.airline
+        WHERE o.iataCode = :originCode
+        AND d.iataCode = :destinationCode
+        AND f.departureTime >= :startDate
+        AND f.departureTime < :endDate
+        AND f.availableSeats >= :passengers
+        AND f.status = 'SCHEDULED'
+        AND (f.departureTime > :afterKey OR (f.departureTime = :afterKey AND f.id > :afterId))
+        ORDER BY f.departureTime ASC, f.id ASC
+    """)
+    List<Flight> searchFlightsAfterDepartureTime(
+            @Param("originCode") String originCode,
+            @Param("destinationCode") String destinationCode,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("passengers") Integer passengers,
+            @Param("afterKey") Instant afterKey,
+            @Param("afterId") Long afterId,
+            Pageable limit
+    );
+
+    /**
+     * Keyset: сортировка по длительности
+     */
+    @Query("""
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin o
+        JOIN FETCH f.destination d
+        JOIN FETCH f.airline
+        WHERE o.iataCode = :originCode
+        AND d.iataCode = :destinationCode
+        AND f.departureTime >= :startDate
+        AND f.departureTime < :endDate
+        AND f.availableSeats >= :passengers
+        AND f.status = 'SCHEDULED'
+        AND (f.durationMinutes > :afterKey OR (f.durationMinutes = :afterKey AND f.id > :afterId))
+        ORDER BY f.durationMinutes ASC, f.id ASC
+    """)
+    List<Flight> searchFlightsAfterDuration(
+            @Param("originCode") String originCode,
+            @Param("destinationCode") String destinationCode,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("passengers") Integer passengers,
+            @Param("afterKey") Integer afterKey,
+            @Param("afterId") Long afterId,
+            Pageable limit
+    );
+
+    /**
+     * Keyset: сортировка по действующей цене эконома (рейсы без класса - в конце)
+     */
+    @Query("""
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin o
+        JOIN FETCH f.destination d
+        JOIN FETCH f.airline
+        WHERE o.iataCode = :originCode
+        AND d.iataCode = :destinationCode
+        AND f.departureTime >= :startDate
+        AND f.departureTime < :endDate
+        AND f.availableSeats >= :passengers
+        AND f.status = 'SCHEDULED'
+        AND (COALESCE(f.effectiveEconomyPrice, 99999999.99) > :afterKey OR (COALESCE(f.effectiveEconomyPrice, 99999999.99) = :afterKey AND f.id > :afterId))
+        ORDER BY COALESCE(f.effectiveEconomyPrice, 99999999.99) ASC, f.id ASC
+    """)
+    List<Flight> searchFlightsAfterEconomyPrice(
+            @Param("originCode") String originCode,
+            @Param("destinationCode") String destinationCode,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("passengers") Integer passengers,
+            @Param("afterKey") BigDecimal afterKey,
+            @Param("afterId") Long afterId,
+            Pageable limit
+    );
+
+    /**
+     * Keyset: сортировка по действующей цене бизнеса (рейсы без класса - в конце)
+     */
+    @Query("""
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin o
+        JOIN FETCH f.destination d
+        JOIN FETCH f.airline
+        WHERE o.iataCode = :originCode
+        AND d.iataCode = :destinationCode
+        AND f.departureTime >= :startDate
+        AND f.departureTime < :endDate
+        AND f.availableSeats >= :passengers
+        AND f.status = 'SCHEDULED'
+        AND (COALESCE(f.effectiveBusinessPrice, 99999999.99) > :afterKey OR (COALESCE(f.effectiveBusinessPrice, 99999999.99) = :afterKey AND f.id > :afterId))
+        ORDER BY COALESCE(f.effectiveBusinessPrice, 99999999.99) ASC, f.id ASC
+    """)
+    List<Flight> searchFlightsAfterBusinessPrice(
+            @Param("originCode") String originCode,
+            @Param("destinationCode") String destinationCode,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("passengers") Integer passengers,
+            @Param("afterKey") BigDecimal afterKey,
+            @Param("afterId") Long afterId,
+            Pageable limit
+    );
+
+    /**
+     * Keyset: сортировка по действующей цене первого класса (рейсы без класса - в конце)
+     */
+    @Query("""
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin o
+        JOIN FETCH f.destination d
+        JOIN FETCH f.airline
+        WHERE o.iataCode = :originCode
+        AND d.iataCode = :destinationCode
+        AND f.departureTime >= :startDate
+        AND f.departureTime < :endDate
+        AND f.availableSeats >= :passengers
+        AND f.status = 'SCHEDULED'
+        AND (COALESCE(f.effectiveFirstClassPrice, 99999999.99) > :afterKey OR (COALESCE(f.effectiveFirstClassPrice, 99999999.99) = :afterKey AND f.id > :afterId))
+        ORDER BY COALESCE(f.effectiveFirstClassPrice, 99999999.99) ASC, f.id ASC
+    """)
+    List<Flight> searchFlightsAfterFirstClassPrice(
+            @Param("originCode") String originCode,
+            @Param("destinationCode") String destinationCode,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("passengers") Integer passengers,
+            @Param("afterKey") BigDecimal afterKey,
+            @Param("afterId") Long afterId,
+            Pageable limit
+    );
+
+    /**
+     * Рейсы, чью действующую цену пора пересчитать: ещё не посчитанные
+     * и ближайшие, у которых сменился день расчёта (меняется множитель дней до вылета)
+     */
+    @Query("""
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin
+        JOIN FETCH f.destination
+        WHERE f.status = :status
+        AND f.departureTime >= :from
+        AND (f.effectivePriceDate IS NULL
+             OR (f.effectivePriceDate < :today AND f.departureTime < :horizon))
+        ORDER BY f.id ASC
+    """)
+    List<Flight> findFlightsToReprice(
+            @Param("status") FlightStatus status,
+            @Param("from") Instant from,
+            @Param("today") LocalDate today,
+            @Param("horizon") Instant horizon,
+            Pageable limit
+    );
+
     // ═══════════════════════════════════════
     // ПОИСК ПО АЭРОПОРТАМ И ВРЕМЕНИ
     // ═══════════════════════════════════════
@@ -115,6 +420,18 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
     """)
     List<Object[]> findPopularDestinations(Pageable pageable);
 
+    /**
+     * Число SCHEDULED рейсов по каждому направлению: [iataCode, count]
+     */
+    @Query("""
+        SELECT d.iataCode, COUNT(f)
+        FROM Flight f
+        JOIN f.destination d
+        WHERE f.status = 'SCHEDULED'
+        GROUP BY d.iataCode
+    """)
+    List<Object[]> countScheduledFlightsByDestination();
+
     // ═══════════════════════════════════════
     // ПОИСК ПО СТАТУСУ
     // ═══════════════════════════════════════
@@ -175,6 +492,54 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
             @Param("endDateTime") Instant endDateTime
     );
 
+    /**
+     * Рейсы маршрута в полуинтервале дат с аэропортами и авиакомпанией (для выдачи за горизонтом индекса)
+     */
+    @Query("""
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin o
+        JOIN FETCH f.destination d
+        JOIN FETCH f.airline
+        WHERE o.iataCode = :originCode
+        AND d.iataCode = :destinationCode
+        AND f.departureTime >= :startDate
+        AND f.departureTime < :endDate
+        AND f.availableSeats >= :passengers
+        AND f.status = 'SCHEDULED'
+    """)
+    List<Flight> findFlightsWithDetailsByRoute(
+            @Param("originCode") String originCode,
+            @Param("destinationCode") String destinationCode,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("passengers") int passengers
+    );
+
+    /**
+     * То же, что findFlightsByRouteAndDateRange, но курсором: рейсы читаются из БД порциями
+     * Аэропорты и авиакомпания подгружаются сразу, чтобы не было N+1 во время стрима
+     * Вызывать только внутри транзакции и закрывать Stream
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "100"))
+    @Query("""
+        SELECT f FROM Flight f
+        JOIN FETCH f.origin o
+        JOIN FETCH f.destination d
+        JOIN FETCH f.airline
+        WHERE o.iataCode = :originCode
+        AND d.iataCode = :destinationCode
+        AND f.departureTime >= :startDateTime
+        AND f.departureTime <= :endDateTime
+        AND f.status = 'SCHEDULED'
+        ORDER BY f.departureTime ASC
+    """)
+    Stream<Flight> streamFlightsByRouteAndDateRange(
+            @Param("originCode") String originCode,
+            @Param("destinationCode") String destinationCode,
+            @Param("startDateTime") Instant startDateTime,
+            @Param("endDateTime") Instant endDateTime
+    );
+
     /**
      * Поиск рейсов по маршруту и конкретной дате (для точного поиска)
      */
@@ -194,7 +559,84 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
             @Param("endOfDay") Instant endOfDay
     );
 
-    boolean existsByDepartureTimeLessThanAndArrivalTimeGreaterThan(Instant arrivalTime, Instant departureTime);
+    /**
+     * Интервалы (номер рейса, вылет, прилёт) неотменённых рейсов с вылетом в [from, to) -
+     * для проверки пересечений при импорте
+     */
+    @Query("""
+        SELECT f.flightNumber, f.departureTime, f.arrivalTime FROM Flight f
+        WHERE f.flightNumber IN :flightNumbers
+        AND f.departureTime >= :from
+        AND f.departureTime < :to
+        AND f.status <> :cancelled
+    """)
+    List<Object[]> findScheduleIntervals(
+            @Param("flightNumbers") Collection<String> flightNumbers,
+            @Param("from") Instant from,
+            @Param("to") Instant to,
+            @Param("cancelled") FlightStatus cancelled
+    );
+
+    // ═══════════════════════════════════════
+    // РАСКЛАДКА САЛОНА
+    // ═══════════════════════════════════════
+
+    /**
+     * Тип ВС рейса (пусто - не указан или рейса нет)
+     */
+    @Query("SELECT f.aircraftType FROM Flight f WHERE f.id = :id")
+    Optional<String> findAircraftTypeById(@Param("id") Long id);
+
+    // ═══════════════════════════════════════
+    // ИНВЕНТАРЬ МЕСТ (атомарно, без read-modify-write)
+    // ═══════════════════════════════════════
+
+    /**
+     * Списать места по классам одним UPDATE, только если их хватает во всех классах сразу
+     * @return 1 - списано, 0 - мест не хватило (ничего не изменено)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        UPDATE Flight f SET
+            f.availableEconomy = COALESCE(f.availableEconomy, 0) - :economy,
+            f.availableBusiness = COALESCE(f.availableBusiness, 0) - :business,
+            f.availableFirstClass = COALESCE(f.availableFirstClass, 0) - :firstClass,
+            f.availableSeats = COALESCE(f.availableSeats, 0) - (:economy + :business + :firstClass),
+            f.updatedAt = :now
+        WHERE f.id = :id
+        AND COALESCE(f.availableEconomy, 0) >= :economy
+        AND COALESCE(f.availableBusiness, 0) >= :business
+        AND COALESCE(f.availableFirstClass, 0) >= :firstClass
+        AND COALESCE(f.availableSeats, 0) >= :economy + :business + :firstClass
+    """)
+    int reserveSeats(
+            @Param("id") Long id,
+            @Param("economy") int economy,
+            @Param("business") int business,
+            @Param("firstClass") int firstClass,
+            @Param("now") Instant now
+    );
+
+    /**
+     * Вернуть места по классам одним UPDATE (не больше вместимости класса)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        UPDATE Flight f SET
+            f.availableEconomy = LEAST(COALESCE(f.availableEconomy, 0) + :economy, COALESCE(f.economySeats, 0)),
+            f.availableBusiness = LEAST(COALESCE(f.availableBusiness, 0) + :business, COALESCE(f.businessSeats, 0)),
+            f.availableFirstClass = LEAST(COALESCE(f.availableFirstClass, 0) + :firstClass, COALESCE(f.firstClassSeats, 0)),
+            f.availableSeats = LEAST(COALESCE(f.availableSeats, 0) + (:economy + :business + :firstClass), f.totalSeats),
+            f.updatedAt = :now
+        WHERE f.id = :id
+    """)
+    int releaseSeats(
+            @Param("id") Long id,
+            @Param("economy") int economy,
+            @Param("business") int business,
+            @Param("firstClass") int firstClass,
+            @Param("now") Instant now
+    );
 
     @Modifying
     @Transactional
@@ -0,0 +1,67 @@
+package com.aviasales.booking.booking.repo;
+
+import com.aviasales.booking.booking.entity.FlightSchedule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FlightScheduleRepository extends JpaRepository<FlightSchedule, Long> {
+
+    @Query("""
+        SELECT s FROM FlightSchedule s
+        JOIN FETCH s.airline
+        JOIN FETCH s.origin
+        JOIN FETCH s.destination
+        WHERE s.id = :id
+    """)
+    Optional<FlightSchedule> findWithRelationsById(@Param("id") Long id);
+
+    @Query("""
+        SELECT s FROM FlightSchedule s
+        JOIN FETCH s.airline
+        JOIN FETCH s.origin
+        JOIN FETCH s.destination
+        ORDER BY s.flightNumber, s.validFrom
+    """)
+    List<FlightSchedule> findAllWithRelations();
+
+    /**
+     * Активные расписания, у которых рейсы созданы не до конца горизонта (или периода действия)
+     */
+    @Query("""
+        SELECT s.id FROM FlightSchedule s
+        WHERE s.isActive = true
+        AND s.validTo >= :today
+        AND (s.materializedThrough IS NULL
+             OR (s.materializedThrough < :horizon AND s.materializedThrough < s.validTo))
+        ORDER BY s.id
+    """)
+    List<Long> findIdsToMaterialize(@Param("today") LocalDate today, @Param("horizon") LocalDate horizon);
+
+    /**
+     * Активные расписания маршрута, действующие хотя бы в одну из дат [from, to]
+     */
+    @Query("""
+        SELECT s FROM FlightSchedule s
+        JOIN FETCH s.airline
+        JOIN FETCH s.origin o
+        JOIN FETCH s.destination d
+        WHERE o.iataCode = :originCode
+        AND d.iataCode = :destinationCode
+        AND s.isActive = true
+        AND s.validFrom <= :to
+        AND s.validTo >= :from
+    """)
+    List<FlightSchedule> findActiveByRoute(
+            @Param("originCode") String originCode,
+            @Param("destinationCode") String destinationCode,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to
+    );
+}
@@ -1,8 +1,11 @@
 package com.aviasales.booking.booking.repo;
 
 import com.aviasales.booking.booking.entity.Ticket;
+import com.aviasales.booking.booking.enums.BookingStatus;
+import com.aviasales.booking.booking.enums.TicketStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
 import java.util.List;
@@ -16,9 +19,50 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
      */
     List<Ticket> findByFlightId(Long flightId);
 
+    /**
+     * Номера занятых мест рейса - без загрузки самих билетов
+     */
+    @Query("""
+        SELECT t.seatNumber FROM Ticket t
+        WHERE t.flight.id = :flightId
+        AND t.seatNumber IS NOT NULL
+        AND t.status NOT IN :releasedTickets
+        AND t.booking.status NOT IN :releasedBookings
+    """)
+    List<String> findOccupiedSeatNumbers(
+            @Param("flightId") Long flightId,
+            @Param("releasedTickets") Collection<TicketStatus> releasedTickets,
+            @Param("releasedBookings") Collection<BookingStatus> releasedBookings
+    );
+
+    /**
+     * Занят ли номер билета или электронного билета (старые номера выдавались без общей последовательности)
+     */
+    @Query("""
+        SELECT COUNT(t) > 0 FROM Ticket t
+        WHERE t.ticketNumber = :ticketNumber
+        OR t.eTicketNumber = :eTicketNumber
+    """)
+    boolean isNumberTaken(@Param("ticketNumber") String ticketNumber,
+                          @Param("eTicketNumber") String eTicketNumber);
+
     /**
      * Подсчитать количество билетов для рейса
      */
     @Query("SELECT COUNT(t) FROM Ticket t WHERE t.flight.id = :flightId")
     long countByFlightId(Long flightId);
+
+    /**
+     * Число бронирований по направлениям: [iataCode, count]
+     */
+    @Query("""
+        SELECT d.iataCode, COUNT(DISTINCT b.id)
+        FROM Ticket t
+        JOIN t.booking b
+        JOIN t.flight f
+        JOIN f.destination d
+        WHERE b.status IN :statuses
+        GROUP BY d.iataCode
+    """)
+    List<Object[]> countBookingsByDestination(@Param("statuses") Collection<BookingStatus> statuses);
 }
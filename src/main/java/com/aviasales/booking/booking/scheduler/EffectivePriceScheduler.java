@@ -0,0 +1,103 @@
+package com.aviasales.booking.booking.scheduler;
+
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.FlightStatus;
+import com.aviasales.booking.booking.index.FlightSearchIndex;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.service.interfaces.PricingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Scheduler для пересчёта действующих цен при смене дня
+ *
+ * Изменения мест пересчитывают цену сразу, а множитель "дней до вылета" меняется только со сменой даты
+ * и только для рейсов в ближайшие 14 дней - их и пересчитываем после полуночи.
+ * При старте заодно досчитываем рейсы, у которых действующей цены ещё нет.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EffectivePriceScheduler {
+
+    /**
+     * Дальше этого срока множитель времени до вылета постоянный (см. PricingServiceImpl.getTimeMultiplier)
+     */
+    private static final int TIME_MULTIPLIER_HORIZON_DAYS = 14;
+
+    private final FlightRepository flightRepository;
+    private final FlightSearchIndex flightSearchIndex;
+    private final PricingService pricingService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${search.pricing.reprice-batch-size:500}")
+    private int batchSize;
+
+    /**
+     * До загрузки поискового индекса, чтобы он сразу прочитал посчитанные цены
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onStartup() {
+        repriceStaleFlights();
+    }
+
+    /**
+     * Каждая пачка в своей транзакции: блокировки строк и persistence context не копятся на весь пересчёт
+     */
+    @Scheduled(cron = "${search.pricing.reprice-cron:0 1 0 * * *}")
+    public void repriceStaleFlights() {
+        long start = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        Instant horizon = today.plusDays(TIME_MULTIPLIER_HORIZON_DAYS + 1)
+                .atStartOfDay(ZoneId.systemDefault())
+                .toInstant();
+
+        int repriced = 0;
+        int changed = 0;
+        int[] batchResult;
+        // Пересчитанные рейсы выпадают из выборки, поэтому всегда берём первую страницу
+        do {
+            batchResult = transactionTemplate.execute(status -> repriceBatch(today, horizon));
+            repriced += batchResult[0];
+            changed += batchResult[1];
+        } while (batchResult[0] == batchSize);
+
+        if (repriced > 0) {
+            log.info("Effective prices recalculated for {} flights ({} changed) in {} ms",
+                    repriced, changed, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Пересчитать одну пачку рейсов
+     * Возвращает {сколько рейсов прочитано, у скольких изменилась цена}
+     */
+    private int[] repriceBatch(LocalDate today, Instant horizon) {
+        List<Flight> batch = flightRepository.findFlightsToReprice(
+                FlightStatus.SCHEDULED, Instant.now(), today, horizon, PageRequest.of(0, batchSize));
+
+        int changed = 0;
+        for (Flight flight : batch) {
+            if (pricingService.refreshEffectivePrices(flight, today)) {
+                flightSearchIndex.upsert(flight);
+                changed++;
+            }
+        }
+        return new int[]{batch.size(), changed};
+    }
+}
@@ -0,0 +1,31 @@
+package com.aviasales.booking.booking.scheduler;
+
+import com.aviasales.booking.booking.service.interfaces.FlightScheduleService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduler для сдвига горизонта материализации регулярных расписаний
+ *
+ * Каждый день горизонт сдвигается на день - создаём рейсы на новую дату.
+ * При старте догоняем всё, что пропустили, пока приложение не работало.
+ */
+@Component
+@RequiredArgsConstructor
+public class ScheduleMaterializationScheduler {
+
+    private final FlightScheduleService flightScheduleService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        materialize();
+    }
+
+    @Scheduled(cron = "${flights.schedules.materialize-cron:0 30 0 * * *}")
+    public void materialize() {
+        flightScheduleService.materializeAll();
+    }
+}
@@ -0,0 +1,99 @@
+package com.aviasales.booking.booking.sequence;
+
+import com.aviasales.booking.booking.repo.BookingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Номера бронирований без проверки уникальности в БД на каждое бронирование
+ *
+ * Номер - счётчик из SequenceBlocks, переставленный биекцией на [0, 36^6) и записанный
+ * шестью символами A-Z0-9 (ReferencePermutation). Разные счётчики дают разные номера,
+ * поэтому коллизий нет, а соседние бронирования получают непохожие номера
+ * (ключ перестановки - bookings.reference.secret).
+ *
+ * Пока в базе есть старые случайные номера, новые сверяются с ними одним запросом
+ * на пачку (bookings.reference.legacy-check).
+ *
+ * Счётчики раньше выдавались блоками hi * blockSize из booking_reference_seq; если она есть,
+ * отрезки id_segments начинаются за последним её блоком, и выданные номера не повторяются.
+ */
+@Slf4j
+@Component
+public class BookingReferenceGenerator {
+
+    private final SequenceBlocks blocks;
+    private final ReferencePermutation permutation;
+    private final BookingRepository bookingRepository;
+    private final boolean legacyCheck;
+
+    private final ArrayDeque<String> prepared = new ArrayDeque<>();
+
+    public BookingReferenceGenerator(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            BookingRepository bookingRepository,
+            @Value("${bookings.reference.block-size:1000}") int blockSize,
+            @Value("${bookings.reference.secret:5b1f3c9e2a7d4068}") String secret,
+            @Value("${bookings.reference.legacy-check:true}") boolean legacyCheck,
+            @Value("${bookings.reference.legacy-block-size:${bookings.reference.block-size:1000}}") int legacyBlockSize
+    ) {
+        this.blocks = SequenceBlocks.postgres(jdbcTemplate, transactionManager, "booking_reference", blockSize,
+                () -> legacySequenceEnd(jdbcTemplate, legacyBlockSize));
+        this.permutation = new ReferencePermutation(Long.parseUnsignedLong(secret, 16));
+        this.bookingRepository = bookingRepository;
+        this.legacyCheck = legacyCheck;
+    }
+
+    public synchronized String next() {
+        if (prepared.isEmpty()) {
+            prepare();
+        }
+        return prepared.poll();
+    }
+
+    /**
+     * Первый счётчик за блоками, выданными из booking_reference_seq (0 - последовательности нет)
+     */
+    private static long legacySequenceEnd(JdbcTemplate jdbcTemplate, int legacyBlockSize) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT to_regclass('booking_reference_seq') IS NOT NULL", Boolean.class);
+        if (!Boolean.TRUE.equals(exists)) {
+            return 0;
+        }
+        Long lastHi = jdbcTemplate.queryForObject(
+                "SELECT CASE WHEN is_called THEN last_value ELSE last_value - 1 END FROM booking_reference_seq",
+                Long.class);
+        long end = lastHi == null ? 0 : Math.multiplyExact(lastHi + 1, (long) legacyBlockSize);
+        log.info("Booking references continue after booking_reference_seq at counter {}", end);
+        return end;
+    }
+
+    /**
+     * Пачка номеров на отрезок SequenceBlocks; старые случайные номера из неё выбрасываются
+     */
+    private void prepare() {
+        List<String> batch = new ArrayList<>(blocks.blockSize());
+        for (int i = 0; i < blocks.blockSize(); i++) {
+            batch.add(permutation.encode(blocks.next()));
+        }
+
+        if (legacyCheck) {
+            Set<String> taken = new HashSet<>(bookingRepository.findExistingReferences(batch));
+            if (!taken.isEmpty()) {
+                log.info("Skipping {} booking references already used by legacy bookings", taken.size());
+                batch.removeIf(taken::contains);
+            }
+        }
+        prepared.addAll(batch);
+    }
+}
@@ -0,0 +1,62 @@
+package com.aviasales.booking.booking.sequence;
+
+/**
+ * Шестисимвольный код A-Z0-9 из счётчика: биекция [0, 36^6) -> [0, 36^6) и запись в base-36
+ *
+ * Перестановка - сбалансированная сеть Фейстеля над двумя половинами по 36^3. Раунд
+ * (L, R) -> (R, (L + F(R)) mod 36^3) обратим при любой F, поэтому разные счётчики дают разные коды,
+ * а F с ключом раунда делает соседние счётчики непохожими. Разные ключи - независимые перестановки.
+ */
+public final class ReferencePermutation {
+
+    static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    static final int LENGTH = 6;
+
+    static final long HALF = 36L * 36 * 36;
+    static final long SIZE = HALF * HALF;
+
+    private static final int ROUNDS = 6;
+
+    private final long[] keys = new long[ROUNDS];
+
+    public ReferencePermutation(long secret) {
+        long state = secret;
+        for (int i = 0; i < ROUNDS; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            keys[i] = mix(state);
+        }
+    }
+
+    public String encode(long counter) {
+        long value = apply(counter);
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (value % ALPHABET.length()));
+            value /= ALPHABET.length();
+        }
+        return new String(chars);
+    }
+
+    long apply(long value) {
+        if (value < 0 || value >= SIZE) {
+            throw new IllegalStateException("Reference space exhausted: " + value);
+        }
+        long left = value / HALF;
+        long right = value % HALF;
+        for (long key : keys) {
+            long next = (left + Math.floorMod(mix(right ^ key), HALF)) % HALF;
+            left = right;
+            right = next;
+        }
+        return left * HALF + right;
+    }
+
+    /**
+     * Финальное перемешивание SplitMix64
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,127 @@
+package com.aviasales.booking.booking.sequence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Номера из арендованных у БД отрезков: один запрос к БД на blockSize номеров
+ *
+ * Аренда (lease) выдаёт начало свободного отрезка [start, start + size) и никогда не выдаёт его повторно -
+ * ни другому узлу, ни после рестарта; неизрасходованный остаток отрезка при рестарте теряется.
+ * Внутри отрезка номера раздаются getAndIncrement без блокировок, блокировка - только на смену отрезка.
+ */
+public final class SequenceBlocks {
+
+    /**
+     * Отрезки хранятся строкой в id_segments: max_id - верхняя граница уже выданного
+     */
+    private static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS id_segments (name VARCHAR(64) PRIMARY KEY, max_id BIGINT NOT NULL)";
+    private static final String INSERT_SEGMENT =
+            "INSERT INTO id_segments (name, max_id) VALUES (?, 0) ON CONFLICT (name) DO NOTHING";
+    private static final String RAISE_SEGMENT =
+            "UPDATE id_segments SET max_id = GREATEST(max_id, ?) WHERE name = ?";
+    private static final String LEASE_SEGMENT =
+            "UPDATE id_segments SET max_id = max_id + ? WHERE name = ? RETURNING max_id";
+
+    private final LongUnaryOperator lease;
+    private final int blockSize;
+
+    private volatile Segment current = new Segment(0, 0);
+
+    /**
+     * @param lease по размеру отрезка - его начало
+     */
+    public SequenceBlocks(LongUnaryOperator lease, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.lease = lease;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Отрезки из таблицы id_segments (создаётся при первом обращении)
+     *
+     * Аренда коммитится отдельной транзакцией: откат бронирования не должен вернуть
+     * в БД отрезок, номера из которого уже раздаются из памяти.
+     */
+    public static SequenceBlocks postgres(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                          String name, int blockSize) {
+        return postgres(jdbcTemplate, transactionManager, name, blockSize, () -> 0);
+    }
+
+    /**
+     * То же, но номера ниже floor не выдаются: floor - граница номеров, выданных прежним генератором
+     * (считается один раз, при первой аренде)
+     */
+    public static SequenceBlocks postgres(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                          String name, int blockSize, LongSupplier floor) {
+        TransactionTemplate ownTransaction = new TransactionTemplate(transactionManager);
+        ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        return new SequenceBlocks(new LongUnaryOperator() {
+            private volatile boolean created;
+
+            @Override
+            public long applyAsLong(long size) {
+                if (!created) {
+                    ownTransaction.executeWithoutResult(status -> {
+                        jdbcTemplate.execute(CREATE_TABLE);
+                        jdbcTemplate.update(INSERT_SEGMENT, name);
+                        jdbcTemplate.update(RAISE_SEGMENT, floor.getAsLong(), name);
+                    });
+                    created = true;
+                }
+                Long max = ownTransaction.execute(status ->
+                        jdbcTemplate.queryForObject(LEASE_SEGMENT, Long.class, size, name));
+                if (max == null) {
+                    throw new IllegalStateException("Segment " + name + " was not leased");
+                }
+                return max - size;
+            }
+        }, blockSize);
+    }
+
+    public long next() {
+        while (true) {
+            Segment segment = current;
+            long value = segment.cursor.getAndIncrement();
+            if (value < segment.limit) {
+                return value;
+            }
+            refill(segment);
+        }
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Сменить исчерпанный отрезок; остальные потоки ждут здесь же и берут номера из нового
+     */
+    private synchronized void refill(Segment exhausted) {
+        if (current == exhausted) {
+            long start = lease.applyAsLong(blockSize);
+            current = new Segment(start, start + blockSize);
+        }
+    }
+
+    private static final class Segment {
+
+        private final AtomicLong cursor;
+        private final long limit;
+
+        Segment(long start, long limit) {
+            this.cursor = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.aviasales.booking.booking.sequence;
+
+import com.aviasales.booking.booking.repo.TicketRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Номера билетов, уникальные на всех узлах и между рестартами
+ *
+ * Серийный номер - из SequenceBlocks (отрезки из id_segments), без блокировок внутри отрезка.
+ * Номер билета (13 цифр): код авиакомпании (3) + серийный (9) + контрольная цифра (1, остаток от деления на 7,
+ * как у IATA). Электронный билет - тот же серийный, переставленный ReferencePermutation в 6 символов A-Z0-9.
+ *
+ * Старые номера (префикс + время + счётчик) лежат в том же 13-значном пространстве, а старые электронные
+ * билеты были случайными: пока они есть в базе, занятые номера пропускаются (tickets.numbers.legacy-check).
+ */
+@Slf4j
+@Component
+public class TicketNumberAllocator {
+
+    private static final long SERIAL_LIMIT = 1_000_000_000L;
+
+    private final SequenceBlocks blocks;
+    private final ReferencePermutation permutation;
+    private final String defaultPrefix;
+    private final Map<String, String> airlinePrefixes;
+    private final Predicate<TicketNumbers> inUse;
+
+    @Autowired
+    public TicketNumberAllocator(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${tickets.numbers.block-size:1000}") int blockSize,
+            @Value("${tickets.numbers.secret:9c4e7a21d05b3f86}") String secret,
+            @Value("${tickets.numbers.default-prefix:555}") String defaultPrefix,
+            @Value("${tickets.numbers.airline-prefixes:}") String airlinePrefixes,
+            @Value("${tickets.numbers.legacy-check:true}") boolean legacyCheck,
+            TicketRepository ticketRepository
+    ) {
+        this(SequenceBlocks.postgres(jdbcTemplate, transactionManager, "ticket_number", blockSize),
+                Long.parseUnsignedLong(secret, 16), defaultPrefix, parsePrefixes(airlinePrefixes),
+                legacyCheck
+                        ? numbers -> ticketRepository.isNumberTaken(numbers.ticketNumber(), numbers.eTicketNumber())
+                        : numbers -> false);
+    }
+
+    public TicketNumberAllocator(SequenceBlocks blocks, long secret, String defaultPrefix,
+                                 Map<String, String> airlinePrefixes) {
+        this(blocks, secret, defaultPrefix, airlinePrefixes, numbers -> false);
+    }
+
+    public TicketNumberAllocator(SequenceBlocks blocks, long secret, String defaultPrefix,
+                                 Map<String, String> airlinePrefixes, Predicate<TicketNumbers> inUse) {
+        this.blocks = blocks;
+        this.inUse = inUse;
+        this.permutation = new ReferencePermutation(secret);
+        this.defaultPrefix = checkPrefix(defaultPrefix);
+        this.airlinePrefixes = Map.copyOf(airlinePrefixes);
+        this.airlinePrefixes.values().forEach(TicketNumberAllocator::checkPrefix);
+    }
+
+    /**
+     * Номер билета и электронного билета
+     * @param airlineCode IATA-код авиакомпании (без своего кода - tickets.numbers.default-prefix)
+     */
+    public TicketNumbers allocate(String airlineCode) {
+        String prefix = airlineCode != null
+                ? airlinePrefixes.getOrDefault(airlineCode, defaultPrefix)
+                : defaultPrefix;
+
+        TicketNumbers numbers = numbers(prefix, blocks.next());
+        while (inUse.test(numbers)) {
+            log.info("Skipping ticket number {} / {} already used by a legacy ticket",
+                    numbers.ticketNumber(), numbers.eTicketNumber());
+            numbers = numbers(prefix, blocks.next());
+        }
+        return numbers;
+    }
+
+    private TicketNumbers numbers(String prefix, long serial) {
+        if (serial >= SERIAL_LIMIT) {
+            throw new IllegalStateException("Ticket serial numbers exhausted: " + serial);
+        }
+        long body = Long.parseLong(prefix) * SERIAL_LIMIT + serial;
+        return new TicketNumbers(
+                String.format("%s%09d%d", prefix, serial, body % 7),
+                permutation.encode(serial));
+    }
+
+    /**
+     * Сходится ли контрольная цифра номера билета
+     */
+    public static boolean isValid(String ticketNumber) {
+        if (ticketNumber == null || !ticketNumber.matches("\\d{13}")) {
+            return false;
+        }
+        long body = Long.parseLong(ticketNumber.substring(0, 12));
+        return body % 7 == ticketNumber.charAt(12) - '0';
+    }
+
+    public record TicketNumbers(String ticketNumber, String eTicketNumber) {
+    }
+
+    /**
+     * "SU:555, S7:421" -> {SU=555, S7=421}
+     */
+    private static Map<String, String> parsePrefixes(String value) {
+        Map<String, String> prefixes = new HashMap<>();
+        for (String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Bad airline ticket prefix: " + entry.trim());
+            }
+            prefixes.put(parts[0].trim(), parts[1].trim());
+        }
+        return prefixes;
+    }
+
+    private static String checkPrefix(String prefix) {
+        if (prefix == null || !prefix.matches("\\d{3}")) {
+            throw new IllegalArgumentException("Ticket prefix must be 3 digits: " + prefix);
+        }
+        return prefix;
+    }
+}
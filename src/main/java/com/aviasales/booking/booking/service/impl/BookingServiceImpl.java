@@ -7,38 +7,53 @@ import com.aviasales.booking.booking.dto.response.BookingDetailResponse;
 import com.aviasales.booking.booking.dto.response.BookingResponse;
 import com.aviasales.booking.booking.embedded.ContactInfo;
 import com.aviasales.booking.booking.entity.*;
+import com.aviasales.booking.booking.hold.SeatHold;
+import com.aviasales.booking.booking.hold.SeatHoldManager;
+import com.aviasales.booking.booking.index.PopularDestinationsAggregate;
+import com.aviasales.booking.booking.index.TicketSeatIndex;
 import com.aviasales.booking.booking.repo.*;
+import com.aviasales.booking.booking.sequence.BookingReferenceGenerator;
+import com.aviasales.booking.booking.sequence.TicketNumberAllocator;
 import com.aviasales.booking.booking.service.interfaces.PricingService;
+import com.aviasales.booking.booking.service.interfaces.SeatInventoryService;
 import com.aviasales.booking.booking.service.interfaces.SeatSelectionService;
 import com.aviasales.booking.booking.service.interfaces.TicketPdfService;
 import com.aviasales.booking.booking.enums.BookingStatus;
 import com.aviasales.booking.booking.enums.CabinClass;
 import com.aviasales.booking.booking.enums.PaymentStatus;
+import com.aviasales.booking.booking.enums.SeatPreference;
 import com.aviasales.booking.booking.enums.TicketStatus;
 import com.aviasales.booking.booking.exception.BookingExpiredException;
 import com.aviasales.booking.booking.exception.BookingNotFoundException;
 import com.aviasales.booking.booking.exception.FlightNotFoundException;
 import com.aviasales.booking.booking.exception.InsufficientSeatsException;
+import com.aviasales.booking.booking.exception.NoAvailableSeatsException;
 import com.aviasales.booking.booking.mapper.BookingMapper;
 import com.aviasales.booking.booking.service.interfaces.BookingService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.nio.file.AccessDeniedException;
-import java.security.SecureRandom;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 
 @Slf4j
@@ -53,19 +68,25 @@ public class BookingServiceImpl implements BookingService {
     private final BookingMapper bookingMapper;
     private final TicketPdfService ticketPdfService;
     private final SeatSelectionService seatSelectionService;
+    private final SeatInventoryService seatInventoryService;
     private final PricingService pricingService;
+    private final PopularDestinationsAggregate popularDestinations;
+    private final SeatHoldManager seatHoldManager;
+    private final BookingReferenceGenerator bookingReferenceGenerator;
+    private final TicketNumberAllocator ticketNumberAllocator;
 
-    private static final String REFERENCE_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-    private static final int REFERENCE_LENGTH = 6;
-    private static final int EXPIRATION_MINUTES = 15;
-    private final SecureRandom random = new SecureRandom();
+    /**
+     * Сколько держим места без оплаты
+     */
+    @Value("${seats.holds.ttl-minutes:15}")
+    private int holdTtlMinutes;
 
     // ═══════════════════════════════════════
     // СОЗДАНИЕ БРОНИРОВАНИЯ (С ПОДДЕРЖКОЙ РАЗНЫХ КЛАССОВ)
     // ═══════════════════════════════════════
 
     @Override
-    @Transactional
+    @Transactional(rollbackFor = InsufficientSeatsException.class)
     public BookingResponse createBooking(CreateBookingRequest request, Long userId)
             throws InsufficientSeatsException {
         log.info("Creating booking for user: {}", userId);
@@ -117,14 +138,15 @@ public class BookingServiceImpl implements BookingService {
         }
 
         // 6. Создаём бронирование
+        Instant holdExpiresAt = Instant.now().plus(holdTtlMinutes, ChronoUnit.MINUTES);
         Booking booking = Booking.builder()
-                .bookingReference(generateUniqueBookingReference())
+                .bookingReference(bookingReferenceGenerator.next())
                 .user(user)
                 .status(BookingStatus.PENDING)
                 .paymentStatus(PaymentStatus.PENDING)
                 .totalAmount(BigDecimal.ZERO)
                 .paidAmount(BigDecimal.ZERO)
-                .expiresAt(LocalDateTime.now().plusMinutes(EXPIRATION_MINUTES))
+                .expiresAt(LocalDateTime.ofInstant(holdExpiresAt, ZoneId.systemDefault()))
                 .contactInfo(createContactInfo(request))
                 .specialRequests(request.getSpecialRequests())
                 .tickets(new ArrayList<>())
@@ -133,6 +155,8 @@ public class BookingServiceImpl implements BookingService {
         // 7. ✅ СОЗДАЕМ БИЛЕТЫ С УЧЕТОМ ИНДИВИДУАЛЬНОГО КЛАССА
         BigDecimal totalAmount = BigDecimal.ZERO;
         LocalDate bookingDate = LocalDate.now();
+        List<String> assignedSeats = assignSeats(flight, request.getPassengers(), defaultClass);
+        int passengerIndex = 0;
 
         for (PassengerInfoRequest passengerRequest : request.getPassengers()) {
             Passenger passenger = createOrGetPassenger(passengerRequest, user);
@@ -149,20 +173,18 @@ public class BookingServiceImpl implements BookingService {
                     bookingDate
             ).getTotalPrice();
 
-            // Назначаем место
-            String assignedSeat = seatSelectionService.assignSeat(
-                    flight,
-                    passengerClass,
-                    passengerRequest.getSeatNumber(),
-                    passengerRequest.getSeatPreference()
-            );
+            String assignedSeat = assignedSeats.get(passengerIndex++);
 
             log.info("Assigned {} class seat {} to passenger {} {} (price: {})",
                     passengerClass, assignedSeat,
                     passenger.getFirstName(), passenger.getLastName(), ticketPrice);
 
             // Создаём билет
+            TicketNumberAllocator.TicketNumbers numbers =
+                    ticketNumberAllocator.allocate(flight.getAirline().getIataCode());
             Ticket ticket = Ticket.builder()
+                    .ticketNumber(numbers.ticketNumber())
+                    .eTicketNumber(numbers.eTicketNumber())
                     .booking(booking)
                     .flight(flight)
                     .passenger(passenger)
@@ -185,16 +207,28 @@ public class BookingServiceImpl implements BookingService {
 
         booking.setTotalAmount(totalAmount);
 
-        // 8. ✅ Резервируем места по классам
-        for (Map.Entry<CabinClass, Integer> entry : seatsByClass.entrySet()) {
-            flight.reserveSeats(entry.getValue(), entry.getKey());
-            log.debug("Reserved {} {} seats on flight {}",
-                    entry.getValue(), entry.getKey(), flight.getFlightNumber());
+        // 8. Сохраняем бронирование (cascade сохранит билеты)
+        try {
+            booking = bookingRepository.save(booking);
+        } catch (DataIntegrityViolationException e) {
+            if (!TicketSeatIndex.isViolatedBy(e)) {
+                throw e;
+            }
+            // Карта мест узла не знала о продаже на другом узле
+            seatSelectionService.seatTakenElsewhere(flight.getId());
+            throw new NoAvailableSeatsException("Selected seat was just taken, please choose another one");
         }
-        flightRepository.save(flight);
 
-        // 9. Сохраняем бронирование (cascade сохранит билеты)
-        booking = bookingRepository.save(booking);
+        // Списание - последним запросом: блокировка строки рейса держится только до коммита.
+        // Проверка выше - по прочитанному остатку; при гонке списание не пройдёт и бронирование откатится
+        seatInventoryService.reserve(flight.getId(), seatsByClass);
+
+        // 9. Удерживаем места до оплаты: по истечении они вернутся сразу, без ожидания планировщика
+        seatHoldManager.hold(new SeatHold(
+                booking.getBookingReference(),
+                flight.getId(),
+                booking.getTickets().stream().map(Ticket::getSeatNumber).toList(),
+                holdExpiresAt));
 
         log.info("Booking created: {} with {} tickets (mixed classes: {}), total: {} USD",
                 booking.getBookingReference(),
@@ -245,7 +279,7 @@ public class BookingServiceImpl implements BookingService {
     // ═══════════════════════════════════════
 
     @Override
-    @Transactional
+    @Transactional(noRollbackFor = BookingExpiredException.class) // истечение должно закоммититься
     public BookingResponse confirmBooking(String bookingReference, Long userId) {
         log.info("Confirming booking: {} for user: {}", bookingReference, userId);
 
@@ -260,13 +294,6 @@ public class BookingServiceImpl implements BookingService {
             throw new BookingNotFoundException("Access denied");
         }
 
-        // Проверка срока действия
-        if (booking.isExpired()) {
-            log.warn("Booking {} has expired", bookingReference);
-            expireBooking(booking);
-            throw new BookingExpiredException(bookingReference);
-        }
-
         // Проверка текущего статуса
         if (booking.getStatus() != BookingStatus.PENDING) {
             throw new IllegalStateException(
@@ -274,7 +301,19 @@ public class BookingServiceImpl implements BookingService {
             );
         }
 
-        // Подтверждаем бронирование
+        // Срок решает удержание: снято оплатой - места проданы, снято таймером - уже возвращены.
+        // Без удержания (потеряно при рестарте) смотрим на срок бронирования
+        if (!seatHoldManager.convert(bookingReference) && booking.isExpired()) {
+            log.warn("Booking {} has expired", bookingReference);
+            expireBooking(booking);
+            throw new BookingExpiredException(bookingReference);
+        }
+
+        // Подтверждаем бронирование: истечение или отмена могли успеть между чтением и этой строкой
+        if (bookingRepository.transitionStatus(booking.getId(), List.of(BookingStatus.PENDING),
+                BookingStatus.CONFIRMED, LocalDateTime.now()) == 0) {
+            throw new IllegalStateException("Booking " + bookingReference + " is no longer pending");
+        }
         booking.confirm();
 
         // Обновляем статус билетов
@@ -315,8 +354,18 @@ public class BookingServiceImpl implements BookingService {
                     "Booking cannot be cancelled. Status: " + booking.getStatus());
         }
 
+        // Места возвращает только тот, кто сменил статус: отмена не должна освободить их
+        // повторно после истечения (или наоборот)
+        BookingStatus previousStatus = booking.getStatus();
+        if (bookingRepository.transitionStatus(booking.getId(),
+                List.of(BookingStatus.PENDING, BookingStatus.CONFIRMED),
+                BookingStatus.CANCELLED, LocalDateTime.now()) == 0) {
+            throw new IllegalStateException(
+                    "Booking " + reference + " was expired or cancelled concurrently");
+        }
+
         // Освобождаем места и отменяем билеты
-        Map<Flight, Map<CabinClass, Long>> seatsToRelease = new HashMap<>();
+        Map<Flight, Map<CabinClass, Integer>> seatsToRelease = new HashMap<>();
         BigDecimal totalRefund = BigDecimal.ZERO;
 
         for (Ticket ticket : booking.getTickets()) {
@@ -327,6 +376,7 @@ public class BookingServiceImpl implements BookingService {
                 // Используем метод cancel из Ticket
                 BigDecimal refund = ticket.cancel(hoursUntilDeparture);
                 totalRefund = totalRefund.add(refund);
+                seatSelectionService.releaseSeat(flight.getId(), ticket.getSeatNumber());
 
                 log.debug("Ticket {} cancelled. Refund: {} ({}% of {})",
                         ticket.getTicketNumber(),
@@ -337,32 +387,30 @@ public class BookingServiceImpl implements BookingService {
                 // Группируем для освобождения мест
                 seatsToRelease
                         .computeIfAbsent(flight, k -> new HashMap<>())
-                        .merge(ticket.getCabinClass(), 1L, Long::sum);
+                        .merge(ticket.getCabinClass(), 1, Integer::sum);
             }
         }
 
         // Освобождаем места
         int totalSeatsReleased = 0;
-        for (Map.Entry<Flight, Map<CabinClass, Long>> flightEntry : seatsToRelease.entrySet()) {
+        for (Map.Entry<Flight, Map<CabinClass, Integer>> flightEntry : seatsToRelease.entrySet()) {
             Flight flight = flightEntry.getKey();
+            seatInventoryService.release(flight, flightEntry.getValue());
 
-            for (Map.Entry<CabinClass, Long> classEntry : flightEntry.getValue().entrySet()) {
-                CabinClass cabinClass = classEntry.getKey();
-                int count = classEntry.getValue().intValue();
-
-                flight.releaseSeats(count, cabinClass);
-                totalSeatsReleased += count;
-
+            for (Map.Entry<CabinClass, Integer> classEntry : flightEntry.getValue().entrySet()) {
+                totalSeatsReleased += classEntry.getValue();
                 log.debug("Released {} {} seats on flight {}",
-                        count, cabinClass, flight.getFlightNumber());
+                        classEntry.getValue(), classEntry.getKey(), flight.getFlightNumber());
             }
-
-            flightRepository.save(flight);
         }
 
         // Обновляем статус бронирования
+        if (previousStatus == BookingStatus.CONFIRMED) {
+            popularDestinations.bookingCancelled(booking);
+        }
         booking.markAsCancelled(reason);
         booking.setRefundAmount(totalRefund);
+        seatHoldManager.discard(reference);
 
         booking = bookingRepository.save(booking);
 
@@ -372,6 +420,18 @@ public class BookingServiceImpl implements BookingService {
         return bookingMapper.toBookingResponse(booking);
     }
 
+    // ═══════════════════════════════════════
+    // ИСТЕЧЕНИЕ БРОНИРОВАНИЯ
+    // ═══════════════════════════════════════
+
+    @Override
+    @Transactional
+    public boolean expireBooking(String bookingReference) {
+        return bookingRepository.findByBookingReferenceWithDetails(bookingReference)
+                .map(this::expireBooking)
+                .orElse(false);
+    }
+
     // ═══════════════════════════════════════
     // ГЕНЕРАЦИЯ PDF БИЛЕТА
     // ═══════════════════════════════════════
@@ -418,13 +478,9 @@ public class BookingServiceImpl implements BookingService {
         Flight flight = flightRepository.findById(flightId)
                 .orElseThrow(() -> new FlightNotFoundException(flightId));
 
-        Set<String> occupiedSeats = seatSelectionService.getOccupiedSeats(flightId);
-
         Integer totalSeats = getTotalSeatsForClass(flight, cabinClass);
 
-        Set<String> occupiedInClass = occupiedSeats.stream()
-                .filter(seat -> seatBelongsToClass(seat, cabinClass))
-                .collect(Collectors.toSet());
+        Set<String> occupiedInClass = seatSelectionService.getOccupiedSeats(flightId, cabinClass);
 
         return AvailableSeatsResponse.builder()
                 .flightId(flightId)
@@ -527,6 +583,37 @@ public class BookingServiceImpl implements BookingService {
         };
     }
 
+    /**
+     * Места по порядку пассажиров: сначала запрошенные явно, остальных пассажиров
+     * каждого класса - рядом друг с другом одним блоком
+     */
+    private List<String> assignSeats(Flight flight, List<PassengerInfoRequest> passengers, CabinClass defaultClass) {
+        String[] seats = new String[passengers.size()];
+        Map<CabinClass, List<Integer>> unassigned = new EnumMap<>(CabinClass.class);
+
+        for (int i = 0; i < passengers.size(); i++) {
+            PassengerInfoRequest passenger = passengers.get(i);
+            CabinClass cabinClass = passenger.getCabinClass() != null ? passenger.getCabinClass() : defaultClass;
+            if (passenger.getSeatNumber() != null && !passenger.getSeatNumber().isBlank()) {
+                seats[i] = seatSelectionService.assignSeat(
+                        flight, cabinClass, passenger.getSeatNumber(), passenger.getSeatPreference());
+            } else {
+                unassigned.computeIfAbsent(cabinClass, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        unassigned.forEach((cabinClass, indexes) -> {
+            List<SeatPreference> preferences = indexes.stream()
+                    .map(i -> passengers.get(i).getSeatPreference())
+                    .toList();
+            List<String> group = seatSelectionService.assignGroupSeats(flight, cabinClass, preferences);
+            for (int j = 0; j < indexes.size(); j++) {
+                seats[indexes.get(j)] = group.get(j);
+            }
+        });
+        return Arrays.asList(seats);
+    }
+
     private Passenger createOrGetPassenger(PassengerInfoRequest request, Users user) {
         Passenger passenger = bookingMapper.toPassenger(request);
 
@@ -540,44 +627,52 @@ public class BookingServiceImpl implements BookingService {
         return passengerRepository.save(passenger);
     }
 
-    private void expireBooking(Booking booking) {
+    /**
+     * Истечь бронирование и вернуть места
+     *
+     * Истечь может таймер удержания, страховочный планировщик или confirmBooking -
+     * места возвращает только тот, чей условный UPDATE статуса прошёл
+     */
+    private boolean expireBooking(Booking booking) {
         String bookingRef = booking.getBookingReference();
+        if (bookingRepository.markExpiredIfPending(booking.getId(),
+                BookingStatus.PENDING, BookingStatus.EXPIRED, LocalDateTime.now()) == 0) {
+            log.debug("Booking {} is no longer pending, nothing to expire", bookingRef);
+            return false;
+        }
         log.info("Expiring booking: {}", bookingRef);
+        seatHoldManager.discard(bookingRef);
 
-        Map<Flight, Map<CabinClass, Long>> seatsToRelease = new HashMap<>();
+        Map<Flight, Map<CabinClass, Integer>> seatsToRelease = new HashMap<>();
 
         for (Ticket ticket : booking.getTickets()) {
             Flight flight = ticket.getFlight();
             if (flight != null) {
                 seatsToRelease
                         .computeIfAbsent(flight, k -> new HashMap<>())
-                        .merge(ticket.getCabinClass(), 1L, Long::sum);
+                        .merge(ticket.getCabinClass(), 1, Integer::sum);
+                seatSelectionService.releaseSeat(flight.getId(), ticket.getSeatNumber());
             }
             ticket.setStatus(TicketStatus.VOIDED);
         }
 
         int totalSeatsReleased = 0;
-        for (Map.Entry<Flight, Map<CabinClass, Long>> flightEntry : seatsToRelease.entrySet()) {
+        for (Map.Entry<Flight, Map<CabinClass, Integer>> flightEntry : seatsToRelease.entrySet()) {
             Flight flight = flightEntry.getKey();
+            seatInventoryService.release(flight, flightEntry.getValue());
 
-            for (Map.Entry<CabinClass, Long> classEntry : flightEntry.getValue().entrySet()) {
-                CabinClass cabinClass = classEntry.getKey();
-                int count = classEntry.getValue().intValue();
-
-                flight.releaseSeats(count, cabinClass);
-                totalSeatsReleased += count;
-
+            for (Map.Entry<CabinClass, Integer> classEntry : flightEntry.getValue().entrySet()) {
+                totalSeatsReleased += classEntry.getValue();
                 log.debug("Released {} {} seats on flight {} for expired booking {}",
-                        count, cabinClass, flight.getFlightNumber(), bookingRef);
+                        classEntry.getValue(), classEntry.getKey(), flight.getFlightNumber(), bookingRef);
             }
-
-            flightRepository.save(flight);
         }
 
         booking.setStatus(BookingStatus.EXPIRED);
         bookingRepository.save(booking);
 
         log.info("Booking {} expired. Released {} seats total", bookingRef, totalSeatsReleased);
+        return true;
     }
 
     private boolean isCancellable(Booking booking) {
@@ -585,15 +680,6 @@ public class BookingServiceImpl implements BookingService {
                 || booking.getStatus() == BookingStatus.PENDING;
     }
 
-    private boolean seatBelongsToClass(String seat, CabinClass cabinClass) {
-        int row = Integer.parseInt(seat.replaceAll("[^0-9]", ""));
-        return switch (cabinClass) {
-            case FIRST_CLASS -> row >= 1 && row <= 2;
-            case BUSINESS -> row >= 3 && row <= 8;
-            case ECONOMY, PREMIUM_ECONOMY -> row >= 9 && row <= 35;
-        };
-    }
-
     private Integer getTotalSeatsForClass(Flight flight, CabinClass cabinClass) {
         return switch (cabinClass) {
             case FIRST_CLASS -> flight.getFirstClassSeats() != null ? flight.getFirstClassSeats() : 0;
@@ -601,36 +687,4 @@ public class BookingServiceImpl implements BookingService {
             case ECONOMY, PREMIUM_ECONOMY -> flight.getEconomySeats() != null ? flight.getEconomySeats() : 0;
         };
     }
-
-    // ═══════════════════════════════════════
-    // ГЕНЕРАЦИЯ УНИКАЛЬНОГО РЕФЕРЕНСА
-    // ═══════════════════════════════════════
-
-    private String generateUniqueBookingReference() {
-        String reference;
-        int attempts = 0;
-
-        do {
-            reference = generateBookingReference();
-            attempts++;
-
-            if (attempts > 100) {
-                log.error("Failed to generate unique booking reference after 100 attempts");
-                throw new IllegalStateException(
-                        "Failed to generate unique booking reference after 100 attempts"
-                );
-            }
-        } while (bookingRepository.existsByBookingReference(reference));
-
-        log.debug("Generated unique booking reference: {} (attempts: {})", reference, attempts);
-        return reference;
-    }
-
-    private String generateBookingReference() {
-        StringBuilder sb = new StringBuilder(REFERENCE_LENGTH);
-        for (int i = 0; i < REFERENCE_LENGTH; i++) {
-            sb.append(REFERENCE_CHARS.charAt(random.nextInt(REFERENCE_CHARS.length())));
-        }
-        return sb.toString();
-    }
 }
@@ -2,9 +2,11 @@ package com.aviasales.booking.booking.service.impl;
 
 import com.aviasales.booking.booking.dto.response.CalendarPriceResponse;
 import com.aviasales.booking.booking.dto.response.DynamicPriceResponse;
+import com.aviasales.booking.booking.dto.response.PriceMatrixResponse;
 import com.aviasales.booking.booking.entity.Flight;
 import com.aviasales.booking.booking.entity.Holiday;
 import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.TripType;
 import com.aviasales.booking.booking.repo.FlightRepository;
 import com.aviasales.booking.booking.repo.HolidayRepository;
 import com.aviasales.booking.booking.service.interfaces.CalendarService;
@@ -12,12 +14,14 @@ import com.aviasales.booking.booking.service.interfaces.CalendarService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.*;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
@@ -159,6 +163,158 @@ public class CalendarServiceImpl implements CalendarService {
                 .build();
     }
 
+    /**
+     * Матрица цен туда-обратно (±N дней)
+     *
+     * Рейсы каждого направления грузятся одним запросом на всё окно и оцениваются один раз:
+     * проход по рейсам оставляет самый дешёвый рейс на каждый день, после чего ячейка
+     * (вылет, возврат) - это просто сумма двух дневных минимумов. Никаких N×M поисков.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public PriceMatrixResponse getRoundTripPriceMatrix(
+            String originCode,
+            String destinationCode,
+            LocalDate departureDate,
+            LocalDate returnDate,
+            int flexDays,
+            CabinClass cabinClass,
+            int passengers
+    ) {
+        long start = System.currentTimeMillis();
+        log.info("Building price matrix {}<->{} around {} / {} ±{} days",
+                originCode, destinationCode, departureDate, returnDate, flexDays);
+
+        if (flexDays < 0 || flexDays > 7) {
+            throw new IllegalArgumentException("flexDays must be between 0 and 7");
+        }
+        if (!returnDate.isAfter(departureDate)) {
+            throw new IllegalArgumentException("Return date must be after departure date");
+        }
+
+        // Окно остаётся вокруг запрошенных дат, прошедшие дни просто отрезаются (а не сдвигают окно вперёд)
+        LocalDate today = LocalDate.now();
+        LocalDate outboundFrom = max(departureDate.minusDays(flexDays), today);
+        LocalDate returnFrom = max(returnDate.minusDays(flexDays), today);
+        int outboundDays = daysUntil(outboundFrom, departureDate.plusDays(flexDays + 1));
+        int returnDays = daysUntil(returnFrom, returnDate.plusDays(flexDays + 1));
+
+        DayMinimum[] outbound = cheapestPerDay(originCode, destinationCode, outboundFrom, outboundDays, cabinClass, passengers, today);
+        DayMinimum[] inbound = cheapestPerDay(destinationCode, originCode, returnFrom, returnDays, cabinClass, passengers, today);
+
+        BigDecimal discountFactor = BigDecimal.ONE.subtract(BigDecimal.valueOf(TripType.ROUND_TRIP.getDiscount()));
+
+        List<List<PriceMatrixResponse.Cell>> cells = new ArrayList<>();
+        PriceMatrixResponse.Cell cheapest = null;
+
+        for (int i = 0; i < outboundDays; i++) {
+            LocalDate outDate = outboundFrom.plusDays(i);
+            List<PriceMatrixResponse.Cell> row = new ArrayList<>();
+
+            for (int j = 0; j < returnDays; j++) {
+                LocalDate retDate = returnFrom.plusDays(j);
+                DayMinimum out = outbound[i];
+                DayMinimum ret = inbound[j];
+
+                if (out == null || ret == null || !retDate.isAfter(outDate)) {
+                    row.add(null);
+                    continue;
+                }
+
+                PriceMatrixResponse.Cell cell = PriceMatrixResponse.Cell.builder()
+                        .outboundDate(outDate)
+                        .returnDate(retDate)
+                        .outboundFlightId(out.flightId())
+                        .returnFlightId(ret.flightId())
+                        .outboundPrice(out.price())
+                        .returnPrice(ret.price())
+                        .totalPrice(out.price().add(ret.price()).multiply(discountFactor).setScale(2, RoundingMode.HALF_UP))
+                        .build();
+                row.add(cell);
+
+                if (cheapest == null || cell.getTotalPrice().compareTo(cheapest.getTotalPrice()) < 0) {
+                    cheapest = cell;
+                }
+            }
+            cells.add(row);
+        }
+
+        int priced = Arrays.stream(outbound).filter(Objects::nonNull).mapToInt(DayMinimum::flightsPriced).sum()
+                + Arrays.stream(inbound).filter(Objects::nonNull).mapToInt(DayMinimum::flightsPriced).sum();
+
+        return PriceMatrixResponse.builder()
+                .route(originCode + " ⇄ " + destinationCode)
+                .outboundDates(outboundFrom.datesUntil(outboundFrom.plusDays(outboundDays)).toList())
+                .returnDates(returnFrom.datesUntil(returnFrom.plusDays(returnDays)).toList())
+                .cells(cells)
+                .cheapest(cheapest)
+                .discountPercent(TripType.ROUND_TRIP.getDiscount() * 100)
+                .flightsPriced(priced)
+                .searchTimeMs(System.currentTimeMillis() - start)
+                .build();
+    }
+
+    /**
+     * Один проход по рейсам направления: самый дешёвый рейс на каждый локальный день вылета
+     */
+    private DayMinimum[] cheapestPerDay(
+            String originCode,
+            String destinationCode,
+            LocalDate from,
+            int days,
+            CabinClass cabinClass,
+            int passengers,
+            LocalDate bookingDate
+    ) {
+        DayMinimum[] result = new DayMinimum[days];
+        if (days == 0) {
+            return result;
+        }
+        LocalDate to = from.plusDays(days);
+
+        // Локальная дата вылета может отличаться от UTC на сутки - берём запас с обеих сторон
+        Instant windowStart = from.minusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant windowEnd = to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+
+        try (Stream<Flight> flights = flightRepository.streamFlightsByRouteAndDateRange(
+                originCode, destinationCode, windowStart, windowEnd)) {
+            flights.forEach(flight -> {
+                LocalDate day = flight.getDepartureDateLocal();
+                if (day == null || day.isBefore(from) || !day.isBefore(to)) {
+                    return;
+                }
+                Integer seats = getAvailableSeats(flight, cabinClass);
+                if (seats == null || seats < passengers) {
+                    return;
+                }
+
+                int index = (int) (day.toEpochDay() - from.toEpochDay());
+                BigDecimal price = pricingServiceImpl.calculateDynamicPrice(flight, cabinClass, bookingDate).getFinalPrice();
+                DayMinimum current = result[index];
+                int priced = current != null ? current.flightsPriced() + 1 : 1;
+
+                result[index] = current == null || price.compareTo(current.price()) < 0
+                        ? new DayMinimum(flight.getId(), price, priced)
+                        : new DayMinimum(current.flightId(), current.price(), priced);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Число дней в [from, to), 0 если окно целиком в прошлом
+     */
+    private static int daysUntil(LocalDate from, LocalDate to) {
+        return (int) Math.max(0, to.toEpochDay() - from.toEpochDay());
+    }
+
+    private record DayMinimum(Long flightId, BigDecimal price, int flightsPriced) {
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
     /**
      * Получить доступные места по классу
      */
@@ -0,0 +1,344 @@
+package com.aviasales.booking.booking.service.impl;
+
+import com.aviasales.booking.booking.dto.response.ConnectionSearchResponse;
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.FlightStatus;
+import com.aviasales.booking.booking.index.ConnectionTimetable;
+import com.aviasales.booking.booking.index.FlightSearchCursor;
+import com.aviasales.booking.booking.index.IndexedFlight;
+import com.aviasales.booking.booking.repo.AirportRepository;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.service.interfaces.ConnectionSearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Поиск маршрутов с пересадками (Connection Scan)
+ *
+ * SCHEDULED рейсы ближайших search.connections.horizon-days дней лежат в неизменяемом ConnectionTimetable,
+ * отсортированном по вылету (пересборка раз в минуту читает только это окно, а не всё материализованное
+ * расписание). Дальние даты ищутся по расписанию, построенному на запрос из рейсов нескольких дней вокруг даты.
+ * Поиск - один проход по рейсам от начала дня: для каждого рейса проверяем, можно ли
+ * пересесть на него с уже найденных частичных маршрутов (минимальное время стыковки,
+ * максимальное ожидание). Аэропорты, из которых не долететь до назначения за оставшееся
+ * число перелётов, отсекаются заранее обратным BFS по графу маршрутов.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConnectionSearchServiceImpl implements ConnectionSearchService {
+
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    private final FlightRepository flightRepository;
+    private final AirportRepository airportRepository;
+
+    @Value("${search.connections.min-connection-minutes.domestic:45}")
+    private int domesticConnectionMinutes;
+
+    @Value("${search.connections.min-connection-minutes.international:90}")
+    private int internationalConnectionMinutes;
+
+    @Value("${search.connections.max-layover-hours:24}")
+    private int maxLayoverHours;
+
+    @Value("${search.connections.max-partial-routes-per-airport:64}")
+    private int maxPartialRoutesPerAirport;
+
+    @Value("${search.connections.max-results:20}")
+    private int maxResults;
+
+    @Value("${search.connections.horizon-days:45}")
+    private int horizonDays;
+
+    private volatile ConnectionTimetable timetable = ConnectionTimetable.EMPTY;
+
+    /**
+     * Вылеты до этого момента есть в timetable; аэропорты - с последней пересборки
+     */
+    private volatile Instant timetableEnd = Instant.EPOCH;
+    private volatile List<Airport> airports = List.of();
+
+    /**
+     * Частичный маршрут: последний рейс + ссылка на предыдущий
+     */
+    private record Label(int connection, Label previous, int legs, long fareCents) {
+
+        long departure(ConnectionTimetable tt) {
+            Label first = this;
+            while (first.previous != null) {
+                first = first.previous;
+            }
+            return tt.departureMillis(first.connection);
+        }
+
+        boolean visits(ConnectionTimetable tt, int airport) {
+            for (Label l = this; l != null; l = l.previous) {
+                if (tt.origin(l.connection) == airport || tt.destination(l.connection) == airport) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // ═══════════════════════════════════════
+    // РАСПИСАНИЕ
+    // ═══════════════════════════════════════
+
+    @Override
+    @Scheduled(fixedDelayString = "${search.connections.refresh-ms:60000}")
+    @Transactional(readOnly = true)
+    public void refreshTimetable() {
+        long start = System.currentTimeMillis();
+
+        Instant now = Instant.now();
+        Instant end = now.plus(horizonDays, ChronoUnit.DAYS);
+        List<IndexedFlight> flights = flightRepository.findIndexedFlightsBetween(FlightStatus.SCHEDULED, now, end);
+        airports = airportRepository.findAll();
+        timetable = new ConnectionTimetable(flights, airports);
+        timetableEnd = end;
+
+        log.debug("Connection timetable rebuilt: {} flights, {} airports in {} ms",
+                timetable.size(), timetable.airportCount(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Расписание, покрывающее все перелёты поиска от даты; за горизонтом - только рейсы вокруг даты
+     */
+    private ConnectionTimetable timetableFor(LocalDate date, int maxStops) {
+        // Запас в сутки с каждой стороны - на часовые пояса аэропортов
+        Instant from = date.minusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant to = date.plusDays(2).atStartOfDay(ZoneOffset.UTC).toInstant()
+                .plus((long) maxStops * (maxLayoverHours + 24), ChronoUnit.HOURS);
+        if (!to.isAfter(timetableEnd)) {
+            return timetable;
+        }
+        List<IndexedFlight> flights = flightRepository.findIndexedFlightsBetween(FlightStatus.SCHEDULED, from, to);
+        return new ConnectionTimetable(flights, knownAirports());
+    }
+
+    /**
+     * Аэропорты последней пересборки; если её ещё не было (или она падала) - читаем из БД
+     */
+    private List<Airport> knownAirports() {
+        List<Airport> known = airports;
+        if (known.isEmpty()) {
+            known = airportRepository.findAll();
+            airports = known;
+        }
+        return known;
+    }
+
+    // ═══════════════════════════════════════
+    // ПОИСК
+    // ═══════════════════════════════════════
+
+    @Override
+    public ConnectionSearchResponse searchConnections(
+            String originCode,
+            String destinationCode,
+            LocalDate date,
+            int passengers,
+            CabinClass cabinClass,
+            int maxStops) {
+
+        long start = System.currentTimeMillis();
+
+        if (originCode.equalsIgnoreCase(destinationCode)) {
+            throw new IllegalArgumentException("Origin and destination must be different");
+        }
+        if (maxStops < 0 || maxStops > 2) {
+            throw new IllegalArgumentException("maxStops must be between 0 and 2");
+        }
+
+        ConnectionTimetable tt = timetableFor(date, maxStops);
+        int origin = tt.airport(originCode.toUpperCase());
+        int destination = tt.airport(destinationCode.toUpperCase());
+
+        ConnectionSearchResponse response = ConnectionSearchResponse.builder()
+                .origin(originCode.toUpperCase())
+                .destination(destinationCode.toUpperCase())
+                .date(date)
+                .itineraries(List.of())
+                .scannedFlights(0)
+                .build();
+
+        if (origin < 0 || destination < 0) {
+            response.setSearchTimeMs(System.currentTimeMillis() - start);
+            return response;
+        }
+
+        int maxLegs = maxStops + 1;
+        int[] legsToDestination = tt.legsToDestination(destination, maxLegs);
+        if (legsToDestination[origin] > maxLegs) {
+            response.setSearchTimeMs(System.currentTimeMillis() - start);
+            return response;
+        }
+
+        long maxLayoverMillis = maxLayoverHours * 60 * MINUTE_MILLIS;
+
+        // Первый перелёт - в течение суток по местному времени аэропорта вылета
+        ZoneId originZone = tt.airportZone(origin);
+        long windowStart = date.atStartOfDay(originZone).toInstant().toEpochMilli();
+        long windowEnd = date.plusDays(1).atStartOfDay(originZone).toInstant().toEpochMilli();
+        long scanEnd = windowEnd + maxStops * (maxLayoverMillis + 24 * 60 * MINUTE_MILLIS);
+
+        @SuppressWarnings("unchecked")
+        List<Label>[] waiting = new List[tt.airportCount()];
+        List<Label> arrived = new ArrayList<>();
+
+        int scanned = 0;
+        for (int c = tt.firstDepartingAtOrAfter(windowStart);
+             c < tt.size() && tt.departureMillis(c) <= scanEnd; c++) {
+            scanned++;
+
+            // Места и цена - в запрошенном классе: распроданный бизнес не должен попадать в выдачу бизнеса
+            long fareCents = tt.priceCents(c, cabinClass);
+            if (tt.availableSeats(c, cabinClass) < passengers || fareCents == FlightSearchCursor.NULL_PRICE_CENTS) {
+                continue;
+            }
+
+            int from = tt.origin(c);
+            int to = tt.destination(c);
+            long departure = tt.departureMillis(c);
+
+            if (from == origin) {
+                if (departure < windowEnd && legsToDestination[to] <= maxLegs - 1) {
+                    reach(new Label(c, null, 1, fareCents), to, destination, waiting, arrived);
+                }
+                continue;
+            }
+
+            List<Label> atAirport = waiting[from];
+            if (atAirport == null || atAirport.isEmpty()) {
+                continue;
+            }
+
+            // Рейсы идут по возрастанию вылета: просроченные пересадки больше не понадобятся
+            atAirport.removeIf(l -> departure > tt.arrivalMillis(l.connection()) + maxLayoverMillis);
+
+            for (int i = 0, n = atAirport.size(); i < n; i++) {
+                Label previous = atAirport.get(i);
+                if (previous.legs() >= maxLegs
+                        || legsToDestination[to] > maxLegs - previous.legs() - 1
+                        || departure < tt.arrivalMillis(previous.connection()) + minConnectionMillis(tt, previous, c)
+                        || previous.visits(tt, to)) {
+                    continue;
+                }
+                Label label = new Label(c, previous, previous.legs() + 1,
+                        previous.fareCents() + fareCents);
+                reach(label, to, destination, waiting, arrived);
+            }
+        }
+
+        List<ConnectionSearchResponse.Itinerary> itineraries = arrived.stream()
+                .sorted(Comparator
+                        .comparingLong((Label l) -> tt.arrivalMillis(l.connection()) - l.departure(tt))
+                        .thenComparingLong(l -> tt.arrivalMillis(l.connection()))
+                        .thenComparingLong(Label::fareCents))
+                .limit(maxResults)
+                .map(l -> toItinerary(tt, l))
+                .toList();
+
+        response.setItineraries(itineraries);
+        response.setScannedFlights(scanned);
+        response.setSearchTimeMs(System.currentTimeMillis() - start);
+
+        log.info("Connection search {} -> {} on {}: {} itineraries ({} flights scanned, {} ms)",
+                response.getOrigin(), response.getDestination(), date,
+                itineraries.size(), scanned, response.getSearchTimeMs());
+
+        return response;
+    }
+
+    private void reach(Label label, int airport, int destination, List<Label>[] waiting, List<Label> arrived) {
+        if (airport == destination) {
+            arrived.add(label);
+            return;
+        }
+        if (waiting[airport] == null) {
+            waiting[airport] = new ArrayList<>();
+        }
+        if (waiting[airport].size() < maxPartialRoutesPerAirport) {
+            waiting[airport].add(label);
+        }
+    }
+
+    /**
+     * Минимальное время стыковки: внутренняя, если оба перелёта внутри одной страны
+     */
+    private long minConnectionMillis(ConnectionTimetable tt, Label previous, int next) {
+        int arrivalFrom = tt.origin(previous.connection());
+        int hub = tt.destination(previous.connection());
+        int nextTo = tt.destination(next);
+        boolean domestic = tt.isDomestic(arrivalFrom, hub) && tt.isDomestic(hub, nextTo);
+        return (domestic ? domesticConnectionMinutes : internationalConnectionMinutes) * MINUTE_MILLIS;
+    }
+
+    // ═══════════════════════════════════════
+    // МАППИНГ
+    // ═══════════════════════════════════════
+
+    private ConnectionSearchResponse.Itinerary toItinerary(ConnectionTimetable tt, Label last) {
+        List<Integer> connections = new ArrayList<>();
+        for (Label l = last; l != null; l = l.previous()) {
+            connections.add(0, l.connection());
+        }
+
+        List<ConnectionSearchResponse.Leg> legs = new ArrayList<>();
+        List<ConnectionSearchResponse.Layover> layovers = new ArrayList<>();
+
+        for (int i = 0; i < connections.size(); i++) {
+            int c = connections.get(i);
+            ZoneId fromZone = tt.airportZone(tt.origin(c));
+            ZoneId toZone = tt.airportZone(tt.destination(c));
+
+            legs.add(ConnectionSearchResponse.Leg.builder()
+                    .flightId(tt.flightId(c))
+                    .flightNumber(tt.flightNumber(c))
+                    .origin(tt.airportCode(tt.origin(c)))
+                    .destination(tt.airportCode(tt.destination(c)))
+                    .departureTime(Instant.ofEpochMilli(tt.departureMillis(c)).atZone(fromZone))
+                    .arrivalTime(Instant.ofEpochMilli(tt.arrivalMillis(c)).atZone(toZone))
+                    .build());
+
+            if (i > 0) {
+                int previous = connections.get(i - 1);
+                layovers.add(ConnectionSearchResponse.Layover.builder()
+                        .airport(tt.airportCode(tt.origin(c)))
+                        .minutes((int) ((tt.departureMillis(c) - tt.arrivalMillis(previous)) / MINUTE_MILLIS))
+                        .arrivalTime(Instant.ofEpochMilli(tt.arrivalMillis(previous)).atZone(fromZone))
+                        .departureTime(Instant.ofEpochMilli(tt.departureMillis(c)).atZone(fromZone))
+                        .build());
+            }
+        }
+
+        long departure = tt.departureMillis(connections.get(0));
+        long arrival = tt.arrivalMillis(last.connection());
+
+        return ConnectionSearchResponse.Itinerary.builder()
+                .stops(connections.size() - 1)
+                .totalDurationMinutes((int) ((arrival - departure) / MINUTE_MILLIS))
+                .departureTimeUtc(Instant.ofEpochMilli(departure))
+                .arrivalTimeUtc(Instant.ofEpochMilli(arrival))
+                .totalPrice(FlightSearchCursor.fromCents(last.fareCents()))
+                .legs(legs)
+                .layovers(layovers)
+                .build();
+    }
+}
@@ -0,0 +1,169 @@
+package com.aviasales.booking.booking.service.impl;
+
+import com.aviasales.booking.booking.config.SearchExecutors;
+import com.aviasales.booking.booking.dto.request.BatchFlightSearchRequest;
+import com.aviasales.booking.booking.dto.request.FlightSearchRequest;
+import com.aviasales.booking.booking.dto.response.BatchFlightSearchResponse;
+import com.aviasales.booking.booking.dto.response.FlightResponse;
+import com.aviasales.booking.booking.index.PopularDestinationsAggregate;
+import com.aviasales.booking.booking.service.interfaces.FlightBatchSearchService;
+import com.aviasales.booking.booking.service.interfaces.FlightService;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетный поиск рейсов
+ *
+ * Запросы пакета выполняются параллельно на отдельном пуле (SearchExecutors.batch).
+ * Бюджет соединений с БД общий для всех пакетов (семафор), чтобы страница
+ * мета-поиска из 20 запросов не выбрала весь пул Hikari у бронирований.
+ * Каждый запрос изолирован: невалидный, упавший или слишком долгий запрос
+ * возвращается со своим статусом, остальные результаты отдаются как есть.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlightBatchSearchServiceImpl implements FlightBatchSearchService {
+
+    private final FlightService flightService;
+    private final Validator validator;
+    private final PopularDestinationsAggregate popularDestinations;
+
+    private final SearchExecutors searchExecutors;
+
+    @Value("${search.batch.max-concurrent-queries:8}")
+    private int maxConcurrentQueries;
+
+    @Value("${search.batch.query-timeout-ms:5000}")
+    private long queryTimeoutMs;
+
+    private Semaphore connectionBudget;
+
+    @PostConstruct
+    void init() {
+        connectionBudget = new Semaphore(maxConcurrentQueries, true);
+    }
+
+    @Override
+    public BatchFlightSearchResponse search(BatchFlightSearchRequest request) {
+        long start = System.currentTimeMillis();
+        int pageSize = request.getPageSize() != null ? request.getPageSize() : 10;
+        List<FlightSearchRequest> queries = request.getQueries();
+
+        log.info("Batch flight search: {} queries", queries.size());
+
+        // Запускаем всё сразу, ждём каждый запрос не дольше общего дедлайна
+        List<Future<BatchFlightSearchResponse.QueryResult>> futures = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            int index = i;
+            FlightSearchRequest query = queries.get(i);
+            try {
+                futures.add(searchExecutors.batch().submit(() -> execute(index, query, pageSize)));
+            } catch (RejectedExecutionException e) {
+                // Пул и очередь заполнены - отказ только этому запросу, остальные пакета продолжают
+                log.warn("Batch query #{} rejected: batch pool is full", index);
+                futures.add(CompletableFuture.completedFuture(
+                        failure(index, "REJECTED", "Search capacity exhausted, retry later")));
+            }
+        }
+
+        long deadline = start + queryTimeoutMs;
+        List<BatchFlightSearchResponse.QueryResult> results = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            results.add(await(i, futures.get(i), deadline));
+        }
+
+        int succeeded = (int) results.stream().filter(r -> "OK".equals(r.getStatus())).count();
+        long totalTime = System.currentTimeMillis() - start;
+
+        log.info("Batch flight search done: {}/{} succeeded in {} ms", succeeded, results.size(), totalTime);
+
+        return BatchFlightSearchResponse.builder()
+                .results(results)
+                .succeeded(succeeded)
+                .failed(results.size() - succeeded)
+                .totalTimeMs(totalTime)
+                .build();
+    }
+
+    private BatchFlightSearchResponse.QueryResult execute(int index, FlightSearchRequest query, int pageSize) {
+        Set<ConstraintViolation<FlightSearchRequest>> violations = validator.validate(query);
+        if (!violations.isEmpty()) {
+            return failure(index, "INVALID", violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+
+        long queued = System.currentTimeMillis();
+        try {
+            connectionBudget.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure(index, "TIMEOUT", "Interrupted while waiting for a connection slot");
+        }
+
+        long started = System.currentTimeMillis();
+        try {
+            popularDestinations.searched(query.getDestinationCode());
+            Page<FlightResponse> page = flightService.searchFlights(query, PageRequest.of(0, pageSize));
+            return BatchFlightSearchResponse.QueryResult.builder()
+                    .index(index)
+                    .status("OK")
+                    .flights(page.getContent())
+                    .totalElements(page.getTotalElements())
+                    .queueTimeMs(started - queued)
+                    .executionTimeMs(System.currentTimeMillis() - started)
+                    .build();
+        } catch (Exception e) {
+            log.warn("Batch query #{} failed: {}", index, e.getMessage());
+            BatchFlightSearchResponse.QueryResult result = failure(index, "ERROR", e.getMessage());
+            result.setQueueTimeMs(started - queued);
+            result.setExecutionTimeMs(System.currentTimeMillis() - started);
+            return result;
+        } finally {
+            connectionBudget.release();
+        }
+    }
+
+    private BatchFlightSearchResponse.QueryResult await(int index,
+                                                         Future<BatchFlightSearchResponse.QueryResult> future,
+                                                         long deadline) {
+        try {
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            return future.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return failure(index, "TIMEOUT", "Query exceeded " + queryTimeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return failure(index, "TIMEOUT", "Batch interrupted");
+        } catch (ExecutionException e) {
+            return failure(index, "ERROR", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        }
+    }
+
+    private BatchFlightSearchResponse.QueryResult failure(int index, String status, String error) {
+        return BatchFlightSearchResponse.QueryResult.builder()
+                .index(index)
+                .status(status)
+                .flights(List.of())
+                .totalElements(0L)
+                .error(error)
+                .build();
+    }
+}
@@ -0,0 +1,490 @@
+package com.aviasales.booking.booking.service.impl;
+
+import com.aviasales.booking.booking.dto.request.CreateFlightRequest;
+import com.aviasales.booking.booking.dto.response.FlightImportResponse;
+import com.aviasales.booking.booking.entity.Airline;
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.FlightImportFormat;
+import com.aviasales.booking.booking.enums.FlightStatus;
+import com.aviasales.booking.booking.index.FlightSearchIndex;
+import com.aviasales.booking.booking.index.PopularDestinationsAggregate;
+import com.aviasales.booking.booking.index.ScheduleIntervals;
+import com.aviasales.booking.booking.repo.AirlineRepository;
+import com.aviasales.booking.booking.repo.AirportRepository;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.service.interfaces.FlightImportService;
+import com.aviasales.booking.booking.service.interfaces.PricingService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый импорт расписания (сезон - десятки тысяч рейсов)
+ *
+ * - файл читается потоково, кусками по chunkSize строк;
+ * - авиакомпании и аэропорты резолвятся из словарей в памяти, загруженных один раз;
+ * - разбор, валидация и расчёт действующих цен идут параллельно внутри куска;
+ * - рейсы, пересекающиеся по времени с рейсом того же номера (в БД или выше в файле), отсекаются
+ *   по интервалам в памяти - один запрос на кусок;
+ * - вставка - JDBC batch по batchSize строк, без Hibernate и IDENTITY-раундтрипов.
+ *   Упавший батч повторяется построчно, чтобы ошибка досталась только своей строке.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlightImportServiceImpl implements FlightImportService {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO flights (
+                flight_number, airline_id, origin_id, destination_id,
+                departure_time, arrival_time, duration_minutes,
+                base_price, business_price, first_class_price,
+                effective_economy_price, effective_business_price, effective_first_class_price, effective_price_date,
+                total_seats, economy_seats, business_seats, first_class_seats,
+                available_economy, available_business, available_first_class, available_seats,
+                status, aircraft_type, stops, created_at, updated_at
+            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final FlightRepository flightRepository;
+    private final AirlineRepository airlineRepository;
+    private final AirportRepository airportRepository;
+    private final PricingService pricingService;
+    private final FlightSearchIndex flightSearchIndex;
+    private final PopularDestinationsAggregate popularDestinations;
+
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${flights.import.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${flights.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${flights.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    @Override
+    public FlightImportResponse importFlights(InputStream input, FlightImportFormat format) throws IOException {
+        long start = System.currentTimeMillis();
+        log.info("Starting {} flight import", format);
+
+        Map<String, Long> airlines = airlineRepository.findAll().stream()
+                .filter(airline -> airline.getIataCode() != null)
+                .collect(Collectors.toMap(a -> a.getIataCode().toUpperCase(), Airline::getId, (a, b) -> a));
+        Map<String, Long> airports = airportRepository.findAll().stream()
+                .collect(Collectors.toMap(a -> a.getIataCode().toUpperCase(), Airport::getId, (a, b) -> a));
+
+        ImportContext context = new ImportContext(airlines, airports, LocalDate.now());
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            int line = 0;
+            Function<String, CreateFlightRequest> parser;
+            if (format == FlightImportFormat.CSV) {
+                String header = reader.readLine();
+                line++;
+                if (header == null) {
+                    throw new IllegalArgumentException("CSV file is empty");
+                }
+                parser = new CsvRowParser(header)::parse;
+            } else {
+                parser = text -> objectMapper.readValue(text, CreateFlightRequest.class);
+            }
+
+            List<RawRow> chunk = new ArrayList<>(chunkSize);
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                chunk.add(new RawRow(line, text));
+                if (chunk.size() == chunkSize) {
+                    processChunk(chunk, parser, context);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                processChunk(chunk, parser, context);
+            }
+        }
+
+        if (context.imported > 0) {
+            // Вставка шла мимо сервисов - перечитываем поисковые структуры целиком
+            flightSearchIndex.load();
+            popularDestinations.resync();
+        }
+
+        long duration = System.currentTimeMillis() - start;
+        log.info("Flight import finished: {} rows, {} imported, {} failed in {} ms",
+                context.totalRows, context.imported, context.failed, duration);
+
+        return FlightImportResponse.builder()
+                .format(format)
+                .totalRows(context.totalRows)
+                .imported(context.imported)
+                .failed(context.failed)
+                .durationMs(duration)
+                .errors(context.errors)
+                .errorsTruncated(context.failed > context.errors.size())
+                .build();
+    }
+
+    // ═══════════════════════════════════════
+    // ОБРАБОТКА КУСКА
+    // ═══════════════════════════════════════
+
+    private void processChunk(List<RawRow> chunk, Function<String, CreateFlightRequest> parser, ImportContext context) {
+        context.totalRows += chunk.size();
+
+        // Разбор и валидация - CPU, параллельно; toList сохраняет порядок строк
+        List<RowResult> results = chunk.parallelStream()
+                .map(row -> prepare(row, parser, context))
+                .toList();
+
+        List<PreparedFlight> valid = new ArrayList<>(results.size());
+        for (RowResult result : results) {
+            if (result.error() != null) {
+                context.fail(result.line(), result.flightNumber(), result.error());
+            } else {
+                valid.add(result.flight());
+            }
+        }
+
+        insert(dropOverlapping(valid, context), context);
+    }
+
+    private RowResult prepare(RawRow row, Function<String, CreateFlightRequest> parser, ImportContext context) {
+        CreateFlightRequest request = null;
+        try {
+            request = parser.apply(row.text());
+
+            Set<ConstraintViolation<CreateFlightRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                return RowResult.error(row.line(), request.getFlightNumber(), violations.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+            }
+            if (!request.getArrivalTime().isAfter(request.getDepartureTime())) {
+                return RowResult.error(row.line(), request.getFlightNumber(), "Arrival time must be after departure time");
+            }
+            if (Duration.between(request.getDepartureTime(), request.getArrivalTime()).compareTo(Flight.MAX_DURATION) > 0) {
+                return RowResult.error(row.line(), request.getFlightNumber(),
+                        "Flight duration must not exceed " + Flight.MAX_DURATION.toHours() + " hours");
+            }
+
+            Long airlineId = context.airlines.get(request.getAirlineCode().toUpperCase());
+            Long originId = context.airports.get(request.getOriginCode().toUpperCase());
+            Long destinationId = context.airports.get(request.getDestinationCode().toUpperCase());
+            if (airlineId == null) {
+                return RowResult.error(row.line(), request.getFlightNumber(), "Airline not found: " + request.getAirlineCode());
+            }
+            if (originId == null || destinationId == null) {
+                return RowResult.error(row.line(), request.getFlightNumber(), "Airport not found: "
+                        + (originId == null ? request.getOriginCode() : request.getDestinationCode()));
+            }
+            if (originId.equals(destinationId)) {
+                return RowResult.error(row.line(), request.getFlightNumber(), "Origin and destination must differ");
+            }
+
+            Flight flight = Flight.builder()
+                    .flightNumber(request.getFlightNumber().toUpperCase())
+                    .departureTime(request.getDepartureTime())
+                    .arrivalTime(request.getArrivalTime())
+                    .totalSeats(request.getTotalSeats())
+                    .availableSeats(request.getTotalSeats())
+                    .economySeats(request.getEconomySeats())
+                    .businessSeats(request.getBusinessSeats())
+                    .firstClassSeats(request.getFirstClassSeats())
+                    .availableEconomy(request.getEconomySeats() != null ? request.getEconomySeats() : 0)
+                    .availableBusiness(request.getBusinessSeats() != null ? request.getBusinessSeats() : 0)
+                    .availableFirstClass(request.getFirstClassSeats() != null ? request.getFirstClassSeats() : 0)
+                    .basePrice(request.getBasePrice())
+                    .businessPrice(request.getBusinessPrice())
+                    .firstClassPrice(request.getFirstClassPrice())
+                    .aircraftType(request.getAircraftType())
+                    .stops(0)
+                    .status(FlightStatus.SCHEDULED)
+                    .build();
+            // Те же значения по умолчанию и длительность, что и при сохранении через JPA
+            flight.onPrePersistOrUpdate();
+            pricingService.refreshEffectivePrices(flight, context.today);
+
+            return RowResult.ok(new PreparedFlight(row.line(), flight, airlineId, originId, destinationId));
+        } catch (RuntimeException e) {
+            return RowResult.error(row.line(), request != null ? request.getFlightNumber() : null, e.getMessage());
+        }
+    }
+
+    /**
+     * Отсеять рейсы, пересекающиеся с рейсом того же номера в БД или выше в файле
+     */
+    private List<PreparedFlight> dropOverlapping(List<PreparedFlight> flights, ImportContext context) {
+        if (flights.isEmpty()) {
+            return flights;
+        }
+
+        Set<String> numbers = new HashSet<>();
+        Instant from = Instant.MAX;
+        Instant to = Instant.MIN;
+        for (PreparedFlight prepared : flights) {
+            numbers.add(prepared.flight().getFlightNumber());
+            Instant departure = prepared.flight().getDepartureTime();
+            Instant arrival = prepared.flight().getArrivalTime();
+            from = departure.isBefore(from) ? departure : from;
+            to = arrival.isAfter(to) ? arrival : to;
+        }
+
+        // Пересечь [from, to) могут только рейсы с вылетом не раньше from - MAX_DURATION
+        ScheduleIntervals existing = new ScheduleIntervals();
+        existing.addAll(flightRepository.findScheduleIntervals(
+                numbers, from.minus(Flight.MAX_DURATION), to, FlightStatus.CANCELLED));
+
+        List<PreparedFlight> accepted = new ArrayList<>(flights.size());
+        for (PreparedFlight prepared : flights) {
+            Flight flight = prepared.flight();
+            if (existing.overlaps(flight.getFlightNumber(), flight.getDepartureTime(), flight.getArrivalTime())) {
+                context.fail(prepared.line(), flight.getFlightNumber(),
+                        "Flight already operates within " + flight.getDepartureTime() + " - " + flight.getArrivalTime());
+            } else if (context.accepted.overlaps(flight.getFlightNumber(), flight.getDepartureTime(), flight.getArrivalTime())) {
+                context.fail(prepared.line(), flight.getFlightNumber(),
+                        "Overlaps an earlier row with the same flight number");
+            } else {
+                context.accepted.add(flight.getFlightNumber(), flight.getDepartureTime(), flight.getArrivalTime());
+                accepted.add(prepared);
+            }
+        }
+        return accepted;
+    }
+
+    // ═══════════════════════════════════════
+    // ВСТАВКА
+    // ═══════════════════════════════════════
+
+    private void insert(List<PreparedFlight> flights, ImportContext context) {
+        for (int from = 0; from < flights.size(); from += batchSize) {
+            List<PreparedFlight> batch = flights.subList(from, Math.min(from + batchSize, flights.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind));
+                context.imported += batch.size();
+            } catch (DataAccessException e) {
+                log.warn("Import batch of {} rows failed ({}), retrying row by row",
+                        batch.size(), e.getMostSpecificCause().getMessage());
+                for (PreparedFlight prepared : batch) {
+                    insertOne(prepared, context);
+                }
+            }
+        }
+    }
+
+    private void insertOne(PreparedFlight prepared, ImportContext context) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, prepared)));
+            context.imported++;
+        } catch (DataAccessException e) {
+            context.fail(prepared.line(), prepared.flight().getFlightNumber(), e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private void bind(PreparedStatement ps, PreparedFlight prepared) throws SQLException {
+        Flight flight = prepared.flight();
+        Instant now = Instant.now();
+        int i = 0;
+        ps.setString(++i, flight.getFlightNumber());
+        ps.setLong(++i, prepared.airlineId());
+        ps.setLong(++i, prepared.originId());
+        ps.setLong(++i, prepared.destinationId());
+        ps.setObject(++i, flight.getDepartureTime().atOffset(ZoneOffset.UTC));
+        ps.setObject(++i, flight.getArrivalTime().atOffset(ZoneOffset.UTC));
+        ps.setObject(++i, flight.getDurationMinutes(), Types.INTEGER);
+        ps.setBigDecimal(++i, flight.getBasePrice());
+        ps.setBigDecimal(++i, flight.getBusinessPrice());
+        ps.setBigDecimal(++i, flight.getFirstClassPrice());
+        ps.setBigDecimal(++i, flight.getEffectiveEconomyPrice());
+        ps.setBigDecimal(++i, flight.getEffectiveBusinessPrice());
+        ps.setBigDecimal(++i, flight.getEffectiveFirstClassPrice());
+        ps.setObject(++i, flight.getEffectivePriceDate());
+        ps.setObject(++i, flight.getTotalSeats(), Types.INTEGER);
+        ps.setObject(++i, flight.getEconomySeats(), Types.INTEGER);
+        ps.setObject(++i, flight.getBusinessSeats(), Types.INTEGER);
+        ps.setObject(++i, flight.getFirstClassSeats(), Types.INTEGER);
+        ps.setObject(++i, flight.getAvailableEconomy(), Types.INTEGER);
+        ps.setObject(++i, flight.getAvailableBusiness(), Types.INTEGER);
+        ps.setObject(++i, flight.getAvailableFirstClass(), Types.INTEGER);
+        ps.setObject(++i, flight.getAvailableSeats(), Types.INTEGER);
+        ps.setString(++i, flight.getStatus().name());
+        ps.setString(++i, flight.getAircraftType());
+        ps.setObject(++i, flight.getStops(), Types.INTEGER);
+        ps.setObject(++i, now.atOffset(ZoneOffset.UTC));
+        ps.setObject(++i, now.atOffset(ZoneOffset.UTC));
+    }
+
+    // ═══════════════════════════════════════
+    // СТРУКТУРЫ
+    // ═══════════════════════════════════════
+
+    private record RawRow(int line, String text) {
+    }
+
+    private record PreparedFlight(int line, Flight flight, long airlineId, long originId, long destinationId) {
+    }
+
+    private record RowResult(int line, String flightNumber, PreparedFlight flight, String error) {
+
+        static RowResult ok(PreparedFlight flight) {
+            return new RowResult(flight.line(), flight.flight().getFlightNumber(), flight, null);
+        }
+
+        static RowResult error(int line, String flightNumber, String error) {
+            return new RowResult(line, flightNumber, null, error != null ? error : "Invalid row");
+        }
+    }
+
+    /**
+     * Состояние одного импорта (меняется только в вызывающем потоке)
+     */
+    private final class ImportContext {
+        final Map<String, Long> airlines;
+        final Map<String, Long> airports;
+        final LocalDate today;
+        final ScheduleIntervals accepted = new ScheduleIntervals();
+        final List<FlightImportResponse.RowError> errors = new ArrayList<>();
+
+        int totalRows;
+        int imported;
+        int failed;
+
+        ImportContext(Map<String, Long> airlines, Map<String, Long> airports, LocalDate today) {
+            this.airlines = airlines;
+            this.airports = airports;
+            this.today = today;
+        }
+
+        void fail(int line, String flightNumber, String message) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(FlightImportResponse.RowError.builder()
+                        .line(line)
+                        .flightNumber(flightNumber)
+                        .message(message)
+                        .build());
+            }
+        }
+    }
+
+    /**
+     * Разбор CSV по заголовку. Поддерживаются значения в кавычках ("" внутри - кавычка),
+     * переносы строк внутри значений - нет
+     */
+    private static final class CsvRowParser {
+
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        CsvRowParser(String header) {
+            List<String> names = split(header);
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim(), i);
+            }
+        }
+
+        CreateFlightRequest parse(String line) {
+            List<String> values = split(line);
+            return CreateFlightRequest.builder()
+                    .flightNumber(value(values, "flightNumber"))
+                    .airlineCode(value(values, "airlineCode"))
+                    .originCode(value(values, "originCode"))
+                    .destinationCode(value(values, "destinationCode"))
+                    .departureTime(convert(values, "departureTime", Instant::parse))
+                    .arrivalTime(convert(values, "arrivalTime", Instant::parse))
+                    .totalSeats(convert(values, "totalSeats", Integer::valueOf))
+                    .economySeats(convert(values, "economySeats", Integer::valueOf))
+                    .businessSeats(convert(values, "businessSeats", Integer::valueOf))
+                    .firstClassSeats(convert(values, "firstClassSeats", Integer::valueOf))
+                    .basePrice(convert(values, "basePrice", BigDecimal::new))
+                    .businessPrice(convert(values, "businessPrice", BigDecimal::new))
+                    .firstClassPrice(convert(values, "firstClassPrice", BigDecimal::new))
+                    .aircraftType(value(values, "aircraftType"))
+                    .build();
+        }
+
+        private String value(List<String> values, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= values.size()) {
+                return null;
+            }
+            String value = values.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private <T> T convert(List<String> values, String column, Function<String, T> converter) {
+            String value = value(values, column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return converter.apply(value);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid value '" + value + "' in column " + column);
+            }
+        }
+
+        private static List<String> split(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            values.add(current.toString());
+            return values;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.aviasales.booking.booking.service.impl;
+
+import com.aviasales.booking.booking.dto.request.CreateFlightScheduleRequest;
+import com.aviasales.booking.booking.dto.response.FlightScheduleResponse;
+import com.aviasales.booking.booking.entity.Airline;
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.entity.FlightSchedule;
+import com.aviasales.booking.booking.enums.FlightStatus;
+import com.aviasales.booking.booking.exception.AirlineNotFoundException;
+import com.aviasales.booking.booking.exception.AirportNotFoundException;
+import com.aviasales.booking.booking.exception.FlightNotFoundException;
+import com.aviasales.booking.booking.index.FlightSearchIndex;
+import com.aviasales.booking.booking.index.PopularDestinationsAggregate;
+import com.aviasales.booking.booking.index.ScheduleIntervals;
+import com.aviasales.booking.booking.mapper.FlightMapper;
+import com.aviasales.booking.booking.repo.AirlineRepository;
+import com.aviasales.booking.booking.repo.AirportRepository;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.repo.FlightScheduleRepository;
+import com.aviasales.booking.booking.service.interfaces.FlightScheduleService;
+import com.aviasales.booking.booking.service.interfaces.PricingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Регулярные расписания и их материализация в датированные рейсы
+ *
+ * Рейсы (Flight) создаются только на horizonDays вперёд - иначе сезонное расписание раздувает
+ * таблицу и индексы поиска рейсами, которые ещё долго никто не купит. Горизонт догоняется
+ * ежедневно (ScheduleMaterializationScheduler) порциями по batchSize рейсов, каждая - в своей транзакции.
+ * Поиск на даты за горизонтом получает рейсы из synthesizeFlights: они строятся из шаблона на лету
+ * и не сохраняются, а забронировать их можно, когда до них дойдёт материализация.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlightScheduleServiceImpl implements FlightScheduleService {
+
+    private final FlightScheduleRepository scheduleRepository;
+    private final FlightRepository flightRepository;
+    private final AirlineRepository airlineRepository;
+    private final AirportRepository airportRepository;
+
+    private final FlightMapper flightMapper;
+    private final PricingService pricingService;
+    private final FlightSearchIndex flightSearchIndex;
+    private final PopularDestinationsAggregate popularDestinations;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${flights.schedules.horizon-days:330}")
+    private int horizonDays;
+
+    @Value("${flights.schedules.batch-size:500}")
+    private int batchSize;
+
+    // ═══════════════════════════════════════
+    // УПРАВЛЕНИЕ РАСПИСАНИЯМИ
+    // ═══════════════════════════════════════
+
+    @Override
+    public FlightScheduleResponse createSchedule(CreateFlightScheduleRequest request) {
+        log.info("Creating schedule {} {}-{} {} - {}", request.getFlightNumber(), request.getOriginCode(),
+                request.getDestinationCode(), request.getValidFrom(), request.getValidTo());
+
+        if (request.getValidTo().isBefore(request.getValidFrom())) {
+            throw new IllegalArgumentException("validTo must not be before validFrom");
+        }
+        if (Duration.ofMinutes(request.getDurationMinutes()).compareTo(Flight.MAX_DURATION) > 0) {
+            throw new IllegalArgumentException(
+                    "Flight duration must not exceed " + Flight.MAX_DURATION.toHours() + " hours");
+        }
+        if (request.getOriginCode().equalsIgnoreCase(request.getDestinationCode())) {
+            throw new IllegalArgumentException("Origin and destination must differ");
+        }
+
+        Long id = transactionTemplate.execute(status -> {
+            Airline airline = airlineRepository.findByIataCode(request.getAirlineCode().toUpperCase())
+                    .orElseThrow(() -> new AirlineNotFoundException(request.getAirlineCode()));
+            Airport origin = airportRepository.findByIataCode(request.getOriginCode().toUpperCase())
+                    .orElseThrow(() -> new AirportNotFoundException(request.getOriginCode()));
+            Airport destination = airportRepository.findByIataCode(request.getDestinationCode().toUpperCase())
+                    .orElseThrow(() -> new AirportNotFoundException(request.getDestinationCode()));
+
+            FlightSchedule schedule = FlightSchedule.builder()
+                    .flightNumber(request.getFlightNumber().toUpperCase())
+                    .airline(airline)
+                    .origin(origin)
+                    .destination(destination)
+                    .departureLocalTime(request.getDepartureLocalTime())
+                    .durationMinutes(request.getDurationMinutes())
+                    .daysOfWeekMask(FlightSchedule.toMask(request.getDaysOfWeek()))
+                    .validFrom(request.getValidFrom())
+                    .validTo(request.getValidTo())
+                    .totalSeats(request.getTotalSeats())
+                    .economySeats(request.getEconomySeats())
+                    .businessSeats(request.getBusinessSeats())
+                    .firstClassSeats(request.getFirstClassSeats())
+                    .basePrice(request.getBasePrice())
+                    .businessPrice(request.getBusinessPrice())
+                    .firstClassPrice(request.getFirstClassPrice())
+                    .aircraftType(request.getAircraftType())
+                    .build();
+            return scheduleRepository.save(schedule).getId();
+        });
+
+        int created = materializeSchedule(id);
+        log.info("Schedule created with id: {}, {} flights materialized", id, created);
+
+        return flightMapper.toFlightScheduleResponse(findSchedule(id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FlightScheduleResponse> getSchedules() {
+        return flightMapper.toFlightScheduleResponseList(scheduleRepository.findAllWithRelations());
+    }
+
+    @Override
+    @Transactional
+    public void deactivateSchedule(Long id) {
+        FlightSchedule schedule = findSchedule(id);
+        schedule.setIsActive(false);
+        log.info("Schedule {} deactivated, flights materialized through {} are kept",
+                id, schedule.getMaterializedThrough());
+    }
+
+    private FlightSchedule findSchedule(Long id) {
+        return scheduleRepository.findWithRelationsById(id)
+                .orElseThrow(() -> new FlightNotFoundException("Flight schedule not found with id: " + id));
+    }
+
+    // ═══════════════════════════════════════
+    // МАТЕРИАЛИЗАЦИЯ
+    // ═══════════════════════════════════════
+
+    @Override
+    public int materializeAll() {
+        long start = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        List<Long> ids = scheduleRepository.findIdsToMaterialize(today, today.plusDays(horizonDays));
+
+        int created = 0;
+        for (Long id : ids) {
+            try {
+                created += materializeSchedule(id);
+            } catch (RuntimeException e) {
+                log.error("Failed to materialize schedule {}: {}", id, e.getMessage(), e);
+            }
+        }
+
+        if (!ids.isEmpty()) {
+            log.info("Materialized {} flights from {} schedules in {} ms",
+                    created, ids.size(), System.currentTimeMillis() - start);
+        }
+        return created;
+    }
+
+    /**
+     * Создать рейсы расписания по горизонт, порциями по batchSize в отдельных транзакциях
+     */
+    private int materializeSchedule(Long id) {
+        LocalDate today = LocalDate.now();
+        LocalDate horizon = today.plusDays(horizonDays);
+
+        int created = 0;
+        BatchResult result;
+        do {
+            result = transactionTemplate.execute(status -> materializeBatch(id, today, horizon));
+            created += result.created();
+        } while (!result.done());
+        return created;
+    }
+
+    private BatchResult materializeBatch(Long id, LocalDate today, LocalDate horizon) {
+        FlightSchedule schedule = findSchedule(id);
+        if (!schedule.getIsActive()) {
+            return new BatchResult(0, true);
+        }
+
+        LocalDate from = latest(schedule.getValidFrom(), today,
+                schedule.getMaterializedThrough() != null ? schedule.getMaterializedThrough().plusDays(1) : null);
+        LocalDate to = schedule.getValidTo().isBefore(horizon) ? schedule.getValidTo() : horizon;
+        if (from.isAfter(to)) {
+            return new BatchResult(0, true);
+        }
+
+        Instant now = Instant.now();
+        List<Flight> flights = new ArrayList<>();
+        LocalDate date = from;
+        while (!date.isAfter(to) && flights.size() < batchSize) {
+            if (schedule.operatesOn(date) && schedule.departureOn(date).isAfter(now)) {
+                flights.add(buildFlight(schedule, date, today));
+            }
+            date = date.plusDays(1);
+        }
+
+        if (!flights.isEmpty()) {
+            // Рейс с тем же номером мог быть заведён вручную или импортом
+            ScheduleIntervals existing = new ScheduleIntervals();
+            existing.addAll(flightRepository.findScheduleIntervals(
+                    Set.of(schedule.getFlightNumber()),
+                    flights.get(0).getDepartureTime().minus(Flight.MAX_DURATION),
+                    flights.get(flights.size() - 1).getArrivalTime(),
+                    FlightStatus.CANCELLED));
+            int before = flights.size();
+            flights.removeIf(f -> existing.overlaps(f.getFlightNumber(), f.getDepartureTime(), f.getArrivalTime()));
+            if (flights.size() < before) {
+                log.warn("Schedule {}: skipped {} dates already covered by existing {} flights",
+                        id, before - flights.size(), schedule.getFlightNumber());
+            }
+
+            flightRepository.saveAll(flights);
+            for (Flight flight : flights) {
+                flightSearchIndex.upsert(flight);
+                popularDestinations.flightScheduled(flight.getDestination());
+            }
+        }
+
+        schedule.setMaterializedThrough(date.minusDays(1));
+        return new BatchResult(flights.size(), date.isAfter(to));
+    }
+
+    private record BatchResult(int created, boolean done) {
+    }
+
+    // ═══════════════════════════════════════
+    // ЗА ГОРИЗОНТОМ
+    // ═══════════════════════════════════════
+
+    @Override
+    public boolean isBeyondHorizon(LocalDate date) {
+        // Местная дата вылета может отличаться от даты UTC на день - последний день горизонта тоже считаем
+        return !date.isBefore(LocalDate.now().plusDays(horizonDays));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Flight> synthesizeFlights(String originCode, String destinationCode, LocalDate date) {
+        Instant start = date.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant end = date.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        LocalDate today = LocalDate.now();
+
+        List<Flight> flights = new ArrayList<>();
+        for (FlightSchedule schedule : scheduleRepository.findActiveByRoute(
+                originCode, destinationCode, date.minusDays(1), date.plusDays(1))) {
+            // Вылет в дату UTC может приходиться на соседнюю местную дату
+            for (LocalDate local = date.minusDays(1); !local.isAfter(date.plusDays(1)); local = local.plusDays(1)) {
+                boolean materialized = schedule.getMaterializedThrough() != null
+                        && !local.isAfter(schedule.getMaterializedThrough());
+                if (materialized || !schedule.operatesOn(local)) {
+                    continue;
+                }
+                Instant departure = schedule.departureOn(local);
+                if (!departure.isBefore(start) && departure.isBefore(end)) {
+                    flights.add(buildFlight(schedule, local, today));
+                }
+            }
+        }
+        return flights;
+    }
+
+    // ═══════════════════════════════════════
+    // ВСПОМОГАТЕЛЬНЫЕ
+    // ═══════════════════════════════════════
+
+    private Flight buildFlight(FlightSchedule schedule, LocalDate localDate, LocalDate today) {
+        Instant departure = schedule.departureOn(localDate);
+        Flight flight = Flight.builder()
+                .flightNumber(schedule.getFlightNumber())
+                .airline(schedule.getAirline())
+                .origin(schedule.getOrigin())
+                .destination(schedule.getDestination())
+                .schedule(schedule)
+                .departureTime(departure)
+                .arrivalTime(departure.plus(Duration.ofMinutes(schedule.getDurationMinutes())))
+                .totalSeats(schedule.getTotalSeats())
+                .availableSeats(schedule.getTotalSeats())
+                .economySeats(schedule.getEconomySeats())
+                .businessSeats(schedule.getBusinessSeats())
+                .firstClassSeats(schedule.getFirstClassSeats())
+                .availableEconomy(schedule.getEconomySeats() != null ? schedule.getEconomySeats() : 0)
+                .availableBusiness(schedule.getBusinessSeats() != null ? schedule.getBusinessSeats() : 0)
+                .availableFirstClass(schedule.getFirstClassSeats() != null ? schedule.getFirstClassSeats() : 0)
+                .basePrice(schedule.getBasePrice())
+                .businessPrice(schedule.getBusinessPrice())
+                .firstClassPrice(schedule.getFirstClassPrice())
+                .aircraftType(schedule.getAircraftType())
+                .stops(0)
+                .status(FlightStatus.SCHEDULED)
+                .build();
+        // Длительность и места - как при сохранении; для синтезированных рейсов сохранения не будет
+        flight.onPrePersistOrUpdate();
+        pricingService.refreshEffectivePrices(flight, today);
+        return flight;
+    }
+
+    private static LocalDate latest(LocalDate first, LocalDate second, LocalDate third) {
+        LocalDate result = first.isAfter(second) ? first : second;
+        return third != null && third.isAfter(result) ? third : result;
+    }
+}
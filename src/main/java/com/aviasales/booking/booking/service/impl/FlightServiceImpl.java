@@ -8,31 +8,52 @@ import com.aviasales.booking.booking.entity.Airline;
 import com.aviasales.booking.booking.entity.Airport;
 import com.aviasales.booking.booking.entity.Flight;
 import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.DestinationRanking;
 import com.aviasales.booking.booking.enums.FlightSortBy;
 import com.aviasales.booking.booking.enums.FlightStatus;
 import com.aviasales.booking.booking.exception.AirlineNotFoundException;
 import com.aviasales.booking.booking.exception.AirportNotFoundException;
 import com.aviasales.booking.booking.exception.FlightNotFoundException;
+import com.aviasales.booking.booking.index.AirportAutocompleteIndex;
+import com.aviasales.booking.booking.index.FlightSearchCursor;
+import com.aviasales.booking.booking.index.FlightSearchIndex;
+import com.aviasales.booking.booking.index.FlightSearchResultCache;
+import com.aviasales.booking.booking.index.NearbyAirportIndex;
+import com.aviasales.booking.booking.index.PopularDestinationsAggregate;
 import com.aviasales.booking.booking.mapper.FlightMapper;
 import com.aviasales.booking.booking.repo.AirlineRepository;
 import com.aviasales.booking.booking.repo.AirportRepository;
 import com.aviasales.booking.booking.repo.FlightRepository;
 import com.aviasales.booking.booking.repo.TicketRepository;
+import com.aviasales.booking.booking.service.interfaces.FlightScheduleService;
 import com.aviasales.booking.booking.service.interfaces.FlightService;
+import com.aviasales.booking.booking.service.interfaces.PricingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -45,6 +66,18 @@ public class FlightServiceImpl implements FlightService {
     private final TicketRepository ticketRepository;
 
     private final FlightMapper flightMapper;
+    private final FlightSearchIndex flightSearchIndex;
+    private final FlightSearchResultCache searchResultCache;
+    private final AirportAutocompleteIndex airportAutocompleteIndex;
+    private final PopularDestinationsAggregate popularDestinations;
+    private final PricingService pricingService;
+    private final NearbyAirportIndex nearbyAirportIndex;
+    private final FlightScheduleService flightScheduleService;
+
+    private static final int MAX_NEARBY_RADIUS_KM = 500;
+
+    @Value("${search.airports.max-results:20}")
+    private int airportSearchLimit;
 
     // ═══════════════════════════════════════
     // ПОИСК РЕЙСОВ
@@ -74,6 +107,45 @@ public class FlightServiceImpl implements FlightService {
                 sort
         );
 
+        // Ближайшие аэропорты / метрополия - отдельная ветка без кеша выдачи
+        if (request.isNearbySearch()) {
+            return searchNearbyFlights(request, startDate, endDate, sortedPageable);
+        }
+
+        // За горизонтом материализации часть рейсов есть только в виде расписаний
+        if (flightScheduleService.isBeyondHorizon(request.getDepartureDate())) {
+            return searchBeyondHorizon(request, startDate, endDate, sortedPageable);
+        }
+
+        // ✅ Отвечаем из in-memory индекса, из БД грузим только страницу
+        if (flightSearchIndex.isReady()) {
+            FlightSearchResultCache.SearchKey cacheKey = FlightSearchResultCache.SearchKey.of(request, sortedPageable);
+            Page<FlightResponse> cached = searchResultCache.get(cacheKey);
+            if (cached != null) {
+                log.info("Found {} flights (cache)", cached.getTotalElements());
+                return cached;
+            }
+            long cacheVersion = searchResultCache.version(cacheKey);
+
+            FlightSearchIndex.SearchSlice slice = flightSearchIndex.search(
+                    request.getOriginCode().toUpperCase(),
+                    request.getDestinationCode().toUpperCase(),
+                    request.getDepartureDate(),
+                    request.getPassengers(),
+                    request.getSortBy(),
+                    request.getCabinClass(),
+                    sortedPageable.getOffset(),
+                    sortedPageable.getPageSize()
+            );
+
+            log.info("Found {} flights (index)", slice.total());
+
+            List<FlightResponse> content = flightMapper.toFlightResponseList(loadInOrder(slice.flightIds()));
+            Page<FlightResponse> page = new PageImpl<>(content, sortedPageable, slice.total());
+            searchResultCache.put(cacheKey, cacheVersion, page);
+            return page;
+        }
+
         // Ищем рейсы
         Page<Flight> flights = flightRepository.searchFlights(
                 request.getOriginCode().toUpperCase(),
@@ -90,24 +162,227 @@ public class FlightServiceImpl implements FlightService {
         return flights.map(flightMapper::toFlightResponse);
     }
 
+    /**
+     * Поиск с расширением аэропортов: коды берём из пространственного индекса,
+     * рейсы - одним проходом по индексу рейсов или одним IN-запросом в БД
+     */
+    private Page<FlightResponse> searchNearbyFlights(FlightSearchRequest request,
+                                                     Instant startDate,
+                                                     Instant endDate,
+                                                     Pageable sortedPageable) {
+        boolean metroArea = Boolean.TRUE.equals(request.getMetroArea());
+        Set<String> originCodes = nearbyAirportIndex.expand(
+                request.getOriginCode().toUpperCase(), radiusKm(request.getOriginRadiusKm()), metroArea);
+        Set<String> destinationCodes = nearbyAirportIndex.expand(
+                request.getDestinationCode().toUpperCase(), radiusKm(request.getDestinationRadiusKm()), metroArea);
+
+        log.info("Nearby search: origins {}, destinations {}", originCodes, destinationCodes);
+
+        if (flightSearchIndex.isReady()) {
+            FlightSearchIndex.SearchSlice slice = flightSearchIndex.searchRoutes(
+                    originCodes,
+                    destinationCodes,
+                    request.getDepartureDate(),
+                    request.getPassengers(),
+                    request.getSortBy(),
+                    request.getCabinClass(),
+                    sortedPageable.getOffset(),
+                    sortedPageable.getPageSize()
+            );
+
+            log.info("Found {} flights (index, nearby)", slice.total());
+
+            List<FlightResponse> content = flightMapper.toFlightResponseList(loadInOrder(slice.flightIds()));
+            return new PageImpl<>(content, sortedPageable, slice.total());
+        }
+
+        Page<Flight> flights = flightRepository.searchFlightsBetweenAirports(
+                originCodes,
+                destinationCodes,
+                startDate,
+                endDate,
+                request.getPassengers(),
+                FlightStatus.SCHEDULED,
+                sortedPageable
+        );
+
+        log.info("Found {} flights (nearby)", flights.getTotalElements());
+
+        return flights.map(flightMapper::toFlightResponse);
+    }
+
+    private static int radiusKm(Integer radiusKm) {
+        if (radiusKm == null) {
+            return 0;
+        }
+        if (radiusKm < 0 || radiusKm > MAX_NEARBY_RADIUS_KM) {
+            throw new IllegalArgumentException("Search radius must be between 0 and " + MAX_NEARBY_RADIUS_KM + " km");
+        }
+        return radiusKm;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public FlightCursorPageResponse searchFlightsAfter(FlightSearchRequest request, String cursor, int size) {
+        log.info("Cursor search flights from {} to {} on {}, passengers: {}",
+                request.getOriginCode(), request.getDestinationCode(),
+                request.getDepartureDate(), request.getPassengers());
+
+        FlightSortBy sortBy = request.getSortBy() != null ? request.getSortBy() : FlightSortBy.PRICE;
+        CabinClass cabinClass = request.getCabinClass() != null ? request.getCabinClass() : CabinClass.ECONOMY;
+        String originCode = request.getOriginCode().toUpperCase();
+        String destinationCode = request.getDestinationCode().toUpperCase();
+
+        FlightSearchCursor after = cursor != null && !cursor.isBlank()
+                ? FlightSearchCursor.decode(cursor, sortBy)
+                : null;
+
+        // Берём на один рейс больше, чтобы понять, есть ли следующая страница
+        List<Flight> flights;
+        if (flightSearchIndex.isReady()) {
+            List<Long> ids = flightSearchIndex.searchAfter(
+                    originCode,
+                    destinationCode,
+                    request.getDepartureDate(),
+                    request.getPassengers(),
+                    cabinClass,
+                    after != null ? after : FlightSearchCursor.first(sortBy),
+                    size
+            );
+            flights = loadInOrder(ids);
+        } else {
+            flights = searchFlightsAfterInDatabase(request, originCode, destinationCode, sortBy, cabinClass, after, size);
+        }
+
+        boolean hasNext = flights.size() > size;
+        List<Flight> page = hasNext ? flights.subList(0, size) : flights;
+
+        String nextCursor = hasNext
+                ? FlightSearchCursor.after(page.get(page.size() - 1), sortBy, cabinClass).encode()
+                : null;
+
+        return FlightCursorPageResponse.builder()
+                .content(flightMapper.toFlightResponseList(page))
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .size(page.size())
+                .build();
+    }
+
+    /**
+     * Keyset-запрос в БД (когда индекс ещё не загружен)
+     */
+    private List<Flight> searchFlightsAfterInDatabase(FlightSearchRequest request,
+                                                     String originCode,
+                                                     String destinationCode,
+                                                     FlightSortBy sortBy,
+                                                     CabinClass cabinClass,
+                                                     FlightSearchCursor after,
+                                                     int size) {
+        Instant startDate = request.getDepartureDate().atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant endDate = request.getDepartureDate().plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Pageable limit = PageRequest.of(0, size + 1);
+        long afterId = after != null ? after.flightId() : Long.MIN_VALUE;
+
+        return switch (sortBy) {
+            case TIME -> flightRepository.searchFlightsAfterDepartureTime(
+                    originCode, destinationCode, startDate, endDate, request.getPassengers(),
+                    after != null ? Instant.ofEpochMilli(after.sortKey()) : startDate.minusMillis(1),
+                    afterId, limit);
+            case DURATION -> flightRepository.searchFlightsAfterDuration(
+                    originCode, destinationCode, startDate, endDate, request.getPassengers(),
+                    after != null ? (int) after.sortKey() : -1,
+                    afterId, limit);
+            case PRICE -> {
+                BigDecimal afterPrice = after != null
+                        ? FlightSearchCursor.fromCents(after.sortKey())
+                        : BigDecimal.valueOf(-1);
+                yield switch (cabinClass) {
+                    case ECONOMY, PREMIUM_ECONOMY -> flightRepository.searchFlightsAfterEconomyPrice(
+                            originCode, destinationCode, startDate, endDate, request.getPassengers(),
+                            afterPrice, afterId, limit);
+                    case BUSINESS -> flightRepository.searchFlightsAfterBusinessPrice(
+                            originCode, destinationCode, startDate, endDate, request.getPassengers(),
+                            afterPrice, afterId, limit);
+                    case FIRST_CLASS -> flightRepository.searchFlightsAfterFirstClassPrice(
+                            originCode, destinationCode, startDate, endDate, request.getPassengers(),
+                            afterPrice, afterId, limit);
+                };
+            }
+        };
+    }
+
+    /**
+     * Загрузить рейсы по id, сохранив порядок id
+     */
+    private List<Flight> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Flight> byId = flightRepository.findAllForSearchByIdIn(ids).stream()
+                .collect(Collectors.toMap(Flight::getId, Function.identity()));
+
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Сохранённые рейсы + синтезированные из расписаний (id = null, бронирование - после материализации).
+     * Даты так далеко ищут редко и рейсов на них мало - сортируем и режем страницу в памяти
+     */
+    private Page<FlightResponse> searchBeyondHorizon(FlightSearchRequest request,
+                                                     Instant startDate,
+                                                     Instant endDate,
+                                                     Pageable sortedPageable) {
+        String originCode = request.getOriginCode().toUpperCase();
+        String destinationCode = request.getDestinationCode().toUpperCase();
+
+        List<Flight> flights = new ArrayList<>(flightRepository.findFlightsWithDetailsByRoute(
+                originCode, destinationCode, startDate, endDate, request.getPassengers()));
+        flights.addAll(flightScheduleService.synthesizeFlights(originCode, destinationCode, request.getDepartureDate()));
+        flights.removeIf(f -> !f.getDepartureTime().isBefore(endDate) || f.getAvailableSeats() < request.getPassengers());
+
+        CabinClass cabinClass = request.getCabinClass() != null ? request.getCabinClass() : CabinClass.ECONOMY;
+        Comparator<Flight> order = switch (request.getSortBy() != null ? request.getSortBy() : FlightSortBy.PRICE) {
+            case TIME -> Comparator.comparing(Flight::getDepartureTime);
+            case DURATION -> Comparator.comparing(Flight::getDurationMinutes);
+            case PRICE -> Comparator.comparing((Flight f) -> f.getEffectivePrice(cabinClass),
+                    Comparator.nullsLast(Comparator.naturalOrder()));
+        };
+        flights.sort(order.thenComparing(Flight::getFlightNumber));
+
+        int from = (int) Math.min(sortedPageable.getOffset(), flights.size());
+        int to = Math.min(from + sortedPageable.getPageSize(), flights.size());
+        log.info("Found {} flights (beyond schedule horizon)", flights.size());
+
+        return new PageImpl<>(flightMapper.toFlightResponseList(flights.subList(from, to)), sortedPageable, flights.size());
+    }
+
     /**
      * Создать сортировку по критерию
+     * PRICE - по действующей цене класса; id в конце делает порядок стабильным между страницами
      */
     private Sort createSort(FlightSortBy sortBy, CabinClass cabinClass) {
         if (sortBy == null) {
             sortBy = FlightSortBy.PRICE;
         }
 
-        return switch (sortBy) {
+        Sort sort = switch (sortBy) {
             case TIME -> Sort.by(Sort.Direction.ASC, "departureTime");
             case DURATION -> Sort.by(Sort.Direction.ASC, "durationMinutes");
             case PRICE -> {
-                String priceField = (cabinClass == CabinClass.BUSINESS || cabinClass == CabinClass.FIRST_CLASS)
-                        ? "businessPrice"
-                        : "basePrice";
-                yield Sort.by(Sort.Direction.ASC, priceField);
+                String priceField = switch (cabinClass != null ? cabinClass : CabinClass.ECONOMY) {
+                    case ECONOMY, PREMIUM_ECONOMY -> "effectiveEconomyPrice";
+                    case BUSINESS -> "effectiveBusinessPrice";
+                    case FIRST_CLASS -> "effectiveFirstClassPrice";
+                };
+                yield Sort.by(new Sort.Order(Sort.Direction.ASC, priceField, Sort.NullHandling.NULLS_LAST));
             }
         };
+        return sort.and(Sort.by(Sort.Direction.ASC, "id"));
     }
 
     // ═══════════════════════════════════════
@@ -128,7 +403,10 @@ public class FlightServiceImpl implements FlightService {
     @Transactional(readOnly = true)
     public FlightDetailResponse getFlightByNumber(String flightNumber) {
         log.info("Getting flight by number: {}", flightNumber);
-        Flight flight = flightRepository.findByFlightNumber(flightNumber.toUpperCase())
+        String number = flightNumber.toUpperCase();
+        Flight flight = flightRepository
+                .findFirstByFlightNumberAndDepartureTimeAfterOrderByDepartureTimeAsc(number, Instant.now())
+                .or(() -> flightRepository.findFirstByFlightNumberOrderByDepartureTimeDesc(number))
                 .orElseThrow(() -> new FlightNotFoundException(
                         "Flight not found with number: " + flightNumber
                 ));
@@ -144,28 +422,9 @@ public class FlightServiceImpl implements FlightService {
     public FlightDetailResponse createFlight(CreateFlightRequest request) {
         log.info("Creating flight: {}", request.getFlightNumber());
 
-        // Валидация времени
-        if (request.getDepartureTime().isAfter(request.getArrivalTime())) {
-            throw new IllegalArgumentException("Arrival time must be after departure time");
-        }
-
-        // Проверка существования рейса с таким номером
-        if (flightRepository.existsByFlightNumber(request.getFlightNumber().toUpperCase())) {
-            throw new IllegalArgumentException(
-                    "Flight with number " + request.getFlightNumber() + " already exists"
-            );
-        }
-
-        boolean exists = flightRepository.existsByDepartureTimeLessThanAndArrivalTimeGreaterThan(
-                request.getArrivalTime(), request.getDepartureTime()
-        );
+        // Номер рейса повторяется по датам, но один и тот же рейс не может выполняться дважды одновременно
+        checkSchedule(request.getFlightNumber().toUpperCase(), request.getDepartureTime(), request.getArrivalTime(), null);
 
-        if (exists) {
-            throw new IllegalArgumentException(
-                    "Flight to this date (%s - %s) has been already registered!".formatted(
-                            request.getDepartureTime(), request.getArrivalTime())
-            );
-        }
         // Получаем авиакомпанию
         Airline airline = airlineRepository.findByIataCode(request.getAirlineCode().toUpperCase())
                 .orElseThrow(() -> new AirlineNotFoundException(request.getAirlineCode()));
@@ -201,10 +460,13 @@ public class FlightServiceImpl implements FlightService {
                 .stops(0)
                 .status(FlightStatus.SCHEDULED)
                 .build();
+        pricingService.refreshEffectivePrices(flight, LocalDate.now());
 
         flight = flightRepository.save(flight);
 
         flight = flightRepository.save(flight);
+        flightSearchIndex.upsert(flight);
+        popularDestinations.flightScheduled(flight.getDestination());
         log.info("Flight created with id: {}", flight.getId());
 
         return flightMapper.toFlightDetailResponse(flight);
@@ -222,13 +484,15 @@ public class FlightServiceImpl implements FlightService {
 
         Flight flight = flightRepository.findById(id)
                 .orElseThrow(() -> new FlightNotFoundException(id));
+        FlightStatus previousStatus = flight.getStatus();
 
         // Обновляем время
-        if (request.getDepartureTime() != null) {
-            flight.setDepartureTime(request.getDepartureTime());
-        }
-        if (request.getArrivalTime() != null) {
-            flight.setArrivalTime(request.getArrivalTime());
+        if (request.getDepartureTime() != null || request.getArrivalTime() != null) {
+            Instant departure = request.getDepartureTime() != null ? request.getDepartureTime() : flight.getDepartureTime();
+            Instant arrival = request.getArrivalTime() != null ? request.getArrivalTime() : flight.getArrivalTime();
+            checkSchedule(flight.getFlightNumber(), departure, arrival, flight.getId());
+            flight.setDepartureTime(departure);
+            flight.setArrivalTime(arrival);
         }
 
         // Обновляем места
@@ -254,12 +518,45 @@ public class FlightServiceImpl implements FlightService {
             flight.setStatus(request.getStatus());
         }
 
+        // Цены, места или время вылета могли измениться
+        pricingService.refreshEffectivePrices(flight, LocalDate.now());
+
         flight = flightRepository.save(flight);
+        flightSearchIndex.upsert(flight);
+
+        if (previousStatus == FlightStatus.SCHEDULED && flight.getStatus() != FlightStatus.SCHEDULED) {
+            popularDestinations.flightUnscheduled(flight.getDestination());
+        } else if (previousStatus != FlightStatus.SCHEDULED && flight.getStatus() == FlightStatus.SCHEDULED) {
+            popularDestinations.flightScheduled(flight.getDestination());
+        }
         log.info("Flight updated: {}", id);
 
         return flightMapper.toFlightDetailResponse(flight);  // ✅ добавил return
     }
 
+    /**
+     * Проверить время рейса и отсутствие пересечения с другим рейсом того же номера
+     */
+    private void checkSchedule(String flightNumber, Instant departure, Instant arrival, Long flightId) {
+        if (!arrival.isAfter(departure)) {
+            throw new IllegalArgumentException("Arrival time must be after departure time");
+        }
+        if (Duration.between(departure, arrival).compareTo(Flight.MAX_DURATION) > 0) {
+            throw new IllegalArgumentException(
+                    "Flight duration must not exceed " + Flight.MAX_DURATION.toHours() + " hours");
+        }
+
+        boolean overlaps = flightRepository.existsOverlappingFlight(
+                flightNumber, departure, arrival, departure.minus(Flight.MAX_DURATION),
+                FlightStatus.CANCELLED, flightId != null ? flightId : -1L
+        );
+        if (overlaps) {
+            throw new IllegalArgumentException(
+                    "Flight %s already operates within %s - %s".formatted(flightNumber, departure, arrival)
+            );
+        }
+    }
+
     // ═══════════════════════════════════════
     // АЭРОПОРТЫ
     // ═══════════════════════════════════════
@@ -275,10 +572,19 @@ public class FlightServiceImpl implements FlightService {
                 .toList();
     }
 
+    /**
+     * Без @Transactional: ответ из индекса не должен брать соединение из пула на каждое нажатие клавиши,
+     * запасной LIKE-запрос идёт в read-only транзакции репозитория (у Airport нет ленивых связей)
+     */
     @Override
-    @Transactional(readOnly = true)
     public List<AirportResponse> searchAirports(String query) {
         log.info("Searching airports with query: {}", query);
+
+        // ✅ Автодополнение из in-memory индекса, LIKE-запрос - только пока индекс не построен
+        if (airportAutocompleteIndex.isReady()) {
+            return airportAutocompleteIndex.search(query, airportSearchLimit);
+        }
+
         return airportRepository.searchAirports(query)
                 .stream()
                 .map(flightMapper::toAirportResponse)
@@ -327,7 +633,18 @@ public class FlightServiceImpl implements FlightService {
     @Override
     @Transactional(readOnly = true)
     public List<PopularDestinationResponse> getPopularDestinations(int limit) {
-        log.info("Getting top {} popular destinations", limit);
+        return getPopularDestinations(limit, DestinationRanking.FLIGHTS);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PopularDestinationResponse> getPopularDestinations(int limit, DestinationRanking ranking) {
+        log.info("Getting top {} popular destinations by {}", limit, ranking);
+
+        // ✅ Готовый top-K из счётчиков, GROUP BY - только пока они не загружены
+        if (popularDestinations.isReady()) {
+            return popularDestinations.top(ranking, limit);
+        }
 
         Pageable pageable = PageRequest.of(0, limit);
         List<Object[]> results = flightRepository.findPopularDestinations(pageable);
@@ -381,8 +698,13 @@ public class FlightServiceImpl implements FlightService {
         int bookedSeats = flight.getTotalSeats() - flight.getAvailableSeats();
 
         // Отменяем рейс
+        boolean wasScheduled = flight.getStatus() == FlightStatus.SCHEDULED;
         flight.setStatus(FlightStatus.CANCELLED);
         flight = flightRepository.save(flight);
+        flightSearchIndex.remove(id);
+        if (wasScheduled) {
+            popularDestinations.flightUnscheduled(flight.getDestination());
+        }
 
         log.info("Flight {} cancelled. Flight number: {}, Booked tickets: {}, Booked seats: {}/{}",
                 id,
@@ -434,6 +756,10 @@ public class FlightServiceImpl implements FlightService {
 
         // Удаляем рейс
         flightRepository.delete(flight);
+        flightSearchIndex.remove(id);
+        if (flight.getStatus() == FlightStatus.SCHEDULED) {
+            popularDestinations.flightUnscheduled(flight.getDestination());
+        }
 
         log.info("Flight {} ({}) deleted successfully", id, flight.getFlightNumber());
     }
@@ -13,6 +13,8 @@ import com.aviasales.booking.booking.exception.BookingExpiredException;
 import com.aviasales.booking.booking.exception.BookingNotFoundException;
 import com.aviasales.booking.booking.exception.PaymentNotFoundException;
 import com.aviasales.booking.booking.exception.PaymentProcessingException;
+import com.aviasales.booking.booking.hold.SeatHoldManager;
+import com.aviasales.booking.booking.index.PopularDestinationsAggregate;
 import com.aviasales.booking.booking.mapper.PaymentMapper;
 import com.aviasales.booking.booking.repo.BookingRepository;
 import com.aviasales.booking.booking.repo.PaymentRepository;
@@ -46,6 +48,8 @@ public class PaymentServiceImpl implements PaymentService {
     private final PaymentMapper paymentMapper;
     private final NotificationService notificationService;
     private final ReceiptService receiptService;
+    private final PopularDestinationsAggregate popularDestinations;
+    private final SeatHoldManager seatHoldManager;
 
     // ═══════════════════════════════════════
     // REGEX PATTERNS ДЛЯ ВАЛИДАЦИИ
@@ -148,6 +152,7 @@ public class PaymentServiceImpl implements PaymentService {
             payment.setStatus(PaymentStatus.COMPLETED);
             payment.setProcessedAt(Instant.now());
 
+            boolean newlyConfirmed = booking.getStatus() != BookingStatus.CONFIRMED;
             booking.setStatus(BookingStatus.CONFIRMED);
             booking.setConfirmedAt(LocalDateTime.now());
             booking.setPaymentStatus(PaymentStatus.PAID);
@@ -157,6 +162,9 @@ public class PaymentServiceImpl implements PaymentService {
 
             bookingRepository.save(booking);
             payment = paymentRepository.save(payment);
+            if (newlyConfirmed) {
+                popularDestinations.bookingConfirmed(booking);
+            }
 
             // Создаём чек
             receiptService.createReceipt(payment, booking);
@@ -331,11 +339,32 @@ public class PaymentServiceImpl implements PaymentService {
             throw new PaymentProcessingException("Payment is not in PROCESSING status");
         }
 
+        // Оплата пришла после истечения удержания - места уже вернулись в продажу
+        if (booking.getStatus() != BookingStatus.PENDING && booking.getStatus() != BookingStatus.CONFIRMED) {
+            throw new PaymentProcessingException(
+                    "Cannot confirm payment for booking with status: " + booking.getStatus());
+        }
+        if (booking.getStatus() == BookingStatus.PENDING
+                && !seatHoldManager.convert(booking.getBookingReference())
+                && booking.isExpired()) {
+            throw new BookingExpiredException(booking.getBookingReference());
+        }
+
         // Подтверждаем платёж
         payment.setStatus(PaymentStatus.COMPLETED);
         payment.setProcessedAt(Instant.now());
 
-        // Подтверждаем бронирование
+        // Подтверждаем бронирование условным UPDATE: истечение и отмена на любом узле
+        // либо уже прошли (0 строк), либо ждут нашего коммита
+        LocalDateTime now = LocalDateTime.now();
+        boolean newlyConfirmed = booking.getStatus() == BookingStatus.PENDING
+                && bookingRepository.transitionStatus(booking.getId(), List.of(BookingStatus.PENDING),
+                        BookingStatus.CONFIRMED, now) == 1;
+        if (!newlyConfirmed && bookingRepository.transitionStatus(booking.getId(),
+                List.of(BookingStatus.CONFIRMED), BookingStatus.CONFIRMED, now) == 0) {
+            throw new PaymentProcessingException(
+                    "Booking " + booking.getBookingReference() + " was expired or cancelled concurrently");
+        }
         booking.setStatus(BookingStatus.CONFIRMED);
         booking.setConfirmedAt(LocalDateTime.now());
         booking.setPaymentStatus(PaymentStatus.PAID);
@@ -344,6 +373,9 @@ public class PaymentServiceImpl implements PaymentService {
 
         bookingRepository.save(booking);
         payment = paymentRepository.save(payment);
+        if (newlyConfirmed) {
+            popularDestinations.bookingConfirmed(booking);
+        }
 
         // Создаём чек после подтверждения платежа
         receiptService.createReceipt(payment, booking);
@@ -406,6 +438,9 @@ public class PaymentServiceImpl implements PaymentService {
         payment.setProcessedAt(Instant.now());
 
         // Отменяем бронирование
+        if (booking.getStatus() == BookingStatus.CONFIRMED) {
+            popularDestinations.bookingCancelled(booking);
+        }
         booking.setStatus(BookingStatus.CANCELLED);
         booking.setPaymentStatus(PaymentStatus.REFUNDED);
         bookingRepository.save(booking);
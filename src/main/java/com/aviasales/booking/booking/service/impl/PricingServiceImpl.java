@@ -85,6 +85,49 @@ public class PricingServiceImpl implements PricingService {
                 .build();
     }
 
+    // ═══════════════════════════════════════
+    // ДЕЙСТВУЮЩАЯ ЦЕНА (СОРТИРОВКА ПОИСКА)
+    // ═══════════════════════════════════════
+
+    /**
+     * Пересчитать действующие цены по всем классам
+     * Цена меняется только когда загруженность или дни до вылета переходят границу диапазона,
+     * поэтому пересчёт вызывается при каждом изменении мест и раз в сутки для ближайших рейсов
+     */
+    @Override
+    public boolean refreshEffectivePrices(Flight flight, LocalDate pricingDate) {
+        BigDecimal economy = calculateDynamicPrice(flight, CabinClass.ECONOMY, pricingDate).getFinalPrice();
+        BigDecimal business = hasCabin(flight.getBusinessSeats())
+                ? calculateDynamicPrice(flight, CabinClass.BUSINESS, pricingDate).getFinalPrice()
+                : null;
+        BigDecimal firstClass = hasCabin(flight.getFirstClassSeats())
+                ? calculateDynamicPrice(flight, CabinClass.FIRST_CLASS, pricingDate).getFinalPrice()
+                : null;
+
+        boolean changed = !samePrice(economy, flight.getEffectiveEconomyPrice())
+                || !samePrice(business, flight.getEffectiveBusinessPrice())
+                || !samePrice(firstClass, flight.getEffectiveFirstClassPrice());
+
+        flight.setEffectiveEconomyPrice(economy);
+        flight.setEffectiveBusinessPrice(business);
+        flight.setEffectiveFirstClassPrice(firstClass);
+        flight.setEffectivePriceDate(pricingDate);
+
+        if (changed) {
+            log.debug("Effective prices of flight {} changed: economy={}, business={}, first={}",
+                    flight.getFlightNumber(), economy, business, firstClass);
+        }
+        return changed;
+    }
+
+    private static boolean hasCabin(Integer seats) {
+        return seats != null && seats > 0;
+    }
+
+    private static boolean samePrice(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+
     // ═══════════════════════════════════════
     // ПОЛУЧЕНИЕ БАЗОВОЙ ЦЕНЫ
     // ═══════════════════════════════════════
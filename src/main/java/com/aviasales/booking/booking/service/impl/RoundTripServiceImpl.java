@@ -4,6 +4,7 @@ import com.aviasales.booking.booking.dto.request.RoundTripSearchRequest;
 import com.aviasales.booking.booking.dto.response.DynamicPriceResponse;
 import com.aviasales.booking.booking.dto.response.RoundTripDiscountResponse;
 import com.aviasales.booking.booking.dto.response.RoundTripSearchResponse;
+import com.aviasales.booking.booking.dto.response.RoundTripStreamEvent;
 import com.aviasales.booking.booking.entity.Flight;
 import com.aviasales.booking.booking.enums.CabinClass;
 import com.aviasales.booking.booking.enums.DemandLevel;
@@ -12,19 +13,26 @@ import com.aviasales.booking.booking.exception.FlightNotFoundException;
 import com.aviasales.booking.booking.repo.FlightRepository;
 import com.aviasales.booking.booking.service.interfaces.PricingService;
 import com.aviasales.booking.booking.service.interfaces.RoundTripService;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Сервис для поиска билетов туда-обратно
@@ -35,8 +43,12 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RoundTripServiceImpl implements RoundTripService {
 
+    private static final int RECOMMENDATIONS_LIMIT = 10;
+
     private final FlightRepository flightRepository;
     private final PricingService pricingService;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
 
     /**
      * Поиск рейсов туда-обратно с рекомендациями
@@ -102,6 +114,96 @@ public class RoundTripServiceImpl implements RoundTripService {
                 .build();
     }
 
+    /**
+     * Потоковый поиск туда-обратно
+     *
+     * Рейсы каждого направления читаются курсором в своей короткой readOnly-транзакции и превращаются
+     * в компактные FlightOption; клиенту они пишутся уже после её закрытия, так что медленный клиент
+     * не держит курсор и соединение пула. Комбинации не собираются целиком:
+     * держим кучу из RECOMMENDATIONS_LIMIT лучших, поэтому память не растёт с ±3 днями.
+     */
+    @Override
+    public void streamRoundTrip(RoundTripSearchRequest request, Consumer<RoundTripStreamEvent> sink) {
+        long start = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+
+        log.info("Streaming round-trip search: {} -> {} ({}), return ({})",
+                request.getFrom(), request.getTo(),
+                request.getDepartureDate(), request.getReturnDate());
+
+        List<RoundTripSearchResponse.FlightOption> outboundOptions = streamFlightOptions(
+                request.getFrom(), request.getTo(), request.getDepartureDate(), request,
+                today, RoundTripStreamEvent.OUTBOUND, sink);
+
+        List<RoundTripSearchResponse.FlightOption> returnOptions = streamFlightOptions(
+                request.getTo(), request.getFrom(), request.getReturnDate(), request,
+                today, RoundTripStreamEvent.RETURN, sink);
+
+        // Min-heap по рейтингу: наверху худшая из лучших
+        PriorityQueue<RoundTripSearchResponse.RecommendedCombination> best = new PriorityQueue<>(
+                RECOMMENDATIONS_LIMIT + 1,
+                Comparator.comparing(RoundTripSearchResponse.RecommendedCombination::getScore));
+
+        for (RoundTripSearchResponse.FlightOption out : outboundOptions) {
+            for (RoundTripSearchResponse.FlightOption ret : returnOptions) {
+                RoundTripSearchResponse.RecommendedCombination combination = buildCombination(out, ret);
+                if (best.size() < RECOMMENDATIONS_LIMIT) {
+                    best.add(combination);
+                } else if (combination.getScore() > best.peek().getScore()) {
+                    best.poll();
+                    best.add(combination);
+                }
+            }
+        }
+
+        List<RoundTripSearchResponse.RecommendedCombination> recommendations = new ArrayList<>(best);
+        recommendations.sort(Comparator.comparing(RoundTripSearchResponse.RecommendedCombination::getScore).reversed());
+        recommendations.forEach(combination -> sink.accept(new RoundTripStreamEvent(RoundTripStreamEvent.RECOMMENDATION, combination)));
+
+        BigDecimal lowestPrice = recommendations.isEmpty()
+                ? BigDecimal.ZERO
+                : recommendations.get(0).getTotalAfterDiscount();
+
+        sink.accept(new RoundTripStreamEvent(RoundTripStreamEvent.SUMMARY, RoundTripStreamEvent.Summary.builder()
+                .outboundCount(outboundOptions.size())
+                .returnCount(returnOptions.size())
+                .lowestRoundTripPrice(lowestPrice)
+                .roundTripDiscount(lowestPrice.multiply(BigDecimal.valueOf(TripType.ROUND_TRIP.getDiscount())))
+                .discountPercent(TripType.ROUND_TRIP.getDiscount() * 100)
+                .searchTimeMs(System.currentTimeMillis() - start)
+                .build()));
+    }
+
+    private List<RoundTripSearchResponse.FlightOption> streamFlightOptions(
+            String origin,
+            String destination,
+            LocalDate date,
+            RoundTripSearchRequest request,
+            LocalDate bookingDate,
+            String eventType,
+            Consumer<RoundTripStreamEvent> sink
+    ) {
+        int days = Boolean.TRUE.equals(request.getFlexibleDates()) ? 3 : 0;
+        Instant from = date.minusDays(days).atStartOfDay().atZone(ZoneId.systemDefault()).toInstant();
+        Instant to = date.plusDays(days).atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant();
+
+        List<RoundTripSearchResponse.FlightOption> options = readOnlyTransaction().execute(status -> {
+            List<RoundTripSearchResponse.FlightOption> loaded = new ArrayList<>();
+            try (Stream<Flight> flights = flightRepository.streamFlightsByRouteAndDateRange(origin, destination, from, to)) {
+                flights.forEach(flight -> {
+                    loaded.add(toFlightOption(flight, request.getCabinClass(), bookingDate));
+                    // Сущность больше не нужна - не копим её в persistence context
+                    entityManager.detach(flight);
+                });
+            }
+            return loaded;
+        });
+
+        // Транзакция закрыта - запись клиенту не держит соединение
+        options.forEach(option -> sink.accept(new RoundTripStreamEvent(eventType, option)));
+        return options;
+    }
+
     /**
      * Поиск рейсов с опциональной гибкостью дат
      */
@@ -142,35 +244,41 @@ public class RoundTripServiceImpl implements RoundTripService {
             LocalDate bookingDate
     ) {
         return flights.stream()
-                .map(flight -> {
-                    DynamicPriceResponse priceInfo = pricingService.calculateDynamicPrice(
-                            flight, cabinClass, bookingDate
-                    );
-
-                    Duration duration = Duration.between(
-                            flight.getDepartureTime(),
-                            flight.getArrivalTime()
-                    );
-
-                    return RoundTripSearchResponse.FlightOption.builder()
-                            .flightId(flight.getId())
-                            .flightNumber(flight.getFlightNumber())
-                            .origin(flight.getOrigin().getIataCode())
-                            .destination(flight.getDestination().getIataCode())
-                            .departureTime(flight.getDepartureTime().toString())
-                            .arrivalTime(flight.getArrivalTime().toString())
-                            .duration(formatDuration(duration))
-                            .airline(flight.getAirline().getName())
-                            .basePrice(priceInfo.getBasePrice())
-                            .dynamicPrice(priceInfo.getFinalPrice())
-                            .availableSeats(getAvailableSeats(flight, cabinClass))
-                            .demandLevel(String.valueOf(priceInfo.getDemandLevel()))
-                            .priceReason(priceInfo.getRecommendation())
-                            .build();
-                })
+                .map(flight -> toFlightOption(flight, cabinClass, bookingDate))
                 .collect(Collectors.toList());
     }
 
+    private RoundTripSearchResponse.FlightOption toFlightOption(
+            Flight flight,
+            CabinClass cabinClass,
+            LocalDate bookingDate
+    ) {
+        DynamicPriceResponse priceInfo = pricingService.calculateDynamicPrice(
+                flight, cabinClass, bookingDate
+        );
+
+        Duration duration = Duration.between(
+                flight.getDepartureTime(),
+                flight.getArrivalTime()
+        );
+
+        return RoundTripSearchResponse.FlightOption.builder()
+                .flightId(flight.getId())
+                .flightNumber(flight.getFlightNumber())
+                .origin(flight.getOrigin().getIataCode())
+                .destination(flight.getDestination().getIataCode())
+                .departureTime(flight.getDepartureTime().toString())
+                .arrivalTime(flight.getArrivalTime().toString())
+                .duration(formatDuration(duration))
+                .airline(flight.getAirline().getName())
+                .basePrice(priceInfo.getBasePrice())
+                .dynamicPrice(priceInfo.getFinalPrice())
+                .availableSeats(getAvailableSeats(flight, cabinClass))
+                .demandLevel(String.valueOf(priceInfo.getDemandLevel()))
+                .priceReason(priceInfo.getRecommendation())
+                .build();
+    }
+
     /**
      * Генерировать рекомендуемые комбинации туда+обратно
      */
@@ -183,41 +291,48 @@ public class RoundTripServiceImpl implements RoundTripService {
         // Создаем все возможные комбинации
         for (RoundTripSearchResponse.FlightOption out : outbound) {
             for (RoundTripSearchResponse.FlightOption ret : returnFlights) {
-                BigDecimal totalBefore = out.getDynamicPrice().add(ret.getDynamicPrice());
-
-                // Применяем скидку 5%
-                BigDecimal discount = totalBefore.multiply(BigDecimal.valueOf(TripType.ROUND_TRIP.getDiscount()));
-                BigDecimal totalAfter = totalBefore.subtract(discount);
-
-                // Вычисляем общее время
-                Duration outDuration = parseDuration(out.getDuration());
-                Duration retDuration = parseDuration(ret.getDuration());
-                String totalDuration = formatDuration(outDuration.plus(retDuration));
-
-                // Причина рекомендации + рейтинг
-                int score = calculateScore(out, ret, totalAfter);
-                String reason = generateReason(score, out, ret);
-
-                combinations.add(RoundTripSearchResponse.RecommendedCombination.builder()
-                        .outboundFlightId(out.getFlightId())
-                        .returnFlightId(ret.getFlightId())
-                        .totalBeforeDiscount(totalBefore.setScale(2, RoundingMode.HALF_UP))
-                        .totalAfterDiscount(totalAfter.setScale(2, RoundingMode.HALF_UP))
-                        .savings(discount.setScale(2, RoundingMode.HALF_UP))
-                        .totalDuration(totalDuration)
-                        .reason(reason)
-                        .score(score)
-                        .build());
+                combinations.add(buildCombination(out, ret));
             }
         }
 
         // Сортируем по рейтингу (score) от большего к меньшему
         return combinations.stream()
                 .sorted(Comparator.comparing(RoundTripSearchResponse.RecommendedCombination::getScore).reversed())
-                .limit(10) // Топ-10 комбинаций
+                .limit(RECOMMENDATIONS_LIMIT) // Топ-10 комбинаций
                 .collect(Collectors.toList());
     }
 
+    private RoundTripSearchResponse.RecommendedCombination buildCombination(
+            RoundTripSearchResponse.FlightOption out,
+            RoundTripSearchResponse.FlightOption ret
+    ) {
+        BigDecimal totalBefore = out.getDynamicPrice().add(ret.getDynamicPrice());
+
+        // Применяем скидку 5%
+        BigDecimal discount = totalBefore.multiply(BigDecimal.valueOf(TripType.ROUND_TRIP.getDiscount()));
+        BigDecimal totalAfter = totalBefore.subtract(discount);
+
+        // Вычисляем общее время
+        Duration outDuration = parseDuration(out.getDuration());
+        Duration retDuration = parseDuration(ret.getDuration());
+        String totalDuration = formatDuration(outDuration.plus(retDuration));
+
+        // Причина рекомендации + рейтинг
+        int score = calculateScore(out, ret, totalAfter);
+        String reason = generateReason(score, out, ret);
+
+        return RoundTripSearchResponse.RecommendedCombination.builder()
+                .outboundFlightId(out.getFlightId())
+                .returnFlightId(ret.getFlightId())
+                .totalBeforeDiscount(totalBefore.setScale(2, RoundingMode.HALF_UP))
+                .totalAfterDiscount(totalAfter.setScale(2, RoundingMode.HALF_UP))
+                .savings(discount.setScale(2, RoundingMode.HALF_UP))
+                .totalDuration(totalDuration)
+                .reason(reason)
+                .score(score)
+                .build();
+    }
+
     /**
      * Рассчитать рейтинг комбинации (0-100)
      */
@@ -448,4 +563,10 @@ public class RoundTripServiceImpl implements RoundTripService {
             );
         }
     }
+
+    private TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
 }
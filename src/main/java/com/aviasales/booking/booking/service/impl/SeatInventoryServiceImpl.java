@@ -0,0 +1,103 @@
+package com.aviasales.booking.booking.service.impl;
+
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.exception.FlightNotFoundException;
+import com.aviasales.booking.booking.exception.InsufficientSeatsException;
+import com.aviasales.booking.booking.index.FlightSearchIndex;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.service.interfaces.PricingService;
+import com.aviasales.booking.booking.service.interfaces.SeatInventoryService;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Счётчики мест рейса без read-modify-write
+ *
+ * Списание в Java (Flight.reserveSeats) с записью строки целиком пропускает овербукинг:
+ * два параллельных бронирования читают один остаток и оба проходят проверку. Здесь списание -
+ * один UPDATE с условием "мест хватает", база сериализует его на строке рейса сама.
+ *
+ * Списание идёт в транзакции бронирования последним запросом: блокировка строки держится
+ * от UPDATE до коммита, а откат бронирования откатывает и списание. Отдельная транзакция
+ * (REQUIRES_NEW) брала бы второе соединение из пула при занятом первом - при N параллельных
+ * бронированиях и пуле N все ждали бы друг друга до connectionTimeout.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatInventoryServiceImpl implements SeatInventoryService {
+
+    private final FlightRepository flightRepository;
+    private final PricingService pricingService;
+    private final FlightSearchIndex flightSearchIndex;
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManager entityManager;
+
+    @Override
+    public void reserve(Long flightId, Map<CabinClass, Integer> seatsByClass) throws InsufficientSeatsException {
+        int[] counts = counts(seatsByClass);
+
+        Boolean reserved = currentTransaction().execute(status -> {
+            if (flightRepository.reserveSeats(flightId, counts[0], counts[1], counts[2], Instant.now()) == 0) {
+                return false;
+            }
+            // Рейс уже загружен бронированием - счётчики в нём до UPDATE, перечитываем строку
+            Flight flight = flightRepository.findById(flightId)
+                    .orElseThrow(() -> new FlightNotFoundException(flightId));
+            entityManager.refresh(flight);
+            afterSeatsChanged(flight);
+            return true;
+        });
+
+        if (!Boolean.TRUE.equals(reserved)) {
+            throw new InsufficientSeatsException(
+                    String.format("Insufficient seats on flight %d. Requested: %s", flightId, seatsByClass));
+        }
+    }
+
+    @Override
+    public void release(Flight flight, Map<CabinClass, Integer> seatsByClass) {
+        int[] counts = counts(seatsByClass);
+        flightRepository.releaseSeats(flight.getId(), counts[0], counts[1], counts[2], Instant.now());
+
+        // Счётчики в сущности устарели - перечитываем строку
+        entityManager.refresh(flight);
+        afterSeatsChanged(flight);
+    }
+
+    /**
+     * Действующие цены зависят от заполненности; индекс поиска - от остатка мест
+     */
+    private void afterSeatsChanged(Flight flight) {
+        pricingService.refreshEffectivePrices(flight, LocalDate.now());
+        flightSearchIndex.updateSeats(flight);
+    }
+
+    private TransactionTemplate currentTransaction() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * [эконом, бизнес, первый]; премиум-эконом продаётся из эконома
+     */
+    private static int[] counts(Map<CabinClass, Integer> seatsByClass) {
+        int[] counts = new int[3];
+        seatsByClass.forEach((cabinClass, count) -> {
+            switch (cabinClass) {
+                case ECONOMY, PREMIUM_ECONOMY -> counts[0] += count;
+                case BUSINESS -> counts[1] += count;
+                case FIRST_CLASS -> counts[2] += count;
+            }
+        });
+        return counts;
+    }
+}
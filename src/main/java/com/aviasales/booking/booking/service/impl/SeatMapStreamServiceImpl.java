@@ -0,0 +1,337 @@
+package com.aviasales.booking.booking.service.impl;
+
+import com.aviasales.booking.booking.config.SearchExecutors;
+import com.aviasales.booking.booking.dto.response.SeatMapDeltaResponse;
+import com.aviasales.booking.booking.dto.response.SeatMapSnapshotResponse;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.exception.FlightNotFoundException;
+import com.aviasales.booking.booking.index.SeatBitmap;
+import com.aviasales.booking.booking.index.SeatLayout;
+import com.aviasales.booking.booking.index.SeatMapCache;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.service.interfaces.SeatMapStreamService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Карта мест рейса в реальном времени (SSE) вместо опроса /flights/{id}/seats
+ *
+ * На рейс - один источник (FlightFeed), подписанный на SeatBitmap: бронирование, отмена,
+ * истечение и откат помечают изменённые биты. Рассылка идёт пачкой в пуле потоковой выдачи:
+ * событие сериализуется один раз и раскладывается по очередям подписчиков, поток бронирования не ждёт клиентов.
+ * У каждого подписчика своя ограниченная очередь и своя отправка: медленный клиент не задерживает
+ * остальных, а переполнив очередь - отключается (при переподключении получит свежий снимок).
+ *
+ * В дельте - текущее состояние места на момент рассылки, а не порядок событий: при гонке
+ * занятия и освобождения клиент всё равно сходится к карте в памяти.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatMapStreamServiceImpl implements SeatMapStreamService {
+
+    private static final String SNAPSHOT = "snapshot";
+    private static final String DELTA = "delta";
+
+    /**
+     * Сколько событий ждёт отправки одному клиенту, прежде чем он считается отставшим
+     */
+    private static final int SUBSCRIBER_QUEUE = 64;
+
+    /**
+     * Пул потоковой выдачи отказал - повтор через RETRY_DELAY; новые подписчики ждут снимок не больше MAX_RETRIES повторов
+     */
+    private static final Duration RETRY_DELAY = Duration.ofMillis(500);
+    private static final int MAX_RETRIES = 10;
+
+    private final SeatMapCache seatMapCache;
+    private final FlightRepository flightRepository;
+    private final SearchExecutors searchExecutors;
+    private final TaskScheduler taskScheduler;
+    private final ObjectMapper objectMapper;
+
+    private final Map<Long, FlightFeed> feeds = new ConcurrentHashMap<>();
+
+    @Override
+    public void subscribe(Long flightId, SseEmitter emitter) {
+        if (!flightRepository.existsById(flightId)) {
+            throw new FlightNotFoundException(flightId);
+        }
+
+        // Карта строится из БД здесь, вне общей блокировки подписок
+        SeatBitmap bitmap = seatMapCache.get(flightId);
+
+        FlightFeed feed;
+        FlightFeed.Subscriber subscriber;
+        synchronized (feeds) {
+            feed = feeds.computeIfAbsent(flightId, id -> new FlightFeed(id, bitmap));
+            subscriber = feed.new Subscriber(emitter);
+            feed.joining.add(subscriber);
+        }
+        emitter.onCompletion(() -> unsubscribe(feed, subscriber));
+        emitter.onTimeout(() -> unsubscribe(feed, subscriber));
+        emitter.onError(e -> unsubscribe(feed, subscriber));
+
+        log.debug("Seat map subscriber joined flight {}", flightId);
+        feed.schedule();
+    }
+
+    private void unsubscribe(FlightFeed feed, FlightFeed.Subscriber subscriber) {
+        synchronized (feeds) {
+            feed.subscribers.remove(subscriber);
+            feed.joining.remove(subscriber);
+            if (feed.subscribers.isEmpty() && feed.joining.isEmpty()) {
+                feeds.remove(feed.flightId, feed);
+                seatMapCache.unwatch(feed.bitmap);
+                log.debug("Last seat map subscriber left flight {}", feed.flightId);
+            }
+        }
+    }
+
+    /**
+     * Источник событий карты мест одного рейса
+     */
+    private final class FlightFeed implements IntConsumer {
+
+        private final Long flightId;
+        private final SeatBitmap bitmap;
+        private final SeatLayout layout;
+        private final AtomicLongArray dirty;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicInteger rejections = new AtomicInteger();
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final Queue<Subscriber> joining = new ConcurrentLinkedQueue<>();
+
+        FlightFeed(Long flightId, SeatBitmap loaded) {
+            this.flightId = flightId;
+            this.bitmap = seatMapCache.watch(flightId, loaded, this);
+            this.layout = bitmap.layout();
+            this.dirty = new AtomicLongArray((layout.seatCount() + 63) >>> 6);
+        }
+
+        /**
+         * Место изменилось (вызывается из потока бронирования - только пометка и планирование)
+         */
+        @Override
+        public void accept(int bit) {
+            long mask = 1L << bit;
+            dirty.getAndAccumulate(bit >>> 6, mask, (current, m) -> current | m);
+            schedule();
+        }
+
+        void schedule() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                searchExecutors.stream().execute(this::drain);
+                rejections.set(0);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                retryLater();
+            }
+        }
+
+        /**
+         * Пул занят: изменения остаются помеченными, рассылка - повтором по таймеру.
+         * Новые подписчики, так и не получившие снимок, отключаются - клиент SSE переподключится сам
+         */
+        private void retryLater() {
+            if (rejections.incrementAndGet() > MAX_RETRIES) {
+                rejections.set(0);
+                Subscriber subscriber;
+                while ((subscriber = joining.poll()) != null) {
+                    subscriber.close(new RejectedExecutionException("Seat map stream pool is full"));
+                }
+                log.warn("Seat map feed for flight {}: stream pool is full, new subscribers dropped", flightId);
+            }
+            taskScheduler.schedule(this::schedule, Instant.now().plus(RETRY_DELAY));
+        }
+
+        private void drain() {
+            do {
+                try {
+                    sendDelta();
+                    sendSnapshots();
+                } catch (RuntimeException e) {
+                    log.error("Seat map feed for flight {} failed: {}", flightId, e.getMessage(), e);
+                }
+                draining.set(false);
+            } while (hasWork() && draining.compareAndSet(false, true));
+        }
+
+        private boolean hasWork() {
+            if (!joining.isEmpty()) {
+                return true;
+            }
+            for (int w = 0; w < dirty.length(); w++) {
+                if (dirty.get(w) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void sendDelta() {
+            List<String> taken = new ArrayList<>();
+            List<String> released = new ArrayList<>();
+            for (int w = 0; w < dirty.length(); w++) {
+                long bits = dirty.getAndSet(w, 0);
+                while (bits != 0) {
+                    int bit = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    (bitmap.isOccupied(bit) ? taken : released).add(layout.seatAt(bit));
+                    bits &= bits - 1;
+                }
+            }
+            if ((taken.isEmpty() && released.isEmpty()) || subscribers.isEmpty()) {
+                return;
+            }
+
+            String json = objectMapper.writeValueAsString(SeatMapDeltaResponse.builder()
+                    .flightId(flightId)
+                    .taken(taken)
+                    .released(released)
+                    .build());
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(DELTA, json);
+            }
+        }
+
+        /**
+         * Новым подписчикам - снимок после рассылки дельты: всё, что изменится позже, снова помечено
+         */
+        private void sendSnapshots() {
+            if (joining.isEmpty()) {
+                return;
+            }
+            String json = objectMapper.writeValueAsString(snapshot());
+            Subscriber subscriber;
+            while ((subscriber = joining.poll()) != null) {
+                if (subscriber.offer(SNAPSHOT, json)) {
+                    subscribers.add(subscriber);
+                }
+            }
+        }
+
+        private SeatMapSnapshotResponse snapshot() {
+            long[] words = bitmap.snapshot();
+            ByteBuffer bytes = ByteBuffer.allocate(words.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (long word : words) {
+                bytes.putLong(word);
+            }
+
+            Map<CabinClass, List<Integer>> cabins = new EnumMap<>(CabinClass.class);
+            for (CabinClass cabinClass : CabinClass.values()) {
+                if (layout.firstBit(cabinClass) < layout.endBit(cabinClass)) {
+                    cabins.put(cabinClass, List.of(layout.firstBit(cabinClass), layout.endBit(cabinClass)));
+                }
+            }
+
+            List<String> seats = new ArrayList<>(layout.seatCount());
+            for (int bit = 0; bit < layout.seatCount(); bit++) {
+                seats.add(layout.seatAt(bit));
+            }
+
+            return SeatMapSnapshotResponse.builder()
+                    .flightId(flightId)
+                    .aircraftType(layout.aircraftType())
+                    .seats(seats)
+                    .cabins(cabins)
+                    .occupied(Base64.getEncoder().encodeToString(
+                            Arrays.copyOf(bytes.array(), (layout.seatCount() + 7) >>> 3)))
+                    .build();
+        }
+
+        /**
+         * Клиент рейса: своя очередь событий и своя отправка в пуле потоковой выдачи
+         */
+        private final class Subscriber {
+
+            private final SseEmitter emitter;
+            private final BlockingQueue<SseEmitter.SseEventBuilder> events = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE);
+            private final AtomicBoolean sending = new AtomicBoolean();
+            private volatile boolean closed;
+
+            Subscriber(SseEmitter emitter) {
+                this.emitter = emitter;
+            }
+
+            /**
+             * Поставить событие в очередь клиента; false - клиент отключён или не успевает
+             */
+            boolean offer(String name, String json) {
+                if (closed) {
+                    return false;
+                }
+                if (!events.offer(SseEmitter.event().name(name).data(json))) {
+                    close(new IllegalStateException("Seat map subscriber is too slow"));
+                    return false;
+                }
+                schedule();
+                return true;
+            }
+
+            private void schedule() {
+                if (!sending.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    searchExecutors.stream().execute(this::flush);
+                } catch (RejectedExecutionException e) {
+                    // События остаются в очереди; переполнится раньше, чем освободится пул, - клиент отключится
+                    sending.set(false);
+                    taskScheduler.schedule(this::schedule, Instant.now().plus(RETRY_DELAY));
+                }
+            }
+
+            private void flush() {
+                do {
+                    SseEmitter.SseEventBuilder event;
+                    while (!closed && (event = events.poll()) != null) {
+                        try {
+                            emitter.send(event);
+                        } catch (IOException | IllegalStateException e) {
+                            close(e);
+                        }
+                    }
+                    sending.set(false);
+                } while (!closed && !events.isEmpty() && sending.compareAndSet(false, true));
+            }
+
+            /**
+             * Отключить клиента; отписка - в onError/onCompletion
+             */
+            void close(Throwable reason) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                events.clear();
+                subscribers.remove(this);
+                log.debug("Seat map subscriber of flight {} dropped: {}", flightId, reason.getMessage());
+                emitter.completeWithError(reason);
+            }
+        }
+    }
+}
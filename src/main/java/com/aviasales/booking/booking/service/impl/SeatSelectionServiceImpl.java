@@ -1,37 +1,59 @@
 package com.aviasales.booking.booking.service.impl;
 
 import com.aviasales.booking.booking.entity.Flight;
-import com.aviasales.booking.booking.entity.Ticket;
 import com.aviasales.booking.booking.enums.CabinClass;
 import com.aviasales.booking.booking.enums.SeatPreference;
-import com.aviasales.booking.booking.repo.TicketRepository;
+import com.aviasales.booking.booking.index.SeatBitmap;
+import com.aviasales.booking.booking.index.SeatGroupAllocator;
+import com.aviasales.booking.booking.index.SeatLayout;
+import com.aviasales.booking.booking.index.SeatMapCache;
 import com.aviasales.booking.booking.service.interfaces.SeatSelectionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 
+/**
+ * Выбор мест по карте мест рейса (SeatBitmap) вместо чтения всех билетов рейса
+ *
+ * Место занимается в карте сразу при назначении (CAS) и освобождается обратно при откате транзакции,
+ * так что пассажиры одного бронирования и параллельные бронирования не получают одно место.
+ * Класс и положение места - по таблицам раскладки салона рейса (SeatLayout).
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SeatSelectionServiceImpl implements SeatSelectionService {
 
-    private final TicketRepository ticketRepository;
+    private final SeatMapCache seatMapCache;
 
     /**
      * Получить занятые места на рейсе
      */
     public Set<String> getOccupiedSeats(Long flightId) {
-        return ticketRepository.findByFlightId(flightId).stream()
-                .map(Ticket::getSeatNumber)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+        SeatBitmap bitmap = seatMapCache.get(flightId);
+        return occupiedSeats(bitmap, 0, bitmap.layout().seatCount());
+    }
+
+    /**
+     * Получить занятые места класса
+     */
+    public Set<String> getOccupiedSeats(Long flightId, CabinClass cabinClass) {
+        SeatBitmap bitmap = seatMapCache.get(flightId);
+        SeatLayout layout = bitmap.layout();
+        return occupiedSeats(bitmap, layout.firstBit(cabinClass), layout.endBit(cabinClass));
+    }
+
+    private static Set<String> occupiedSeats(SeatBitmap bitmap, int from, int to) {
+        SeatLayout layout = bitmap.layout();
+        Set<String> occupied = new HashSet<>();
+        bitmap.forEachOccupied(from, to, bit -> occupied.add(layout.seatAt(bit)));
+        return occupied;
     }
 
     /**
@@ -40,8 +62,9 @@ public class SeatSelectionServiceImpl implements SeatSelectionService {
     public boolean isSeatAvailable(Long flightId, String seatNumber) {
         if (seatNumber == null) return true;
 
-        Set<String> occupied = getOccupiedSeats(flightId);
-        return !occupied.contains(seatNumber);
+        SeatBitmap bitmap = seatMapCache.get(flightId);
+        int bit = bitmap.layout().indexOf(seatNumber);
+        return bit >= 0 && !bitmap.isOccupied(bit);
     }
 
     /**
@@ -52,20 +75,28 @@ public class SeatSelectionServiceImpl implements SeatSelectionService {
 
         // Если место указано явно
         if (requestedSeat != null && !requestedSeat.isBlank()) {
-            if (!isSeatAvailable(flight.getId(), requestedSeat)) {
-                throw new IllegalArgumentException(
-                        "Seat " + requestedSeat + " is already taken"
-                );
+            SeatBitmap bitmap = seatMapCache.get(flight.getId());
+            SeatLayout layout = bitmap.layout();
+            int bit = layout.indexOf(requestedSeat.trim());
+            if (bit < 0) {
+                throw new IllegalArgumentException("Seat " + requestedSeat + " does not exist");
             }
 
             // Проверяем что место соответствует классу
-            if (!validateSeatForCabinClass(requestedSeat, cabinClass)) {
+            if (!layout.isInCabin(bit, cabinClass)) {
                 throw new IllegalArgumentException(
                         "Seat " + requestedSeat + " is not in " + cabinClass + " class"
                 );
             }
 
-            return requestedSeat;
+            if (!bitmap.tryOccupy(bit)) {
+                throw new IllegalArgumentException(
+                        "Seat " + requestedSeat + " is already taken"
+                );
+            }
+            releaseOnRollback(bitmap, bit);
+
+            return layout.seatAt(bit);
         }
 
         // Автоматическое назначение на основе preference
@@ -76,85 +107,125 @@ public class SeatSelectionServiceImpl implements SeatSelectionService {
      * Автоматическое назначение места
      */
     public String autoAssignSeat(Flight flight, CabinClass cabinClass, SeatPreference preference) {
-        Set<String> occupied = getOccupiedSeats(flight.getId());
-        List<String> availableSeats = generateSeatsForClass(cabinClass);
+        SeatBitmap bitmap = seatMapCache.get(flight.getId());
+        SeatLayout layout = bitmap.layout();
+        int from = layout.firstBit(cabinClass);
+        int to = layout.endBit(cabinClass);
 
-        // Фильтруем занятые
-        availableSeats = availableSeats.stream()
-                .filter(seat -> !occupied.contains(seat))
-                .collect(Collectors.toList());
+        // Сначала - по предпочтению, затем первое свободное в классе
+        int bit = -1;
+        if (preference != null) {
+            bit = bitmap.occupyFirstFree(from, to, layout.preferenceMask(preference));
+        }
+        if (bit < 0) {
+            bit = bitmap.occupyFirstFree(from, to, null);
+        }
 
-        if (availableSeats.isEmpty()) {
+        if (bit < 0) {
             throw new IllegalStateException("No available seats in " + cabinClass);
         }
+        releaseOnRollback(bitmap, bit);
 
-        // Фильтруем по предпочтению
-        if (preference != null) {
-            List<String> preferredSeats = filterByPreference(availableSeats, preference);
-            if (!preferredSeats.isEmpty()) {
-                return preferredSeats.get(0);
+        return layout.seatAt(bit);
+    }
+
+    /**
+     * Места группе пассажиров одного класса - рядом (SeatGroupAllocator); не поместились рядом - по одному
+     */
+    public List<String> assignGroupSeats(Flight flight, CabinClass cabinClass, List<SeatPreference> preferences) {
+        if (preferences.size() == 1) {
+            return List.of(autoAssignSeat(flight, cabinClass, preferences.get(0)));
+        }
+
+        SeatBitmap bitmap = seatMapCache.get(flight.getId());
+        int[] bits = SeatGroupAllocator.allocate(bitmap, cabinClass, preferences.toArray(new SeatPreference[0]));
+        if (bits == null) {
+            log.debug("No adjacent block for {} passengers in {} on flight {}, assigning one by one",
+                    preferences.size(), cabinClass, flight.getId());
+            List<String> seats = new ArrayList<>(preferences.size());
+            for (SeatPreference preference : preferences) {
+                seats.add(autoAssignSeat(flight, cabinClass, preference));
             }
+            return seats;
         }
 
-        // Возвращаем первое доступное
-        return availableSeats.get(0);
+        List<String> seats = new ArrayList<>(bits.length);
+        for (int bit : bits) {
+            releaseOnRollback(bitmap, bit);
+            seats.add(bitmap.layout().seatAt(bit));
+        }
+        return seats;
     }
 
     /**
-     * Генерация мест для класса
+     * Освободить место после коммита отмены / истечения бронирования
      */
-    public List<String> generateSeatsForClass(CabinClass cabinClass) {
-        List<String> seats = new ArrayList<>();
-
-        switch (cabinClass) {
-            case FIRST_CLASS -> {
-                // Ряды 1-2, места A-D (4 места в ряду)
-                for (int row = 1; row <= 2; row++) {
-                    for (char letter = 'A'; letter <= 'D'; letter++) {
-                        seats.add(row + String.valueOf(letter));
-                    }
+    public void releaseSeat(Long flightId, String seatNumber) {
+        if (seatNumber == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    seatMapCache.release(flightId, seatNumber);
                 }
-            }
-            case BUSINESS -> {
-                // Ряды 3-8, места A-F (6 мест в ряду, 2-2-2)
-                for (int row = 3; row <= 8; row++) {
-                    for (char letter = 'A'; letter <= 'F'; letter++) {
-                        seats.add(row + String.valueOf(letter));
-                    }
+            });
+        } else {
+            seatMapCache.release(flightId, seatNumber);
+        }
+    }
+
+    /**
+     * Карта отстала от БД - сбросить после отката (в откатываемой транзакции запросы уже не пройдут)
+     */
+    public void seatTakenElsewhere(Long flightId) {
+        log.warn("Flight {}: seat map is behind the database, rebuilding", flightId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    seatMapCache.invalidate(flightId);
                 }
-            }
-            case ECONOMY, PREMIUM_ECONOMY -> {
-                // Ряды 9-35, места A-F (6 мест в ряду, 3-3)
-                for (int row = 9; row <= 35; row++) {
-                    for (char letter = 'A'; letter <= 'F'; letter++) {
-                        seats.add(row + String.valueOf(letter));
+            });
+        } else {
+            seatMapCache.invalidate(flightId);
+        }
+    }
+
+    /**
+     * Место занято в карте до коммита - если бронирование не сохранится, вернуть его
+     */
+    private static void releaseOnRollback(SeatBitmap bitmap, int bit) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        bitmap.release(bit);
                     }
                 }
-            }
+            });
         }
+    }
 
-        return seats;
+    /**
+     * Генерация мест для класса (раскладка по умолчанию)
+     */
+    public List<String> generateSeatsForClass(CabinClass cabinClass) {
+        return SeatLayout.STANDARD.seats(cabinClass);
     }
 
     /**
-     * Проверка что место соответствует классу
+     * Проверка что место соответствует классу (раскладка по умолчанию)
      */
     public boolean validateSeatForCabinClass(String seat, CabinClass cabinClass) {
-        return extractTypeCabin(seat, cabinClass);
+        int bit = SeatLayout.STANDARD.indexOf(seat);
+        return bit >= 0 && SeatLayout.STANDARD.isInCabin(bit, cabinClass);
     }
 
-
-    static boolean extractTypeCabin(String seat, CabinClass cabinClass) {
-        int row = Integer.parseInt(seat.replaceAll("[^0-9]", ""));
-
-        return switch (cabinClass) {
-            case FIRST_CLASS -> row >= 1 && row <= 2;
-            case BUSINESS -> row >= 3 && row <= 8;
-            case ECONOMY, PREMIUM_ECONOMY -> row >= 9 && row <= 35;
-        };
-    }
     /**
-     * Фильтр мест по предпочтению
+     * Фильтр мест по предпочтению (раскладка по умолчанию)
      */
     public List<String> filterByPreference(List<String> seats, SeatPreference preference) {
         return seats.stream()
@@ -163,15 +234,10 @@ public class SeatSelectionServiceImpl implements SeatSelectionService {
     }
 
     /**
-     * Проверка соответствия места предпочтению
+     * Проверка соответствия места предпочтению (раскладка по умолчанию)
      */
     public boolean matchesPreference(String seat, SeatPreference preference) {
-        char letter = seat.charAt(seat.length() - 1);
-
-        return switch (preference) {
-            case WINDOW -> letter == 'A' || letter == 'F';  // Окно
-            case AISLE -> letter == 'C' || letter == 'D';   // Проход
-            case MIDDLE -> letter == 'B' || letter == 'E';  // Середина
-        };
+        int bit = SeatLayout.STANDARD.indexOf(seat);
+        return bit >= 0 && SeatLayout.STANDARD.matches(bit, preference);
     }
 }
@@ -39,6 +39,12 @@ public interface BookingService {
      */
     BookingResponse cancelBooking(String reference, Long userId, String reason) throws AccessDeniedException;
 
+    /**
+     * Истечь неоплаченное бронирование и вернуть места
+     * @return false - бронирование уже не PENDING (оплачено, отменено или истекло раньше)
+     */
+    boolean expireBooking(String bookingReference);
+
     /**
      * Сгенерировать PDF билета
      */
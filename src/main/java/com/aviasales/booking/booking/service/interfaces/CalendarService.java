@@ -1,6 +1,7 @@
 package com.aviasales.booking.booking.service.interfaces;
 
 import com.aviasales.booking.booking.dto.response.CalendarPriceResponse;
+import com.aviasales.booking.booking.dto.response.PriceMatrixResponse;
 import com.aviasales.booking.booking.entity.Flight;
 import com.aviasales.booking.booking.entity.Holiday;
 import com.aviasales.booking.booking.enums.CabinClass;
@@ -30,6 +31,20 @@ public interface CalendarService {
             CabinClass cabinClass
     );
 
+    /**
+     * Матрица цен туда-обратно: самый дешёвый вариант для каждой пары (дата вылета, дата возврата)
+     * в окне ±flexDays вокруг выбранных дат
+     */
+    PriceMatrixResponse getRoundTripPriceMatrix(
+            String originCode,
+            String destinationCode,
+            LocalDate departureDate,
+            LocalDate returnDate,
+            int flexDays,
+            CabinClass cabinClass,
+            int passengers
+    );
+
     Integer getAvailableSeats(Flight flight, CabinClass cabinClass);
 
     String getPriceReason(LocalDate date, boolean isWeekend, Holiday holiday, String demandLevel);
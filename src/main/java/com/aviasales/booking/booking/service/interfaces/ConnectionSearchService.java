@@ -0,0 +1,28 @@
+package com.aviasales.booking.booking.service.interfaces;
+
+import com.aviasales.booking.booking.dto.response.ConnectionSearchResponse;
+import com.aviasales.booking.booking.enums.CabinClass;
+
+import java.time.LocalDate;
+
+public interface ConnectionSearchService {
+
+    /**
+     * Найти маршруты origin → destination с 0..maxStops пересадками
+     *
+     * @param date дата вылета в локальном времени аэропорта вылета
+     */
+    ConnectionSearchResponse searchConnections(
+            String originCode,
+            String destinationCode,
+            LocalDate date,
+            int passengers,
+            CabinClass cabinClass,
+            int maxStops
+    );
+
+    /**
+     * Перестроить расписание для поиска пересадок
+     */
+    void refreshTimetable();
+}
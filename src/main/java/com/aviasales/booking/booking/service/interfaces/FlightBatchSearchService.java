@@ -0,0 +1,12 @@
+package com.aviasales.booking.booking.service.interfaces;
+
+import com.aviasales.booking.booking.dto.request.BatchFlightSearchRequest;
+import com.aviasales.booking.booking.dto.response.BatchFlightSearchResponse;
+
+public interface FlightBatchSearchService {
+
+    /**
+     * Выполнить пакет поисков параллельно
+     */
+    BatchFlightSearchResponse search(BatchFlightSearchRequest request);
+}
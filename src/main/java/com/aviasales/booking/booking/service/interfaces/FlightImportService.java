@@ -0,0 +1,16 @@
+package com.aviasales.booking.booking.service.interfaces;
+
+import com.aviasales.booking.booking.dto.response.FlightImportResponse;
+import com.aviasales.booking.booking.enums.FlightImportFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface FlightImportService {
+
+    /**
+     * Импортировать расписание из потока CSV/NDJSON
+     * Ошибочные строки пропускаются и попадают в отчёт, остальные вставляются
+     */
+    FlightImportResponse importFlights(InputStream input, FlightImportFormat format) throws IOException;
+}
@@ -0,0 +1,40 @@
+package com.aviasales.booking.booking.service.interfaces;
+
+import com.aviasales.booking.booking.dto.request.CreateFlightScheduleRequest;
+import com.aviasales.booking.booking.dto.response.FlightScheduleResponse;
+import com.aviasales.booking.booking.entity.Flight;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface FlightScheduleService {
+
+    /**
+     * Создать расписание и сразу создать рейсы на горизонт
+     */
+    FlightScheduleResponse createSchedule(CreateFlightScheduleRequest request);
+
+    List<FlightScheduleResponse> getSchedules();
+
+    /**
+     * Остановить создание новых рейсов; уже созданные рейсы остаются
+     */
+    void deactivateSchedule(Long id);
+
+    /**
+     * Догнать горизонт по всем активным расписаниям
+     * @return сколько рейсов создано
+     */
+    int materializeAll();
+
+    /**
+     * Дата (UTC) за горизонтом материализации - рейсы из расписаний на неё могут быть не созданы
+     */
+    boolean isBeyondHorizon(LocalDate date);
+
+    /**
+     * Несохранённые рейсы (id = null) из расписаний маршрута с вылетом в эту дату UTC,
+     * ещё не созданные материализацией
+     */
+    List<Flight> synthesizeFlights(String originCode, String destinationCode, LocalDate date);
+}
@@ -5,6 +5,7 @@ import com.aviasales.booking.booking.dto.request.FlightSearchRequest;
 import com.aviasales.booking.booking.dto.request.UpdateFlightRequest;
 import com.aviasales.booking.booking.dto.response.*;
 import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.DestinationRanking;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -15,6 +16,11 @@ public interface FlightService {
     // ✅ Исправлено: Page<FlightResponse> вместо Page<FlightSearchResponse>
     Page<FlightResponse> searchFlights(FlightSearchRequest request, Pageable pageable);
 
+    /**
+     * Поиск с keyset-пагинацией: без COUNT(*) и OFFSET
+     */
+    FlightCursorPageResponse searchFlightsAfter(FlightSearchRequest request, String cursor, int size);
+
     FlightDetailResponse getFlightById(Long id);
 
     FlightDetailResponse getFlightByNumber(String flightNumber);
@@ -37,6 +43,11 @@ public interface FlightService {
 
     List<PopularDestinationResponse> getPopularDestinations(int limit);
 
+    /**
+     * Популярные направления по выбранному счётчику (рейсы, бронирования, поиски)
+     */
+    List<PopularDestinationResponse> getPopularDestinations(int limit, DestinationRanking ranking);
+
     Flight findById(Long flightId);
 
     FlightDetailResponse cancelFlight(Long id);
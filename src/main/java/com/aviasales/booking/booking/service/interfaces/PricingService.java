@@ -18,6 +18,13 @@ public interface PricingService {
             LocalDate bookingDate
     );
 
+    /**
+     * Пересчитать сохранённые действующие цены рейса по всем классам
+     *
+     * @return true, если хотя бы одна цена изменилась
+     */
+    boolean refreshEffectivePrices(Flight flight, LocalDate pricingDate);
+
     /**
      * Получить доступные места для класса
      */
@@ -3,6 +3,7 @@ package com.aviasales.booking.booking.service.interfaces;
 import com.aviasales.booking.booking.dto.request.RoundTripSearchRequest;
 import com.aviasales.booking.booking.dto.response.RoundTripDiscountResponse;
 import com.aviasales.booking.booking.dto.response.RoundTripSearchResponse;
+import com.aviasales.booking.booking.dto.response.RoundTripStreamEvent;
 import com.aviasales.booking.booking.entity.Flight;
 import com.aviasales.booking.booking.enums.CabinClass;
 
@@ -10,6 +11,7 @@ import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 public interface RoundTripService {
@@ -18,6 +20,12 @@ public interface RoundTripService {
      * Поиск рейсов туда-обратно с рекомендациями
      */
     RoundTripSearchResponse searchRoundTrip(RoundTripSearchRequest request);
+
+    /**
+     * Потоковый поиск туда-обратно: рейсы туда, рейсы обратно, затем рекомендации и итог
+     */
+    void streamRoundTrip(RoundTripSearchRequest request, Consumer<RoundTripStreamEvent> sink);
+
     /**
      * Поиск рейсов с опциональной гибкостью дат
      */
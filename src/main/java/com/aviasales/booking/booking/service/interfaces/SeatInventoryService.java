@@ -0,0 +1,21 @@
+package com.aviasales.booking.booking.service.interfaces;
+
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.exception.InsufficientSeatsException;
+
+import java.util.Map;
+
+public interface SeatInventoryService {
+
+    /**
+     * Списать места по классам одним условным UPDATE в текущей транзакции (без неё - в своей).
+     * Вызывать последним запросом транзакции: блокировка строки рейса держится до коммита.
+     */
+    void reserve(Long flightId, Map<CabinClass, Integer> seatsByClass) throws InsufficientSeatsException;
+
+    /**
+     * Вернуть места в рамках текущей транзакции (отмена, истечение)
+     */
+    void release(Flight flight, Map<CabinClass, Integer> seatsByClass);
+}
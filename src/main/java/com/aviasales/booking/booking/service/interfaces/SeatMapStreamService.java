@@ -0,0 +1,11 @@
+package com.aviasales.booking.booking.service.interfaces;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface SeatMapStreamService {
+
+    /**
+     * Подписать клиента на карту мест рейса: сначала снимок (snapshot), дальше только изменения (delta)
+     */
+    void subscribe(Long flightId, SseEmitter emitter);
+}
@@ -15,6 +15,11 @@ public interface SeatSelectionService {
      */
     Set<String> getOccupiedSeats(Long flightId);
 
+    /**
+     * Получить занятые места класса (по раскладке салона рейса)
+     */
+    Set<String> getOccupiedSeats(Long flightId, CabinClass cabinClass);
+
     /**
      * Проверить доступность места
      */
@@ -27,10 +32,26 @@ public interface SeatSelectionService {
                              String requestedSeat, SeatPreference preference);
 
     /**
-     * Автоматическое назначение места
+     * Автоматическое назначение места (место сразу занимается в карте мест рейса)
      */
     String autoAssignSeat(Flight flight, CabinClass cabinClass, SeatPreference preference);
 
+    /**
+     * Назначить места группе пассажиров одного класса рядом (по порядку preferences)
+     */
+    List<String> assignGroupSeats(Flight flight, CabinClass cabinClass, List<SeatPreference> preferences);
+
+    /**
+     * Освободить место (после коммита текущей транзакции)
+     */
+    void releaseSeat(Long flightId, String seatNumber);
+
+    /**
+     * Место уже продано другим узлом (нарушен уникальный индекс мест): после отката
+     * текущей транзакции карта мест рейса сверяется с БД
+     */
+    void seatTakenElsewhere(Long flightId);
+
     /**
      * Генерация мест для класса
      */
@@ -0,0 +1,66 @@
+package com.aviasales.booking.booking.service;
+
+import com.aviasales.booking.booking.entity.Airline;
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.FlightStatus;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Тестовые авиакомпании, аэропорты и рейсы (ещё не сохранённые)
+ * У каждого теста свои коды, чтобы прогоны не пересекались в общей БД
+ */
+final class FlightFixtures {
+
+    private FlightFixtures() {
+    }
+
+    static Airline airline(String iataCode, String name) {
+        return Airline.builder()
+                .iataCode(iataCode)
+                .name(name)
+                .isActive(true)
+                .build();
+    }
+
+    static Airport airport(String iataCode, String city) {
+        return Airport.builder()
+                .iataCode(iataCode)
+                .name(city + " International")
+                .city(city)
+                .country("Testland")
+                .timezone("UTC")
+                .isActive(true)
+                .build();
+    }
+
+    /**
+     * SCHEDULED рейс без пересадок, все места - эконом; цену и прочее тест может переопределить в builder'е
+     */
+    static Flight.FlightBuilder economyFlight(String flightNumber, Airline airline, Airport origin,
+                                              Airport destination, Instant departure, Duration duration,
+                                              int seats) {
+        return Flight.builder()
+                .flightNumber(flightNumber)
+                .airline(airline)
+                .origin(origin)
+                .destination(destination)
+                .departureTime(departure)
+                .arrivalTime(departure.plus(duration))
+                .durationMinutes((int) duration.toMinutes())
+                .basePrice(BigDecimal.valueOf(100))
+                .totalSeats(seats)
+                .availableSeats(seats)
+                .economySeats(seats)
+                .availableEconomy(seats)
+                .businessSeats(0)
+                .availableBusiness(0)
+                .firstClassSeats(0)
+                .availableFirstClass(0)
+                .stops(0)
+                .status(FlightStatus.SCHEDULED);
+    }
+}
@@ -0,0 +1,141 @@
+package com.aviasales.booking.booking.service;
+
+import com.aviasales.booking.booking.dto.request.FlightSearchRequest;
+import com.aviasales.booking.booking.dto.response.FlightCursorPageResponse;
+import com.aviasales.booking.booking.dto.response.FlightResponse;
+import com.aviasales.booking.booking.entity.Airline;
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.enums.FlightSortBy;
+import com.aviasales.booking.booking.mapper.FlightMapper;
+import com.aviasales.booking.booking.repo.AirlineRepository;
+import com.aviasales.booking.booking.repo.AirportRepository;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.service.interfaces.FlightService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Страница поиска должна грузиться без ленивых select'ов на airline/origin/destination
+ * Индекс выключен, чтобы поиск шёл через запрос к БД
+ */
+@SpringBootTest(properties = {
+        "search.index.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional
+class FlightSearchStatementCountTest {
+
+    private static final int FLIGHTS = 20;
+
+    @Autowired
+    private FlightService flightService;
+
+    @Autowired
+    private FlightRepository flightRepository;
+
+    @Autowired
+    private AirportRepository airportRepository;
+
+    @Autowired
+    private AirlineRepository airlineRepository;
+
+    @Autowired
+    private FlightMapper flightMapper;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+    private LocalDate date;
+    private final List<Long> flightIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        date = LocalDate.now(ZoneOffset.UTC).plusDays(30);
+
+        Airline airline = airlineRepository.save(FlightFixtures.airline("Q9", "Statement Count Air"));
+        Airport origin = airportRepository.save(FlightFixtures.airport("QQA", "Origin City"));
+        Airport destination = airportRepository.save(FlightFixtures.airport("QQB", "Destination City"));
+
+        Instant start = date.atStartOfDay(ZoneOffset.UTC).toInstant();
+        for (int i = 0; i < FLIGHTS; i++) {
+            Instant departure = start.plus(i * 30L, ChronoUnit.MINUTES);
+            Flight flight = flightRepository.save(FlightFixtures.economyFlight(
+                            "Q9" + (100 + i), airline, origin, destination, departure, Duration.ofHours(3), 180)
+                    .basePrice(BigDecimal.valueOf(100 + i))
+                    .build());
+            flightIds.add(flight.getId());
+        }
+
+        // Пустой persistence context: связи будут либо в запросе, либо отдельными select'ами
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @Test
+    void searchPageIsLoadedWithoutLazySelects() {
+        Page<FlightResponse> page = flightService.searchFlights(request(), PageRequest.of(0, FLIGHTS));
+
+        assertThat(page.getContent()).hasSize(FLIGHTS);
+        assertThat(page.getContent()).allSatisfy(flight -> {
+            assertThat(flight.getAirline().getIataCode()).isEqualTo("Q9");
+            assertThat(flight.getOrigin().getIataCode()).isEqualTo("QQA");
+            assertThat(flight.getDestination().getIataCode()).isEqualTo("QQB");
+        });
+        // страница + (опционально) COUNT
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void cursorPageIsLoadedWithOneSelect() {
+        FlightCursorPageResponse page = flightService.searchFlightsAfter(request(), null, 10);
+
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getHasNext()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void indexPageByIdsIsLoadedWithOneSelect() {
+        List<FlightResponse> flights = flightMapper.toFlightResponseList(
+                flightRepository.findAllForSearchByIdIn(flightIds));
+
+        assertThat(flights).hasSize(FLIGHTS);
+        assertThat(flights).allSatisfy(flight -> assertThat(flight.getAirline().getName()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private FlightSearchRequest request() {
+        return FlightSearchRequest.builder()
+                .originCode("QQA")
+                .destinationCode("QQB")
+                .departureDate(date)
+                .passengers(1)
+                .cabinClass(CabinClass.ECONOMY)
+                .sortBy(FlightSortBy.PRICE)
+                .build();
+    }
+}
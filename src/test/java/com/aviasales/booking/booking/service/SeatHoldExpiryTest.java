@@ -0,0 +1,170 @@
+package com.aviasales.booking.booking.service;
+
+import com.aviasales.booking.booking.hold.InMemorySeatHoldStore;
+import com.aviasales.booking.booking.hold.RedisSeatHoldStore;
+import com.aviasales.booking.booking.hold.SeatHold;
+import com.aviasales.booking.booking.hold.SeatHoldExpiredEvent;
+import com.aviasales.booking.booking.hold.SeatHoldManager;
+import com.aviasales.booking.booking.hold.SeatHoldStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Удержания мест: истекают в срок, оплата до срока превращает удержание в продажу,
+ * при гонке оплаты и истечения каждое удержание достаётся ровно одной стороне
+ *
+ * Без Spring-контекста; Redis - локальный, если задан -Dseats.holds.test-redis=host:port,
+ * иначе эти прогоны пропускаются
+ */
+class SeatHoldExpiryTest {
+
+    private static final Duration TIMER_TOLERANCE = Duration.ofMillis(250);
+
+    private final Map<String, Instant> expiredAt = new ConcurrentHashMap<>();
+    private ThreadPoolTaskScheduler taskScheduler;
+    private LettuceConnectionFactory redisConnectionFactory;
+
+    @AfterEach
+    void tearDown() {
+        if (taskScheduler != null) {
+            taskScheduler.shutdown();
+        }
+        if (redisConnectionFactory != null) {
+            redisConnectionFactory.destroy();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"memory", "redis"})
+    void holdExpiresOnTime(String storeType) throws Exception {
+        CountDownLatch expired = new CountDownLatch(1);
+        SeatHoldManager manager = manager(store(storeType), expired);
+
+        SeatHold hold = hold(Instant.now().plusMillis(300));
+        manager.hold(hold);
+
+        assertThat(expired.await(5, TimeUnit.SECONDS)).isTrue();
+        Instant firedAt = expiredAt.get(hold.reference());
+        assertThat(firedAt).isAfterOrEqualTo(hold.expiresAt());
+        assertThat(Duration.between(hold.expiresAt(), firedAt)).isLessThan(TIMER_TOLERANCE);
+        assertThat(manager.convert(hold.reference())).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"memory", "redis"})
+    void paymentBeforeExpiryConvertsHold(String storeType) throws Exception {
+        SeatHoldManager manager = manager(store(storeType));
+
+        SeatHold hold = hold(Instant.now().plusMillis(300));
+        manager.hold(hold);
+
+        assertThat(manager.convert(hold.reference())).isTrue();
+        Thread.sleep(600);
+        manager.sweepExpired();
+
+        assertThat(expiredAt).doesNotContainKey(hold.reference());
+        assertThat(manager.convert(hold.reference())).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"memory", "redis"})
+    void sweepPicksUpHoldsWithoutTimer(String storeType) {
+        SeatHoldStore store = store(storeType);
+        SeatHoldManager manager = manager(store);
+
+        // Удержание другого инстанса: в хранилище есть, таймера здесь нет
+        SeatHold hold = hold(Instant.now().minusMillis(1));
+        store.put(hold);
+        manager.sweepExpired();
+
+        assertThat(expiredAt).containsKey(hold.reference());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"memory", "redis"})
+    void paymentRacingExpiryWinsOrLosesExactlyOnce(String storeType) throws Exception {
+        SeatHoldManager manager = manager(store(storeType));
+        int holds = 200;
+        Instant deadline = Instant.now().plusMillis(500);
+
+        List<SeatHold> created = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < holds; i++) {
+            SeatHold hold = hold(deadline);
+            manager.hold(hold);
+            created.add(hold);
+        }
+
+        ExecutorService payers = Executors.newFixedThreadPool(16);
+        AtomicInteger converted = new AtomicInteger();
+        Set<String> convertedReferences = ConcurrentHashMap.newKeySet();
+        Thread.sleep(Math.max(0, Duration.between(Instant.now(), deadline).toMillis()));
+        for (SeatHold hold : created) {
+            payers.submit(() -> {
+                if (manager.convert(hold.reference())) {
+                    converted.incrementAndGet();
+                    convertedReferences.add(hold.reference());
+                }
+            });
+        }
+        payers.shutdown();
+        assertThat(payers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(TIMER_TOLERANCE.toMillis());
+        manager.sweepExpired();
+
+        assertThat(converted.get() + expiredAt.size()).isEqualTo(holds);
+        assertThat(convertedReferences).doesNotContainAnyElementsOf(expiredAt.keySet());
+    }
+
+    private SeatHoldManager manager(SeatHoldStore store) {
+        return manager(store, new CountDownLatch(0));
+    }
+
+    private SeatHoldManager manager(SeatHoldStore store, CountDownLatch expired) {
+        if (taskScheduler == null) {
+            taskScheduler = new ThreadPoolTaskScheduler();
+            taskScheduler.setPoolSize(4);
+            taskScheduler.initialize();
+        }
+        return new SeatHoldManager(store, taskScheduler, event -> {
+            SeatHold hold = ((SeatHoldExpiredEvent) event).hold();
+            assertThat(expiredAt.putIfAbsent(hold.reference(), Instant.now())).isNull();
+            expired.countDown();
+        }, 1000);
+    }
+
+    private SeatHoldStore store(String storeType) {
+        if (storeType.equals("memory")) {
+            return new InMemorySeatHoldStore();
+        }
+        String address = System.getProperty("seats.holds.test-redis");
+        Assumptions.assumeTrue(address != null, "local Redis not configured");
+
+        String[] hostPort = address.split(":");
+        redisConnectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(hostPort[0], Integer.parseInt(hostPort[1])));
+        redisConnectionFactory.afterPropertiesSet();
+        redisConnectionFactory.start();
+        return new RedisSeatHoldStore(new StringRedisTemplate(redisConnectionFactory));
+    }
+
+    private static SeatHold hold(Instant expiresAt) {
+        return new SeatHold("T" + UUID.randomUUID(), 1L, List.of("12A", "12B"), expiresAt);
+    }
+}
@@ -0,0 +1,137 @@
+package com.aviasales.booking.booking.service;
+
+import com.aviasales.booking.booking.entity.Airline;
+import com.aviasales.booking.booking.entity.Airport;
+import com.aviasales.booking.booking.entity.Flight;
+import com.aviasales.booking.booking.enums.CabinClass;
+import com.aviasales.booking.booking.exception.InsufficientSeatsException;
+import com.aviasales.booking.booking.repo.AirlineRepository;
+import com.aviasales.booking.booking.repo.AirportRepository;
+import com.aviasales.booking.booking.repo.FlightRepository;
+import com.aviasales.booking.booking.service.interfaces.SeatInventoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 500 одновременных покупателей на один рейс со 150 местами:
+ * продаётся ровно 150 мест, остальные получают отказ, счётчики не уходят в минус
+ *
+ * Каждое списание - в своей внешней транзакции, как в createBooking: покупателей больше,
+ * чем соединений в пуле, и списание не должно просить второе соединение при занятом первом
+ */
+@SpringBootTest(properties = "search.index.enabled=false")
+class SeatInventoryContentionTest {
+
+    private static final int BOOKERS = 500;
+    private static final int SEATS = 150;
+    private static final long CONNECTION_TIMEOUT_MS = 30_000;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private FlightRepository flightRepository;
+
+    @Autowired
+    private AirportRepository airportRepository;
+
+    @Autowired
+    private AirlineRepository airlineRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Airline airline;
+    private Airport origin;
+    private Airport destination;
+    private Long flightId;
+
+    @BeforeEach
+    void setUp() {
+        airline = airlineRepository.save(FlightFixtures.airline("Q8", "Contention Air"));
+        origin = airportRepository.save(FlightFixtures.airport("QCA", "Origin City"));
+        destination = airportRepository.save(FlightFixtures.airport("QCB", "Destination City"));
+
+        Instant departure = Instant.now().plus(10, ChronoUnit.DAYS);
+        flightId = flightRepository.save(FlightFixtures.economyFlight(
+                "Q8500", airline, origin, destination, departure, Duration.ofHours(2), SEATS).build()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        flightRepository.deleteById(flightId);
+        airportRepository.delete(origin);
+        airportRepository.delete(destination);
+        airlineRepository.delete(airline);
+    }
+
+    @Test
+    void concurrentBookersNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(BOOKERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>(BOOKERS);
+        for (int i = 0; i < BOOKERS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        seatInventoryService.reserve(flightId, Map.of(CabinClass.ECONOMY, 1));
+                        sold.incrementAndGet();
+                    } catch (InsufficientSeatsException e) {
+                        status.setRollbackOnly();
+                        rejected.incrementAndGet();
+                    }
+                });
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        executor.shutdown();
+
+        Flight flight = flightRepository.findById(flightId).orElseThrow();
+        assertThat(sold.get()).isEqualTo(SEATS);
+        assertThat(rejected.get()).isEqualTo(BOOKERS - SEATS);
+        assertThat(flight.getAvailableEconomy()).isZero();
+        assertThat(flight.getAvailableSeats()).isZero();
+        // Взаимная блокировка пула ждала бы connectionTimeout (30 с) на каждом соединении
+        assertThat(elapsedMs).isLessThan(CONNECTION_TIMEOUT_MS);
+    }
+
+    @Test
+    void releaseNeverExceedsCapacity() throws Exception {
+        seatInventoryService.reserve(flightId, Map.of(CabinClass.ECONOMY, 2));
+        Flight flight = flightRepository.findById(flightId).orElseThrow();
+        assertThat(flight.getAvailableEconomy()).isEqualTo(SEATS - 2);
+
+        transactionTemplate.executeWithoutResult(status -> seatInventoryService.release(
+                flightRepository.findById(flightId).orElseThrow(), Map.of(CabinClass.ECONOMY, 5)));
+
+        flight = flightRepository.findById(flightId).orElseThrow();
+        assertThat(flight.getAvailableEconomy()).isEqualTo(SEATS);
+        assertThat(flight.getAvailableSeats()).isEqualTo(SEATS);
+    }
+}
@@ -0,0 +1,116 @@
+package com.aviasales.booking.booking.service;
+
+import com.aviasales.booking.booking.sequence.SequenceBlocks;
+import com.aviasales.booking.booking.sequence.TicketNumberAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Несколько узлов с общей таблицей отрезков и много потоков на каждом:
+ * ни один номер билета и электронного билета не выдан дважды, контрольные цифры сходятся
+ *
+ * Аренда отрезков - счётчик в памяти с той же семантикой, что UPDATE id_segments ... RETURNING max_id
+ */
+class TicketNumberAllocatorTest {
+
+    private static final int NODES = 4;
+    private static final int THREADS_PER_NODE = 8;
+    private static final int TICKETS_PER_THREAD = 5_000;
+    private static final int BLOCK_SIZE = 97;
+
+    @Test
+    void concurrentNodesNeverReuseNumbers() throws Exception {
+        AtomicLong maxId = new AtomicLong();
+        List<TicketNumberAllocator> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(allocator(maxId));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(NODES * THREADS_PER_NODE);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<TicketNumberAllocator.TicketNumbers>>> futures = new ArrayList<>();
+        for (TicketNumberAllocator node : nodes) {
+            for (int t = 0; t < THREADS_PER_NODE; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<TicketNumberAllocator.TicketNumbers> issued = new ArrayList<>(TICKETS_PER_THREAD);
+                    for (int i = 0; i < TICKETS_PER_THREAD; i++) {
+                        issued.add(node.allocate(i % 2 == 0 ? "SU" : "ZZ"));
+                    }
+                    return issued;
+                }));
+            }
+        }
+
+        start.countDown();
+        Set<String> ticketNumbers = ConcurrentHashMap.newKeySet();
+        Set<String> eTicketNumbers = ConcurrentHashMap.newKeySet();
+        int total = 0;
+        for (Future<List<TicketNumberAllocator.TicketNumbers>> future : futures) {
+            for (TicketNumberAllocator.TicketNumbers numbers : future.get(60, TimeUnit.SECONDS)) {
+                assertThat(ticketNumbers.add(numbers.ticketNumber())).isTrue();
+                assertThat(eTicketNumbers.add(numbers.eTicketNumber())).isTrue();
+                assertThat(TicketNumberAllocator.isValid(numbers.ticketNumber())).isTrue();
+                assertThat(numbers.ticketNumber()).hasSize(13).matches("(555|421)\\d{10}");
+                assertThat(numbers.eTicketNumber()).matches("[A-Z0-9]{6}");
+                total++;
+            }
+        }
+        executor.shutdown();
+
+        assertThat(total).isEqualTo(NODES * THREADS_PER_NODE * TICKETS_PER_THREAD);
+        assertThat(ticketNumbers).hasSize(total);
+        assertThat(eTicketNumbers).hasSize(total);
+    }
+
+    @Test
+    void restartedNodeContinuesAfterLeasedSegments() {
+        AtomicLong maxId = new AtomicLong();
+        TicketNumberAllocator before = allocator(maxId);
+        Set<String> issued = new HashSet<>();
+        for (int i = 0; i < BLOCK_SIZE + 10; i++) {
+            issued.add(before.allocate("SU").ticketNumber());
+        }
+
+        // Новый экземпляр с той же таблицей - как узел после рестарта: остаток отрезка потерян, повторов нет
+        TicketNumberAllocator after = allocator(maxId);
+        for (int i = 0; i < 3 * BLOCK_SIZE; i++) {
+            assertThat(issued.add(after.allocate("SU").ticketNumber())).isTrue();
+        }
+    }
+
+    @Test
+    void skipsNumbersTakenByLegacyTickets() {
+        AtomicLong maxId = new AtomicLong();
+        SequenceBlocks blocks = new SequenceBlocks(size -> maxId.addAndGet(size) - size, BLOCK_SIZE);
+        String legacy = allocator(new AtomicLong()).allocate("SU").ticketNumber();
+        TicketNumberAllocator allocator = new TicketNumberAllocator(blocks, 0x9c4e7a21d05b3f86L, "421",
+                Map.of("SU", "555"), numbers -> numbers.ticketNumber().equals(legacy));
+
+        assertThat(allocator.allocate("SU").ticketNumber()).isNotEqualTo(legacy);
+    }
+
+    @Test
+    void checkDigitCatchesTypos() {
+        String number = allocator(new AtomicLong()).allocate("SU").ticketNumber();
+        char last = number.charAt(12);
+        String typo = number.substring(0, 12) + (char) ('0' + (last - '0' + 1) % 10);
+
+        assertThat(TicketNumberAllocator.isValid(number)).isTrue();
+        assertThat(TicketNumberAllocator.isValid(typo)).isFalse();
+    }
+
+    private static TicketNumberAllocator allocator(AtomicLong maxId) {
+        SequenceBlocks blocks = new SequenceBlocks(size -> maxId.addAndGet(size) - size, BLOCK_SIZE);
+        return new TicketNumberAllocator(blocks, 0x9c4e7a21d05b3f86L, "421", Map.of("SU", "555"));
+    }
+}